@@ -0,0 +1,105 @@
+package net.starschema.clouddb.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a list of queries on one connection, at most a fixed number at a time.
+ *
+ * <p>Each query runs through its own {@link BQStatement#executeQueryAsync(String)}, so it is built
+ * like any other query of the connection (labels, dataset, billing limits) and is cancelled by
+ * {@link BQConnection#cancelRunningQueries()}. Whenever a query finishes, the next one that has not
+ * started yet is submitted. The statement of a query is closed once the query is done; its result
+ * set stays open until the application closes it.
+ */
+class BQConcurrentQueries {
+
+  private static final Logger logger = LoggerFactory.getLogger(BQConcurrentQueries.class);
+
+  private final BQConnection connection;
+  private final List<String> querySqls;
+  private final List<CompletableFuture<ResultSet>> results;
+  private final AtomicInteger nextQuery = new AtomicInteger();
+
+  private BQConcurrentQueries(BQConnection connection, List<String> querySqls) {
+    this.connection = connection;
+    this.querySqls = new ArrayList<>(querySqls);
+    List<CompletableFuture<ResultSet>> results = new ArrayList<>(querySqls.size());
+    for (int i = 0; i < querySqls.size(); i++) {
+      results.add(new CompletableFuture<>());
+    }
+    this.results = Collections.unmodifiableList(results);
+  }
+
+  /**
+   * Starts running {@code querySqls}, at most {@code maxInFlight} at a time.
+   *
+   * @return one future per query, in the order of {@code querySqls}
+   */
+  static List<CompletableFuture<ResultSet>> run(
+      BQConnection connection, List<String> querySqls, int maxInFlight) {
+    BQConcurrentQueries queries = new BQConcurrentQueries(connection, querySqls);
+    for (int i = 0; i < Math.min(maxInFlight, querySqls.size()); i++) {
+      queries.startNext();
+    }
+    return queries.results;
+  }
+
+  /** Starts the next query that hasn't been started, skipping any whose future is already done. */
+  private void startNext() {
+    int index;
+    while ((index = nextQuery.getAndIncrement()) < querySqls.size()) {
+      CompletableFuture<ResultSet> result = results.get(index);
+      if (result.isDone()) {
+        // cancelled before we got to it
+        continue;
+      }
+      BQStatement statement = null;
+      CompletableFuture<ResultSet> query;
+      try {
+        statement = (BQStatement) connection.createStatement();
+        query = statement.executeQueryAsync(querySqls.get(index));
+      } catch (SQLException e) {
+        close(statement);
+        result.completeExceptionally(e);
+        continue;
+      }
+      BQStatement queryStatement = statement;
+      result.whenComplete(
+          (resultSet, e) -> {
+            if (result.isCancelled()) {
+              query.cancel(true);
+            }
+          });
+      query.whenComplete(
+          (resultSet, e) -> {
+            close(queryStatement);
+            if (e == null) {
+              result.complete(resultSet);
+            } else {
+              result.completeExceptionally(e);
+            }
+            startNext();
+          });
+      return;
+    }
+  }
+
+  private static void close(BQStatement statement) {
+    if (statement == null) {
+      return;
+    }
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      logger.warn("Failed to close the statement of a concurrent query", e);
+    }
+  }
+}
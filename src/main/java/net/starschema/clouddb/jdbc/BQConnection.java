@@ -23,14 +23,34 @@ package net.starschema.clouddb.jdbc;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.model.DatasetReference;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.QueryResponse;
+import com.google.api.services.bigquery.model.TableReference;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -73,22 +93,109 @@ public class BQConnection implements Connection {
   private final String projectId;
 
   /** Boolean to determine if the Connection is closed */
-  private boolean isclosed = false;
+  private volatile boolean isclosed = false;
 
   private Long maxBillingBytes;
 
+  /** Queries a dry run says would process more bytes than this are refused; null for no limit. */
+  private volatile Long preflightMaxBytes;
+
   private Integer timeoutMs;
 
   private final Map<String, String> labels;
 
   private final boolean useQueryCache;
 
-  private final Set<BQStatementRoot> runningStatements =
-      Collections.synchronizedSet(new HashSet<BQStatementRoot>());
+  /** Whether to add a LIMIT to queries of statements with a max row count. */
+  private final boolean pushDownMaxRows;
+
+  /** Whether identical queries running at once share one job, see {@link BQSingleFlight}. */
+  private final boolean singleFlight;
+
+  /** Tells apart connections that authenticate differently, without holding on to secrets. */
+  private final String credentialsFingerprint;
+
+  /** How long the results of our queries stay in the result cache; null if they aren't cached. */
+  private final @Nullable Integer resultCacheTtlMs;
+
+  /** Where the results of our queries are cached, see {@link BQResultCache}. */
+  private volatile BQResultCache resultCache = BQResultCache.shared();
+
+  /** Where the results of our queries are cached on disk, if anywhere. */
+  private final @Nullable BQDiskResultCache diskResultCache;
+
+  /** Whether to serve cached results only if the tables they were read from didn't change. */
+  private final boolean resultCacheCheckTables;
+
+  /** How long to go by the last check of whether a table changed. */
+  private final int resultCacheCheckIntervalMs;
+
+  /** How long to read the rows of a query from its last job's destination table; null if not. */
+  private final @Nullable Integer reuseDestinationTablesMs;
+
+  /** Waits for the jobs of this connection's statements to complete. */
+  private final BQJobWaiter jobWaiter;
+
+  /** Default for the {@code maxConcurrentQueries} connection property. */
+  public static final int DEFAULT_MAX_CONCURRENT_QUERIES = 8;
+
+  /** How many of the queries passed to {@link #executeAll(List)} may run at once. */
+  private final int maxConcurrentQueries;
+
+  /** Runs the blocking part of this connection's synchronous queries. */
+  private volatile ExecutorService queryExecutor;
+
+  private final Set<BQStatementRoot> runningStatements = ConcurrentHashMap.newKeySet();
+
+  /** How long requests wait for data when the {@code readTimeout} property isn't set. */
+  static final int DEFAULT_READ_TIMEOUT_MILLIS = 20 * 1000;
+
+  /** The read timeout of this connection's requests, see {@link #setNetworkTimeout}. */
+  private volatile int networkTimeout;
+
+  /** How many dry run results each connection keeps. */
+  static final int DRY_RUN_CACHE_SIZE = 256;
+
+  /**
+   * How long a dry run result is kept. The tables a query reads can grow in the meantime, and with
+   * them the bytes it would process.
+   */
+  static final long DRY_RUN_CACHE_TTL_SECONDS = 60;
+
+  /**
+   * Dry run results, by default dataset, parameter style and SQL text; see {@link #dryRun(String,
+   * boolean)}.
+   */
+  private final Cache<String, BQDryRun> dryRuns =
+      CacheBuilder.newBuilder()
+          .maximumSize(DRY_RUN_CACHE_SIZE)
+          .expireAfterWrite(DRY_RUN_CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+          .build();
+
+  /** Closed prepared statements kept for reuse; see the {@code statementCacheSize} property. */
+  private final BQStatementCache statementCache;
+
+  /** How many parsed prepared statement templates each connection keeps. */
+  static final int SQL_TEMPLATE_CACHE_SIZE = 256;
+
+  /** Parsed prepared statement templates, by SQL text. */
+  private final LoadingCache<String, BQSqlTemplate> sqlTemplates =
+      CacheBuilder.newBuilder()
+          .maximumSize(SQL_TEMPLATE_CACHE_SIZE)
+          .build(CacheLoader.from(BQSqlTemplate::parse));
 
   /** Boolean to determine whether or not to use legacy sql (default: false) * */
   private final boolean useLegacySql;
 
+  /** The BigQuery session all queries run in, if the {@code enableSession} property is set. */
+  private String sessionId = null;
+
+  /** The query that created the session, which tells us where its temp tables live. */
+  private JobReference sessionJob = null;
+
+  /** The anonymous dataset holding the session's temp tables, once we have looked it up. */
+  private volatile DatasetReference sessionDataset = null;
+
   /**
    * Enum that describes whether to create a job in projects that support stateless queries. Copied
    * from <a
@@ -117,6 +224,29 @@ public class BQConnection implements Connection {
   /** The job creation mode - */
   private JobCreationMode jobCreationMode = JobCreationMode.JOB_CREATION_MODE_UNSPECIFIED;
 
+  /** The priority of a query, both for BigQuery and for the {@link BQQueryDispatcher}. */
+  public static enum QueryPriority {
+    /** Default. The query runs as soon as possible. */
+    INTERACTIVE,
+
+    /**
+     * The query is background work: BigQuery queues it until idle resources are available, and the
+     * driver starts it only while no interactive query is waiting.
+     */
+    BATCH;
+
+    private QueryPriority() {}
+  }
+
+  /** The priority of this connection's queries, unless their statement sets another. */
+  private final QueryPriority priority;
+
+  /** The label whose value tells the {@link BQQueryDispatcher} whose queries these are. */
+  private final @Nullable String admissionLabel;
+
+  /** Decides when this connection's queries may start. */
+  private volatile BQQueryDispatcher queryDispatcher = BQQueryDispatcher.shared();
+
   /** getter for useLegacySql */
   public boolean getUseLegacySql() {
     return useLegacySql;
@@ -229,6 +359,7 @@ public class BQConnection implements Connection {
     // extract readTimeout property
     Integer readTimeout =
         parseIntQueryParam("readTimeout", caseInsensitiveProps.getProperty("readtimeout"));
+    this.networkTimeout = readTimeout != null ? readTimeout : DEFAULT_READ_TIMEOUT_MILLIS;
 
     // extract connectTimeout property
     Integer connectTimeout =
@@ -243,6 +374,17 @@ public class BQConnection implements Connection {
       }
     }
 
+    // refuse queries that would process more than this before creating their job. Unlike
+    // maxBillingBytes, which BigQuery enforces once the job runs, this costs a dry run per query.
+    String preflightMaxBytesParam = caseInsensitiveProps.getProperty("preflightmaxbytes");
+    if (preflightMaxBytesParam != null) {
+      try {
+        this.preflightMaxBytes = Long.parseLong(preflightMaxBytesParam);
+      } catch (NumberFormatException e) {
+        throw new BQSQLException("Bad number for preflightMaxBytes", e);
+      }
+    }
+
     // extract UA String
     String userAgent = caseInsensitiveProps.getProperty("useragent");
 
@@ -255,6 +397,149 @@ public class BQConnection implements Connection {
     this.useQueryCache =
         parseBooleanQueryParam(caseInsensitiveProps.getProperty("querycache"), true);
 
+    // see if statements with a max row count should have BigQuery limit the rows, not just us
+    this.pushDownMaxRows =
+        parseBooleanQueryParam(caseInsensitiveProps.getProperty("pushdownmaxrows"), false);
+
+    // see if identical queries running at once, on any connection, should share one job
+    this.singleFlight =
+        parseBooleanQueryParam(caseInsensitiveProps.getProperty("singleflight"), false);
+    this.credentialsFingerprint =
+        Hashing.sha256()
+            .hashString(
+                String.join(
+                    "\n",
+                    String.valueOf(serviceAccount),
+                    String.valueOf(applicationDefaultCredentials),
+                    String.valueOf(userId),
+                    String.valueOf(userKey),
+                    String.valueOf(userPath),
+                    String.valueOf(jsonAuthContents),
+                    String.valueOf(oAuthAccessToken),
+                    String.valueOf(targetServiceAccounts),
+                    String.valueOf(rootUrl)),
+                StandardCharsets.UTF_8)
+            .toString();
+
+    // extract job completion polling properties
+    Integer pollTimeoutMs =
+        parseIntQueryParam("pollTimeoutMs", caseInsensitiveProps.getProperty("polltimeoutms"));
+    Integer pollInitialBackoffMs =
+        parseIntQueryParam(
+            "pollInitialBackoffMs", caseInsensitiveProps.getProperty("pollinitialbackoffms"));
+    Integer pollMaxBackoffMs =
+        parseIntQueryParam(
+            "pollMaxBackoffMs", caseInsensitiveProps.getProperty("pollmaxbackoffms"));
+    try {
+      this.jobWaiter =
+          new BQJobWaiter(
+              pollTimeoutMs != null && pollTimeoutMs > 0
+                  ? pollTimeoutMs
+                  : BQJobWaiter.DEFAULT_POLL_TIMEOUT_MILLIS,
+              pollInitialBackoffMs != null
+                  ? pollInitialBackoffMs
+                  : BQJobWaiter.DEFAULT_INITIAL_BACKOFF_MILLIS,
+              pollMaxBackoffMs != null
+                  ? pollMaxBackoffMs
+                  : Math.max(
+                      BQJobWaiter.DEFAULT_MAX_BACKOFF_MILLIS,
+                      pollInitialBackoffMs != null ? pollInitialBackoffMs : 0),
+              BQJobWaiter.DEFAULT_BACKOFF_MULTIPLIER,
+              BQJobWaiter.DEFAULT_JITTER);
+    } catch (IllegalArgumentException e) {
+      throw new BQSQLException("Bad job polling parameters: " + e.getMessage(), e);
+    }
+
+    // how many queries executeAll may run at once
+    Integer maxConcurrentQueries =
+        parseIntQueryParam(
+            "maxConcurrentQueries", caseInsensitiveProps.getProperty("maxconcurrentqueries"));
+    if (maxConcurrentQueries != null && maxConcurrentQueries <= 0) {
+      throw new BQSQLException("maxConcurrentQueries must be positive.");
+    }
+    this.maxConcurrentQueries =
+        maxConcurrentQueries != null ? maxConcurrentQueries : DEFAULT_MAX_CONCURRENT_QUERIES;
+
+    // how many closed prepared statements to keep for reuse (none by default)
+    Integer statementCacheSize =
+        parseIntQueryParam(
+            "statementCacheSize", caseInsensitiveProps.getProperty("statementcachesize"));
+    this.statementCache = new BQStatementCache(statementCacheSize != null ? statementCacheSize : 0);
+
+    // how long to keep the rows of our queries around to answer them again (default: not at all)
+    this.resultCacheTtlMs =
+        parseIntQueryParam(
+            "resultCacheTtlMs", caseInsensitiveProps.getProperty("resultcachettlms"));
+    if (this.resultCacheTtlMs != null && this.resultCacheTtlMs <= 0) {
+      throw new BQSQLException("resultCacheTtlMs must be positive.");
+    }
+
+    // serve cached results only while their tables are unchanged (not by default)
+    this.resultCacheCheckTables =
+        parseBooleanQueryParam(caseInsensitiveProps.getProperty("resultcachechecktables"), false);
+    Integer resultCacheCheckIntervalMs =
+        parseIntQueryParam(
+            "resultCacheCheckIntervalMs",
+            caseInsensitiveProps.getProperty("resultcachecheckintervalms"));
+    this.resultCacheCheckIntervalMs =
+        resultCacheCheckIntervalMs != null ? resultCacheCheckIntervalMs : 5000;
+
+    // read repeated queries from the destination table of their last job (not by default)
+    this.reuseDestinationTablesMs =
+        parseIntQueryParam(
+            "reuseDestinationTablesMs",
+            caseInsensitiveProps.getProperty("reusedestinationtablesms"));
+    if (this.reuseDestinationTablesMs != null && this.reuseDestinationTablesMs <= 0) {
+      throw new BQSQLException("reuseDestinationTablesMs must be positive.");
+    }
+
+    // keep the results on disk too, so that they survive restarts (not by default)
+    String resultCacheDir = caseInsensitiveProps.getProperty("resultcachedir");
+    Integer resultCacheDirMaxMb =
+        parseIntQueryParam(
+            "resultCacheDirMaxMb", caseInsensitiveProps.getProperty("resultcachedirmaxmb"));
+    if (resultCacheDirMaxMb != null && resultCacheDirMaxMb <= 0) {
+      throw new BQSQLException("resultCacheDirMaxMb must be positive.");
+    }
+    if (resultCacheDir == null) {
+      this.diskResultCache = null;
+    } else {
+      try {
+        this.diskResultCache =
+            BQDiskResultCache.open(
+                Paths.get(resultCacheDir),
+                resultCacheDirMaxMb != null
+                    ? resultCacheDirMaxMb * 1024L * 1024
+                    : BQDiskResultCache.DEFAULT_MAX_BYTES);
+      } catch (IOException | InvalidPathException e) {
+        throw new BQSQLException("could not open resultCacheDir " + resultCacheDir, e);
+      }
+    }
+
+    // run the blocking part of synchronous queries on virtual threads if asked (and available)
+    boolean useVirtualThreads =
+        parseBooleanQueryParam(caseInsensitiveProps.getProperty("usevirtualthreads"), false);
+    ExecutorService virtualThreadExecutor =
+        useVirtualThreads ? BQExecutors.virtualThreadExecutor() : null;
+    if (useVirtualThreads && virtualThreadExecutor == null) {
+      logger.warn("useVirtualThreads requires Java 21 or later, using platform threads instead");
+    }
+    this.queryExecutor =
+        virtualThreadExecutor != null ? virtualThreadExecutor : BQExecutors.sharedQueryExecutor();
+
+    final String priorityString = caseInsensitiveProps.getProperty("priority");
+    if (priorityString == null) {
+      this.priority = QueryPriority.INTERACTIVE;
+    } else {
+      try {
+        this.priority = QueryPriority.valueOf(priorityString);
+      } catch (IllegalArgumentException e) {
+        throw new BQSQLException("could not parse " + priorityString + " as query priority", e);
+      }
+    }
+
+    this.admissionLabel = caseInsensitiveProps.getProperty("admissionlabel");
+
     final String jobCreationModeString = caseInsensitiveProps.getProperty("jobcreationmode");
     if (jobCreationModeString == null) {
       jobCreationMode = null;
@@ -328,6 +613,72 @@ public class BQConnection implements Connection {
       throw new IllegalArgumentException("Must provide a valid mechanism to authenticate.");
     }
     logger.debug("The project id for this connections is: " + projectId);
+
+    // see if the user wants all queries to run in one session, sharing temp tables and variables
+    if (parseBooleanQueryParam(caseInsensitiveProps.getProperty("enablesession"), false)) {
+      if (this.useLegacySql) {
+        throw new BQSQLException("Sessions require standard SQL.");
+      }
+      startSession();
+    }
+  }
+
+  /** Creates the BigQuery session this connection's queries run in. */
+  private void startSession() throws SQLException {
+    QueryResponse response;
+    try {
+      response =
+          BQSupportFuncts.createSession(
+              this.bigquery, projectId, getDataSet(), getDataSetProjectId(), this.labels);
+    } catch (IOException e) {
+      throw new BQSQLException("Failed to create a session", e);
+    }
+    if (response.getSessionInfo() == null || response.getSessionInfo().getSessionId() == null) {
+      throw new BQSQLException("BigQuery did not create a session");
+    }
+    this.sessionId = response.getSessionInfo().getSessionId();
+    this.sessionJob = response.getJobReference();
+    logger.debug("Created session " + this.sessionId);
+  }
+
+  /**
+   * Return the ID of the BigQuery session this connection's queries run in, or null if the {@code
+   * enableSession} JDBC parameter isn't set.
+   */
+  public @Nullable String getSessionId() {
+    return this.sessionId;
+  }
+
+  /**
+   * Return the anonymous dataset that holds the temp tables of this connection's session, looking
+   * it up the first time: it is where the query that created the session wrote its results.
+   *
+   * @return the dataset, or null if the connection has no session
+   * @throws IOException if looking up the query that created the session fails
+   */
+  @Nullable
+  DatasetReference getSessionDataset() throws IOException {
+    if (this.sessionDataset == null && this.sessionJob != null) {
+      Job job = BQSupportFuncts.getPollJob(this.sessionJob, getBigquery(), projectId);
+      TableReference destination = job.getConfiguration().getQuery().getDestinationTable();
+      this.sessionDataset =
+          new DatasetReference()
+              .setProjectId(destination.getProjectId())
+              .setDatasetId(destination.getDatasetId());
+    }
+    return this.sessionDataset;
+  }
+
+  /** Terminates this connection's session, if it has one, so BigQuery drops its temp tables. */
+  private void endSession(Bigquery bigquery) {
+    if (this.sessionId == null || bigquery == null) {
+      return;
+    }
+    try {
+      BQSupportFuncts.abortSession(bigquery, projectId, this.sessionId);
+    } catch (IOException e) {
+      logger.warn("Failed to terminate session " + this.sessionId, e);
+    }
   }
 
   private static Map<String, String> tryParseLabels(@Nullable String labels) {
@@ -414,19 +765,100 @@ public class BQConnection implements Connection {
     return this.useQueryCache;
   }
 
+  /**
+   * Return whether queries of statements with a max row count get a LIMIT added, as determined by
+   * the {@code pushDownMaxRows} JDBC parameter. Off by default.
+   */
+  public boolean getPushDownMaxRows() {
+    return this.pushDownMaxRows;
+  }
+
+  /**
+   * Return whether identical queries that run at the same time, on this or any other connection
+   * with the same credentials, share one job and its rows, as determined by the {@code
+   * singleFlight} JDBC parameter. Off by default. See {@link BQSingleFlight}.
+   */
+  public boolean getSingleFlight() {
+    return this.singleFlight;
+  }
+
+  /** A hash of how this connection authenticates, so that only its peers share its queries. */
+  String getCredentialsFingerprint() {
+    return this.credentialsFingerprint;
+  }
+
+  /**
+   * Returns how long the results of this connection's queries stay in its {@link BQResultCache}, as
+   * determined by the {@code resultCacheTtlMs} JDBC parameter; or null if they aren't cached, the
+   * default. Connections with {@code queryCache=false} or a session don't use the cache.
+   */
+  public @Nullable Integer getResultCacheTtlMs() {
+    return this.resultCacheTtlMs;
+  }
+
+  /**
+   * Returns the cache that keeps the results of this connection's queries on disk, in the directory
+   * of the {@code resultCacheDir} JDBC parameter; or null if there is none, the default. It is only
+   * used along with {@code resultCacheTtlMs}.
+   */
+  public @Nullable BQDiskResultCache getDiskResultCache() {
+    return diskResultCache;
+  }
+
+  /**
+   * Returns whether cached results are only served if none of the tables they were read from
+   * changed since, as determined by the {@code resultCacheCheckTables} JDBC parameter (false by
+   * default). See {@link BQTableFreshness}.
+   */
+  public boolean getResultCacheCheckTables() {
+    return resultCacheCheckTables;
+  }
+
+  /**
+   * Returns how long the last check of whether a table changed stays good for, as determined by the
+   * {@code resultCacheCheckIntervalMs} JDBC parameter (5000 by default).
+   */
+  public int getResultCacheCheckIntervalMs() {
+    return resultCacheCheckIntervalMs;
+  }
+
+  /**
+   * Returns how long after a query ran its rows are read from its job's destination table when it
+   * runs again, rather than from a new job, as determined by the {@code reuseDestinationTablesMs}
+   * JDBC parameter; or null if they never are, the default. See {@link BQDestinationTables}.
+   */
+  public @Nullable Integer getReuseDestinationTablesMs() {
+    return reuseDestinationTablesMs;
+  }
+
+  /** Returns the cache that keeps the results of this connection's queries. */
+  public BQResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Gives this connection a result cache of its own, e.g. to keep its results apart from those of
+   * the driver's other connections.
+   */
+  public void setResultCache(BQResultCache resultCache) {
+    this.resultCache = Objects.requireNonNull(resultCache, "resultCache");
+  }
+
   /**
    *
    *
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Sets bigquery to null and isclosed to true if the connection is not already closed else no
-   * operation is performed
+   * Terminates the session, if any, and sets bigquery to null and isclosed to true if the
+   * connection is not already closed else no operation is performed
    */
   @Override
   public void close() throws SQLException {
     if (!this.isclosed) {
       this.cancelRunningQueries();
+      this.statementCache.clear();
+      this.endSession(this.bigquery);
       this.bigquery = null;
       this.isclosed = true;
     }
@@ -621,16 +1053,63 @@ public class BQConnection implements Connection {
     return getDataSet();
   }
 
+  /**
+   * Closes the connection without waiting: it is closed when this returns, while its running
+   * queries are cancelled, and its session ended, on {@code executor}.
+   */
+  @Override
   public void abort(Executor executor) throws SQLException {
-    throw new BQSQLException("Not implemented.");
+    if (executor == null) {
+      throw new BQSQLException("abort() needs an executor");
+    }
+    if (this.isclosed) {
+      return;
+    }
+    this.isclosed = true;
+    this.statementCache.clear();
+    // Without running queries the cancelling is done already; finishing up on the executor still
+    // keeps the blocking end of the session off the caller's thread.
+    cancelRunningQueries(executor)
+        .whenCompleteAsync(
+            (failed, e) -> {
+              if (e != null || failed > 0) {
+                logger.warn("Failed to cancel all running queries of an aborted connection", e);
+              }
+              this.endSession(this.bigquery);
+              this.bigquery = null;
+            },
+            executor);
   }
 
+  /**
+   * Sets how long each request to BigQuery may wait for data, for requests started from now on.
+   * This includes the long polls of running jobs, so it should be longer than the {@code
+   * pollTimeoutMs} property. The executor is not used: requests time out by themselves.
+   */
+  @Override
   public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
-    throw new BQSQLException("Not implemented.");
+    if (this.isclosed) {
+      throw new BQSQLException("This Connection is Closed");
+    }
+    if (executor == null) {
+      throw new BQSQLException("setNetworkTimeout() needs an executor");
+    }
+    if (milliseconds < 0) {
+      throw new BQSQLException("The network timeout can't be negative");
+    }
+    if (!Oauth2Bigquery.setReadTimeout(this.bigquery, milliseconds)) {
+      throw new BQSQLFeatureNotSupportedException("setNetworkTimeout(Executor, int)");
+    }
+    this.networkTimeout = milliseconds;
   }
 
+  /** Returns how long each request to BigQuery may wait for data, 0 meaning no limit. */
+  @Override
   public int getNetworkTimeout() throws SQLException {
-    throw new BQSQLException("Not implemented.");
+    if (this.isclosed) {
+      throw new BQSQLException("This Connection is Closed");
+    }
+    return this.networkTimeout;
   }
 
   /**
@@ -961,6 +1440,11 @@ public class BQConnection implements Connection {
     this.logger.debug(
         "Creating Prepared Statement project id is: " + projectId + " with parameters:");
     this.logger.debug(sql);
+    BQPreparedStatement cached =
+        statementCache.take(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    if (cached != null) {
+      return BQPreparedStatement.reuse(cached);
+    }
     PreparedStatement stm = new BQPreparedStatement(sql, projectId, this);
     return stm;
   }
@@ -994,6 +1478,10 @@ public class BQConnection implements Connection {
             + String.valueOf(resultSetConcurrency)
             + " with parameters:");
     this.logger.debug(sql);
+    BQPreparedStatement cached = statementCache.take(sql, resultSetType, resultSetConcurrency);
+    if (cached != null) {
+      return BQPreparedStatement.reuse(cached);
+    }
     PreparedStatement stm =
         new BQPreparedStatement(sql, projectId, this, resultSetType, resultSetConcurrency);
     return stm;
@@ -1277,18 +1765,139 @@ public class BQConnection implements Connection {
     return this.runningStatements.size();
   }
 
+  /**
+   * Cancels the queries of all running statements at once, and waits for the cancellations.
+   *
+   * @return how many statements we failed to cancel
+   */
   public int cancelRunningQueries() {
-    int numFailed = 0;
-    synchronized (this.runningStatements) {
-      for (BQStatementRoot stmt : this.runningStatements) {
-        try {
-          stmt.cancel();
-        } catch (SQLException e) {
-          numFailed++;
-        }
+    return cancelRunningQueries(BQExecutors.sharedQueryExecutor()).join();
+  }
+
+  /**
+   * Cancels the queries of all running statements at once, each on a task of its own on {@code
+   * executor}, without waiting for them.
+   *
+   * @return a future of how many statements we failed to cancel
+   */
+  public CompletableFuture<Integer> cancelRunningQueries(Executor executor) {
+    List<CompletableFuture<Boolean>> cancels = new ArrayList<>();
+    for (BQStatementRoot stmt : this.runningStatements) {
+      Supplier<Boolean> cancel =
+          () -> {
+            try {
+              stmt.cancel();
+              return true;
+            } catch (SQLException e) {
+              logger.warn("Failed to cancel a running query", e);
+              return false;
+            }
+          };
+      try {
+        cancels.add(CompletableFuture.supplyAsync(cancel, executor));
+      } catch (RejectedExecutionException e) {
+        cancels.add(CompletableFuture.completedFuture(cancel.get()));
       }
     }
-    return numFailed;
+    return CompletableFuture.allOf(cancels.toArray(new CompletableFuture<?>[0]))
+        .thenApply(done -> (int) cancels.stream().filter(cancelled -> !cancelled.join()).count());
+  }
+
+  /**
+   * Runs several queries concurrently on this connection.
+   *
+   * <p>At most {@code maxConcurrentQueries} (a connection property, 8 by default) run at any one
+   * time; the rest start as earlier ones finish. Each query is run as by {@link
+   * BQStatement#executeQueryAsync(String)} on a statement of its own.
+   *
+   * @param querySqls the queries to run
+   * @return one future per query, in the order of {@code querySqls}, each completing with the
+   *     query's result set as soon as that query is done
+   * @throws SQLException if the connection is closed
+   */
+  public List<CompletableFuture<ResultSet>> executeAll(List<String> querySqls) throws SQLException {
+    if (this.isclosed) {
+      throw new BQSQLException("Connection is closed.");
+    }
+    return BQConcurrentQueries.run(this, querySqls, maxConcurrentQueries);
+  }
+
+  /**
+   * Runs one query as several concurrent shards and merges their rows into one forward only result
+   * set.
+   *
+   * <p>{@code queryTemplate} must contain {@value BQShardedResultSet#SHARD_PLACEHOLDER}; each shard
+   * runs the template with the placeholder replaced by one of {@code shardPredicates} (e.g. {@code
+   * "SELECT * FROM t WHERE {shard}"} with predicates {@code "MOD(id, 4) = 0"}, {@code "MOD(id, 4) =
+   * 1"}, ...). The shards run as by {@link #executeAll(List)}.
+   *
+   * @param queryTemplate the query to shard
+   * @param shardPredicates one predicate per shard
+   * @param mergeMode whether to return the shards' rows in shard order or as they arrive
+   * @param bufferPagesPerShard how many pages of rows to fetch ahead for each shard
+   * @return the merged result set, once the first shard has results
+   * @throws SQLException if the connection is closed, or the first shard to finish failed
+   */
+  public ResultSet executeSharded(
+      String queryTemplate,
+      List<String> shardPredicates,
+      BQShardedResultSet.MergeMode mergeMode,
+      int bufferPagesPerShard)
+      throws SQLException {
+    if (this.isclosed) {
+      throw new BQSQLException("Connection is closed.");
+    }
+    return BQShardedResultSet.execute(
+        this, queryTemplate, shardPredicates, mergeMode, bufferPagesPerShard);
+  }
+
+  /** Like {@link #executeSharded(String, List, BQShardedResultSet.MergeMode, int)}, interleaved. */
+  public ResultSet executeSharded(String queryTemplate, List<String> shardPredicates)
+      throws SQLException {
+    return executeSharded(
+        queryTemplate,
+        shardPredicates,
+        BQShardedResultSet.MergeMode.INTERLEAVED,
+        BQShardedResultSet.DEFAULT_BUFFER_PAGES_PER_SHARD);
+  }
+
+  /**
+   * Keeps a closed poolable prepared statement for reuse by a later {@code prepareStatement} of the
+   * same SQL.
+   *
+   * @return whether the statement was kept
+   */
+  boolean returnToStatementCache(BQPreparedStatement statement) {
+    return !this.isclosed && statementCache.offer(statement);
+  }
+
+  /** How many {@code prepareStatement} calls were served from the statement cache. */
+  public long getStatementCacheHits() {
+    return statementCache.getHits();
+  }
+
+  /** How many {@code prepareStatement} calls had to build a new statement despite the cache. */
+  public long getStatementCacheMisses() {
+    return statementCache.getMisses();
+  }
+
+  public int getMaxConcurrentQueries() {
+    return maxConcurrentQueries;
+  }
+
+  /** The most bytes a dry run may say a query processes for us to run it, or null for no limit. */
+  public @Nullable Long getPreflightMaxBytes() {
+    return preflightMaxBytes;
+  }
+
+  /**
+   * Sets the most bytes a dry run may say a query processes for us to run it. Queries over the
+   * limit fail with a {@link BQQueryTooExpensiveException} without creating a job.
+   *
+   * @param preflightMaxBytes the limit, or null to run queries without a dry run first
+   */
+  public void setPreflightMaxBytes(@Nullable Long preflightMaxBytes) {
+    this.preflightMaxBytes = preflightMaxBytes;
   }
 
   public Long getMaxBillingBytes() {
@@ -1303,6 +1912,137 @@ public class BQConnection implements Connection {
     return jobCreationMode;
   }
 
+  /**
+   * Refuses to run {@code sql} if a dry run says it would process more than {@code
+   * preflightMaxBytes}. Does nothing if that isn't set.
+   *
+   * @param positionalParameters whether {@code sql} has {@code ?} parameters
+   * @param priority the priority of the query, which its dry run waits in line with
+   * @param tenant who the query is run for, see {@link BQQueryDispatcher}
+   * @throws BQQueryTooExpensiveException if the query would process too much
+   */
+  void checkPreflight(
+      String sql, boolean positionalParameters, QueryPriority priority, String tenant)
+      throws SQLException {
+    Long maxBytes = this.preflightMaxBytes;
+    if (maxBytes == null) {
+      return;
+    }
+    BQQueryEstimate estimate =
+        new BQQueryEstimate(dryRun(sql, positionalParameters, priority, tenant));
+    Long bytes = estimate.getTotalBytesProcessed();
+    if (bytes != null && bytes > maxBytes) {
+      throw new BQQueryTooExpensiveException(estimate, maxBytes);
+    }
+  }
+
+  /**
+   * Dry runs {@code sql} against the current default dataset, or returns what the last dry run of
+   * the same (normalized) SQL against the same dataset said, if it was recent enough.
+   *
+   * @param positionalParameters whether {@code sql} has {@code ?} parameters for BigQuery to infer
+   *     the types of
+   * @throws BQSQLException if the query is invalid or the dry run fails
+   */
+  BQDryRun dryRun(String sql, boolean positionalParameters) throws SQLException {
+    return dryRun(sql, positionalParameters, priority, BQQueryDispatcher.DEFAULT_TENANT);
+  }
+
+  /**
+   * Like {@link #dryRun(String, boolean)}, waiting for a turn from the connection's {@link
+   * BQQueryDispatcher} as a query of {@code priority} for {@code tenant} before asking BigQuery.
+   * Answers from the cache don't wait.
+   */
+  BQDryRun dryRun(String sql, boolean positionalParameters, QueryPriority priority, String tenant)
+      throws SQLException {
+    String dataSet = getDataSet();
+    String dataSetProjectId = getDataSetProjectId();
+    String key =
+        dataSetProjectId
+            + "."
+            + dataSet
+            + (positionalParameters ? "\n?\n" : "\n\n")
+            + BQSqlTemplate.normalize(sql);
+    try {
+      return dryRuns.get(
+          key,
+          () -> {
+            BQQueryDispatcher dispatcher = getQueryDispatcher();
+            BQQueryDispatcher.Turn turn = dispatcher.acquire(priority, tenant);
+            try {
+              turn.get();
+              return BQDryRun.fromJob(
+                  BQSupportFuncts.dryRunQuery(
+                      getBigquery(),
+                      projectId,
+                      sql,
+                      dataSet,
+                      dataSetProjectId,
+                      useLegacySql,
+                      positionalParameters,
+                      sessionId));
+            } finally {
+              dispatcher.relinquish(turn);
+            }
+          });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new BQSQLException("Dry run failed for query: " + sql, e.getCause());
+    }
+  }
+
+  /** Returns {@code sql} split on its parameter markers, parsing it only if we haven't yet. */
+  BQSqlTemplate getSqlTemplate(String sql) {
+    return sqlTemplates.getUnchecked(sql);
+  }
+
+  /** Returns the waiter used to wait for the jobs of this connection's statements to complete. */
+  public BQJobWaiter getJobWaiter() {
+    return jobWaiter;
+  }
+
+  /**
+   * Returns the priority of this connection's queries, as determined by the {@code priority} JDBC
+   * parameter. Statements may override it with {@link BQStatementRoot#setPriority}.
+   */
+  public QueryPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Returns the name of the label, set by the {@code admissionLabel} JDBC parameter, whose value
+   * names the tenant the {@link BQQueryDispatcher} shares running queries out by; or null if all of
+   * this connection's queries belong to {@link BQQueryDispatcher#DEFAULT_TENANT}.
+   */
+  public @Nullable String getAdmissionLabel() {
+    return admissionLabel;
+  }
+
+  /** Returns the dispatcher that decides when this connection's queries may start. */
+  public BQQueryDispatcher getQueryDispatcher() {
+    return queryDispatcher;
+  }
+
+  /**
+   * Gives this connection a dispatcher of its own, e.g. to keep its lanes apart from those of the
+   * driver's other connections. Queries that are already running or waiting are not moved.
+   */
+  public void setQueryDispatcher(BQQueryDispatcher queryDispatcher) {
+    this.queryDispatcher = Objects.requireNonNull(queryDispatcher, "queryDispatcher");
+  }
+
+  /** Returns the executor that runs the blocking part of this connection's queries. */
+  public ExecutorService getQueryExecutor() {
+    return queryExecutor;
+  }
+
+  /**
+   * Replaces the executor that runs the blocking part of this connection's queries. The caller
+   * keeps ownership of {@code queryExecutor}: it is not shut down when the connection is closed.
+   */
+  public void setQueryExecutor(ExecutorService queryExecutor) {
+    this.queryExecutor = Objects.requireNonNull(queryExecutor, "queryExecutor");
+  }
+
   /**
    * Returns a DatasetReference extracted from the input dataset expression, which may optionally
    * include a project id reference.
@@ -24,9 +24,11 @@ package net.starschema.clouddb.jdbc;
 
 import com.google.api.services.bigquery.model.DatasetList;
 import com.google.api.services.bigquery.model.DatasetList.Datasets;
+import com.google.api.services.bigquery.model.DatasetReference;
 import com.google.api.services.bigquery.model.ProjectList.Projects;
 import com.google.api.services.bigquery.model.Table;
 import com.google.api.services.bigquery.model.TableFieldSchema;
+import com.google.api.services.bigquery.model.TableList.Tables;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -34,6 +36,7 @@ import java.sql.ResultSet;
 import java.sql.RowIdLifetime;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import net.starschema.clouddb.jdbc.DMDResultSet.DMDResultSetType;
 import org.slf4j.Logger;
@@ -55,6 +58,9 @@ class BQDatabaseMetadata implements DatabaseMetaData {
   /** We currently doesn't support multiple open resultsets. */
   static boolean multipleOpenResultsSupported = false;
 
+  /** The schema in which {@link #getTables} lists the temp tables of the connection's session. */
+  static final String SESSION_SCHEMA = "_SESSION";
+
   /**
    * Constructor that initializes variables
    *
@@ -1879,6 +1885,23 @@ class BQDatabaseMetadata implements DatabaseMetaData {
     // TODO we might need this more implemented.
   }
 
+  /**
+   * The temp tables of the connection's session that match the given patterns, in the {@link
+   * #SESSION_SCHEMA} schema through which queries refer to them. None if there is no session.
+   */
+  private List<Tables> getSessionTables(
+      String catalog, String schemaPattern, String tableNamePattern) throws IOException {
+    DatasetReference sessionDataset = this.Connection.getSessionDataset();
+    if (sessionDataset == null
+        || (catalog != null
+            && !CatalogName.toProjectId(catalog).equals(sessionDataset.getProjectId()))
+        || (schemaPattern != null
+            && !BQSupportFuncts.matchPattern(SESSION_SCHEMA, schemaPattern))) {
+      return Collections.emptyList();
+    }
+    return BQSupportFuncts.getSessionTables(this.Connection, sessionDataset, tableNamePattern);
+  }
+
   /** {@inheritDoc} */
   @Override
   public ResultSet getTables(
@@ -1917,6 +1940,7 @@ class BQDatabaseMetadata implements DatabaseMetaData {
             + typesToLog
             + ")");
     List<Table> tables = null;
+    List<Tables> sessionTables;
     try {
       tables =
           BQSupportFuncts.getTables(
@@ -1926,12 +1950,26 @@ class BQDatabaseMetadata implements DatabaseMetaData {
             BQSupportFuncts.getTables(
                 this.Connection, CatalogName.toProjectId(tableNamePattern), schemaPattern, catalog);
       }
+      sessionTables = getSessionTables(catalog, schemaPattern, tableNamePattern);
     } catch (IOException e) {
       throw new BQSQLException(e);
     }
-    if (tables != null && tables.size() != 0) {
-      logger.debug("got result, size: " + tables.size());
-      String[][] data = new String[tables.size()][10];
+    if (tables == null) {
+      tables = Collections.emptyList();
+    }
+    if (tables.size() + sessionTables.size() != 0) {
+      logger.debug("got result, size: " + (tables.size() + sessionTables.size()));
+      String[][] data = new String[tables.size() + sessionTables.size()][10];
+      for (int i = 0; i < sessionTables.size(); i++) {
+        String[] row = data[tables.size() + i];
+        row[0] = sessionTables.get(i).getTableReference().getProjectId();
+        row[1] = SESSION_SCHEMA;
+        row[2] = sessionTables.get(i).getTableReference().getTableId();
+        row[3] = "TABLE";
+        row[6] = row[0];
+        row[7] = row[1];
+        row[8] = row[2];
+      }
       for (int i = 0; i < tables.size(); i++) {
         data[i][0] = tables.get(i).getTableReference().getProjectId();
         data[i][1] = tables.get(i).getTableReference().getDatasetId();
@@ -2900,11 +2938,11 @@ class BQDatabaseMetadata implements DatabaseMetaData {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Returns false
+   * Returns true, a script gives one result per statement
    */
   @Override
   public boolean supportsMultipleResultSets() throws SQLException {
-    return false;
+    return true;
   }
 
   /**
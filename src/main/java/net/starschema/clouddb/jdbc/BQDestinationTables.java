@@ -0,0 +1,227 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.TableDataList;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the last job of each query, for connections with the {@code reuseDestinationTablesMs}
+ * property, so that running the query again reads the rows from that job's anonymous destination
+ * table with {@code tabledata.list}, rather than creating another job.
+ *
+ * <p>A job is reused for as long as the connection that ran it asked for. We look up its
+ * destination table once, the first time it is reused; only the jobs of SELECT statements have one
+ * worth reading. BigQuery deletes anonymous tables after about a day, so if the table is gone by
+ * the time we read it, the query runs as usual.
+ */
+final class BQDestinationTables {
+
+  private static final Logger logger = LoggerFactory.getLogger(BQDestinationTables.class);
+
+  private static final BQDestinationTables SHARED = new BQDestinationTables();
+
+  /** Only ask for the parts of the job we actually read. */
+  private static final String JOB_FIELDS =
+      "configuration(query(destinationTable)),statistics(query(statementType))";
+
+  /** How many queries to remember the jobs of. */
+  private static final int MAX_ENTRIES = 10000;
+
+  /** The last job of a query, and what we know about its destination table. */
+  static final class Entry {
+    final JobReference job;
+    final TableSchema schema;
+    final long validUntilNanos;
+
+    private boolean resolved = false;
+    private @Nullable TableReference destinationTable;
+
+    Entry(JobReference job, TableSchema schema, long validForMillis) {
+      this.job = job;
+      this.schema = schema;
+      this.validUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(validForMillis);
+    }
+
+    boolean isExpired() {
+      return System.nanoTime() - validUntilNanos >= 0;
+    }
+
+    /** Returns the destination table of the job, looking it up the first time; null if none. */
+    synchronized @Nullable TableReference getDestinationTable(Bigquery bigquery, String projectId) {
+      if (!resolved) {
+        resolved = true;
+        try {
+          destinationTable =
+              destinationOf(
+                  bigquery
+                      .jobs()
+                      .get(
+                          job.getProjectId() != null ? job.getProjectId() : projectId,
+                          job.getJobId())
+                      .setLocation(job.getLocation())
+                      .setFields(JOB_FIELDS)
+                      .execute());
+        } catch (IOException e) {
+          logger.warn("Failed to look up the destination table of job " + job.getJobId(), e);
+        }
+      }
+      return destinationTable;
+    }
+  }
+
+  /** The last job of each query, least recently used first. */
+  private final LinkedHashMap<BQResultCache.Key, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private final AtomicLong reuses = new AtomicLong();
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  /** The destination tables of the driver. */
+  static BQDestinationTables shared() {
+    return SHARED;
+  }
+
+  /** Returns the destination table of {@code job} if its rows can be read from it, or null. */
+  @Nullable
+  static TableReference destinationOf(Job job) {
+    JobConfiguration configuration = job.getConfiguration();
+    JobStatistics statistics = job.getStatistics();
+    if (configuration == null
+        || configuration.getQuery() == null
+        || statistics == null
+        || statistics.getQuery() == null
+        || !"SELECT".equals(statistics.getQuery().getStatementType())) {
+      // DML, DDL and scripts don't leave their rows in the destination table
+      return null;
+    }
+    return configuration.getQuery().getDestinationTable();
+  }
+
+  /**
+   * Remembers the job of {@code resultSet}, fresh from running the query of {@code key}, for {@code
+   * validForMillis}; if it ran as a job.
+   */
+  void record(BQResultCache.Key key, ResultSet resultSet, long validForMillis) {
+    if (resultSet instanceof BQScrollableResultSet) {
+      BQScrollableResultSet scrollable = (BQScrollableResultSet) resultSet;
+      if (scrollable.getJobReference() != null) {
+        put(key, new Entry(scrollable.getJobReference(), scrollable.getSchema(), validForMillis));
+      }
+    } else if (resultSet instanceof BQForwardOnlyResultSet
+        && !(resultSet instanceof BQShardedResultSet)) {
+      BQForwardOnlyResultSet forwardOnly = (BQForwardOnlyResultSet) resultSet;
+      Job job = forwardOnly.getCompletedJob();
+      if (job != null && job.getJobReference() != null) {
+        put(key, new Entry(job.getJobReference(), forwardOnly.getSchema(), validForMillis));
+      }
+    }
+  }
+
+  void put(BQResultCache.Key key, Entry entry) {
+    synchronized (entries) {
+      entries.put(key, entry);
+      if (entries.size() > MAX_ENTRIES) {
+        entries.remove(entries.keySet().iterator().next());
+      }
+    }
+  }
+
+  /** Returns the last job of the query of {@code key}, or null if there is none (anymore). */
+  @Nullable
+  Entry get(BQResultCache.Key key) {
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.isExpired()) {
+        entries.remove(key);
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  /** Stops reusing {@code entry}, which {@link #get} just returned for {@code key}. */
+  void forget(BQResultCache.Key key, Entry entry) {
+    synchronized (entries) {
+      entries.remove(key, entry);
+    }
+  }
+
+  /**
+   * Reads the rows of {@code entry}'s job from its destination table, into a result set of the kind
+   * {@code statement} asks for.
+   *
+   * @return the result set, or null if the job has no destination table (anymore)
+   */
+  @Nullable
+  ResultSet read(BQStatementRoot statement, Entry entry) throws SQLException {
+    Bigquery bigquery = statement.connection.getBigquery();
+    TableReference table = entry.getDestinationTable(bigquery, statement.projectId);
+    TableDataList firstPage = null;
+    if (table != null) {
+      try {
+        firstPage = BQTableDataResultSet.list(bigquery, table, null);
+      } catch (IOException e) {
+        logger.debug("The destination table of job " + entry.job.getJobId() + " is gone", e);
+      }
+    }
+    if (firstPage == null) {
+      fallbacks.incrementAndGet();
+      return null;
+    }
+    reuses.incrementAndGet();
+    if (statement.resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE) {
+      return new BQTableDataResultSet(statement, entry.job, entry.schema, table, firstPage);
+    }
+    // scrollable result sets need all of their rows at hand
+    List<TableRow> rows = new ArrayList<>();
+    for (TableDataList page = firstPage; ; ) {
+      if (page.getRows() != null) {
+        rows.addAll(page.getRows());
+      }
+      if (page.getPageToken() == null) {
+        break;
+      }
+      try {
+        page = BQTableDataResultSet.list(bigquery, table, page.getPageToken());
+      } catch (IOException e) {
+        throw new BQSQLException("Failed to fetch results", e);
+      }
+    }
+    return new BQScrollableResultSet(
+        rows, statement, entry.schema, 0L, true, null, null, entry.job, null);
+  }
+
+  /** Returns how many queries we remember the last job of. */
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Returns how many queries were answered from the destination table of an earlier job. */
+  long getReuses() {
+    return reuses.get();
+  }
+
+  /** Returns how many queries ran after all, as the earlier job had no destination table left. */
+  long getFallbacks() {
+    return fallbacks.get();
+  }
+}
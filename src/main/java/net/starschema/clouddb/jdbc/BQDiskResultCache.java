@@ -0,0 +1,838 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.Data;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the rows of queries in files under a directory, so that they outlive the application:
+ * connections with the {@code resultCacheDir} property look here when the in-memory {@link
+ * BQResultCache} has no rows for a query, and write the rows of the queries they run here too.
+ *
+ * <p>Each result is a segment file of its own, named after the {@link
+ * BQResultCache.Key#fingerprint() fingerprint} of its query: the rows in a compact binary format,
+ * followed by a footer with the schema, the expiry time and the rest of what the result set tells
+ * about them. Segments are written to a temporary file, forced to disk and only then renamed into
+ * place, so that a crash leaves either all of a segment or nothing. For reading, segments are
+ * memory-mapped and their rows decoded a page at a time, as the application goes through them. The
+ * footer has a checksum, which the rows don't: rows damaged after the segment was renamed into
+ * place only show once they fail to decode, as a {@link SQLException} from the result set.
+ *
+ * <p>Where the file system has POSIX permissions, the directory is created for its owner only, and
+ * so is every segment, as the rows may hold data other users of the machine must not read.
+ *
+ * <p>The index of the segments is built from the directory when the cache is opened. While the
+ * segments take up more than {@link #getMaxBytes()}, the least recently used ones are deleted.
+ */
+public final class BQDiskResultCache {
+
+  /** How many bytes of segments the cache holds by default. */
+  public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+  /** How big a single result may be to get cached, by default. */
+  public static final long DEFAULT_MAX_ENTRY_BYTES = 256L * 1024 * 1024;
+
+  /** How big a segment may be at most, as we map it into memory in one go. */
+  private static final long MAX_SEGMENT_BYTES = 1024L * 1024 * 1024;
+
+  /** How many rows the result sets over a segment decode at a time. */
+  static final int PAGE_ROWS = 5000;
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY =
+      PosixFilePermissions.fromString("rwx------");
+  private static final Set<PosixFilePermission> OWNER_ONLY_FILE =
+      PosixFilePermissions.fromString("rw-------");
+
+  /** Temporary files this old were left behind by writers that died. */
+  private static final long ABANDONED_TEMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  /** Ends every segment, after the length and the checksum of its footer. */
+  private static final int MAGIC = 0x42514352;
+
+  private static final int VERSION = 1;
+  private static final int TRAILER_BYTES = 12;
+
+  // Tags of the values in a row
+  private static final byte NULL = 0;
+  private static final byte JSON_NULL = 1;
+  private static final byte STRING = 2;
+  private static final byte LIST = 3;
+  private static final byte MAP = 4;
+
+  private static final JsonFactory JSON_FACTORY = new GsonFactory();
+
+  private static final Logger logger = LoggerFactory.getLogger(BQDiskResultCache.class);
+
+  /** The caches opened so far, by directory. */
+  private static final Map<Path, BQDiskResultCache> OPEN = new HashMap<>();
+
+  /** A segment in the index. */
+  private static final class Segment {
+    final Path path;
+    final long bytes;
+    final long expiresAtMillis;
+
+    Segment(Path path, long bytes, long expiresAtMillis) {
+      this.path = path;
+      this.bytes = bytes;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAtMillis;
+    }
+  }
+
+  /** What the footer of a segment tells about its rows. */
+  static final class Footer {
+    final long expiresAtMillis;
+    final long rowCount;
+    final long rowBytes;
+    final TableSchema schema;
+    final @Nullable JobReference jobReference;
+    final @Nullable String queryId;
+    final @Nullable Long totalBytesProcessed;
+    final @Nullable Boolean cacheHit;
+
+    private Footer(long rowBytes, DataInputStream in) throws IOException {
+      if (in.readInt() != VERSION) {
+        throw new IOException("Unknown version of segment");
+      }
+      this.rowBytes = rowBytes;
+      this.expiresAtMillis = in.readLong();
+      this.rowCount = in.readLong();
+      this.schema = JSON_FACTORY.fromString(readString(in), TableSchema.class);
+      String jobReference = readString(in);
+      this.jobReference =
+          jobReference == null ? null : JSON_FACTORY.fromString(jobReference, JobReference.class);
+      this.queryId = readString(in);
+      this.totalBytesProcessed = in.readBoolean() ? in.readLong() : null;
+      this.cacheHit = in.readBoolean() ? in.readBoolean() : null;
+    }
+  }
+
+  /** A segment, mapped into memory. */
+  static final class Contents {
+    final Footer footer;
+    private final ByteBuffer rows;
+    private final String fingerprint;
+    private final Segment segment;
+
+    private Contents(Footer footer, ByteBuffer rows, String fingerprint, Segment segment) {
+      this.footer = footer;
+      this.rows = rows;
+      this.fingerprint = fingerprint;
+      this.segment = segment;
+    }
+
+    /** Returns a reader over the rows, from the first one. */
+    RowReader rows() {
+      return new RowReader(rows.duplicate(), footer.rowCount);
+    }
+
+    @Nullable
+    Job getJob() {
+      return footer.jobReference == null
+          ? null
+          : LazyJobStatistics.jobFromReference(footer.jobReference);
+    }
+
+    /** A result set over the rows, of the kind {@code statement} asks for. */
+    ResultSet toResultSet(BQStatementRoot statement) throws SQLException {
+      if (statement.resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE) {
+        return new BQDiskResultSet(statement, this);
+      }
+      // scrollable result sets need all of their rows at hand
+      List<TableRow> all = new ArrayList<>();
+      RowReader reader = rows();
+      for (List<TableRow> page = reader.nextPage(); page != null; page = reader.nextPage()) {
+        all.addAll(page);
+      }
+      return new BQScrollableResultSet(
+          all,
+          statement,
+          footer.schema,
+          footer.totalBytesProcessed,
+          footer.cacheHit,
+          null,
+          null,
+          footer.jobReference,
+          footer.queryId);
+    }
+  }
+
+  /** Decodes the rows of a segment a page at a time. */
+  static final class RowReader {
+    private final ByteBuffer buffer;
+    private long remaining;
+
+    private RowReader(ByteBuffer buffer, long rowCount) {
+      this.buffer = buffer;
+      this.remaining = rowCount;
+    }
+
+    /**
+     * Decodes the next page of rows.
+     *
+     * @return the page, or null if there are no more
+     */
+    @Nullable
+    List<TableRow> nextPage() throws SQLException {
+      if (remaining == 0) {
+        return null;
+      }
+      int count = (int) Math.min(PAGE_ROWS, remaining);
+      List<TableRow> page = new ArrayList<>(count);
+      try {
+        for (int i = 0; i < count; i++) {
+          page.add(readRow(buffer));
+        }
+      } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+        throw new BQSQLException("The rows in the result cache are corrupt", e);
+      }
+      remaining -= count;
+      return page;
+    }
+  }
+
+  /**
+   * Writes the rows of a result set to a segment as the application reads them, and puts the
+   * segment into place once it has read them all.
+   */
+  final class Writer implements BQResultCache.Recording {
+    private final String fingerprint;
+    private final long expiresAtMillis;
+    private final TableSchema schema;
+    private final @Nullable JobReference jobReference;
+    private final @Nullable String queryId;
+    private final @Nullable Long totalBytesProcessed;
+    private final @Nullable Boolean cacheHit;
+
+    private @Nullable Path temp;
+    private @Nullable FileChannel channel;
+    private @Nullable DataOutputStream out;
+    private long rowCount = 0;
+
+    Writer(
+        BQResultCache.Key key,
+        long ttlMillis,
+        TableSchema schema,
+        @Nullable JobReference jobReference,
+        @Nullable String queryId,
+        @Nullable Long totalBytesProcessed,
+        @Nullable Boolean cacheHit) {
+      this.fingerprint = key.fingerprint();
+      this.expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+      this.schema = schema;
+      this.jobReference = jobReference;
+      this.queryId = queryId;
+      this.totalBytesProcessed = totalBytesProcessed;
+      this.cacheHit = cacheHit;
+    }
+
+    private DataOutputStream open() throws IOException {
+      if (out == null) {
+        temp = directory.resolve(fingerprint + "-" + UUID.randomUUID() + TEMP_SUFFIX);
+        channel =
+            FileChannel.open(
+                temp,
+                EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                ownerOnly(OWNER_ONLY_FILE));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      }
+      return out;
+    }
+
+    @Override
+    public boolean add(List<TableRow> page) {
+      try {
+        DataOutputStream out = open();
+        for (TableRow row : page) {
+          writeRow(out, row);
+        }
+        rowCount += page.size();
+        if (out.size() > maxEntryBytes) {
+          abandon();
+          return false;
+        }
+        return true;
+      } catch (IOException e) {
+        logger.warn("Failed to write to the result cache in " + directory, e);
+        abandon();
+        return false;
+      }
+    }
+
+    @Override
+    public void finish() {
+      try {
+        DataOutputStream out = open();
+        writeFooter(out);
+        out.flush();
+        channel.force(true);
+        out.close();
+        this.out = null;
+        this.channel = null;
+        Path segment = directory.resolve(fingerprint + SEGMENT_SUFFIX);
+        try {
+          Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING);
+        }
+        temp = null;
+        put(fingerprint, new Segment(segment, Files.size(segment), expiresAtMillis));
+      } catch (IOException e) {
+        logger.warn("Failed to write to the result cache in " + directory, e);
+        abandon();
+      }
+    }
+
+    private void writeFooter(DataOutputStream out) throws IOException {
+      ByteArrayOutputStream footer = new ByteArrayOutputStream();
+      DataOutputStream footerOut = new DataOutputStream(footer);
+      footerOut.writeInt(VERSION);
+      footerOut.writeLong(expiresAtMillis);
+      footerOut.writeLong(rowCount);
+      writeString(footerOut, JSON_FACTORY.toString(schema));
+      writeString(footerOut, jobReference == null ? null : JSON_FACTORY.toString(jobReference));
+      writeString(footerOut, queryId);
+      footerOut.writeBoolean(totalBytesProcessed != null);
+      if (totalBytesProcessed != null) {
+        footerOut.writeLong(totalBytesProcessed);
+      }
+      footerOut.writeBoolean(cacheHit != null);
+      if (cacheHit != null) {
+        footerOut.writeBoolean(cacheHit);
+      }
+      byte[] bytes = footer.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      out.write(bytes);
+      out.writeInt(bytes.length);
+      out.writeInt((int) crc.getValue());
+      out.writeInt(MAGIC);
+    }
+
+    @Override
+    public void abandon() {
+      try {
+        if (out != null) {
+          out.close();
+        } else if (channel != null) {
+          channel.close();
+        }
+      } catch (IOException e) {
+        logger.debug("Failed to close " + temp, e);
+      }
+      out = null;
+      channel = null;
+      if (temp != null) {
+        deleteQuietly(temp);
+        temp = null;
+      }
+    }
+  }
+
+  private final Path directory;
+  /** Whether the file system of {@link #directory} has POSIX permissions. */
+  private final boolean posix;
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+
+  /** The segments, by fingerprint, least recently used first. */
+  private final LinkedHashMap<String, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long bytes = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong expirations = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Opens a cache in {@code directory}, creating the directory if need be, and indexes the segments
+   * already in it. There should be only one cache per directory in an application, see {@link
+   * #open(Path, long)}.
+   *
+   * @param maxBytes how many bytes of segments to hold at most
+   * @param maxEntryBytes how big a single result may be to get cached
+   * @throws IOException if the directory can't be created or read
+   */
+  BQDiskResultCache(Path directory, long maxBytes, long maxEntryBytes) throws IOException {
+    if (maxBytes <= 0 || maxEntryBytes <= 0) {
+      throw new IllegalArgumentException("The sizes of a result cache must be positive");
+    }
+    this.directory = directory;
+    this.posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min(Math.min(maxEntryBytes, maxBytes), MAX_SEGMENT_BYTES);
+    Files.createDirectories(directory, ownerOnly(OWNER_ONLY_DIRECTORY));
+    index();
+  }
+
+  /** The attributes to create a file with {@code permissions} with, if the file system has them. */
+  private FileAttribute<?>[] ownerOnly(Set<PosixFilePermission> permissions) {
+    return posix
+        ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(permissions)}
+        : new FileAttribute<?>[0];
+  }
+
+  /**
+   * Returns the cache in {@code directory}, opening it if no connection did yet. The first
+   * connection to open it decides how big it may get.
+   */
+  static BQDiskResultCache open(Path directory, long maxBytes) throws IOException {
+    Path normalized = directory.toAbsolutePath().normalize();
+    synchronized (OPEN) {
+      BQDiskResultCache cache = OPEN.get(normalized);
+      if (cache == null) {
+        cache = new BQDiskResultCache(normalized, maxBytes, DEFAULT_MAX_ENTRY_BYTES);
+        OPEN.put(normalized, cache);
+      }
+      return cache;
+    }
+  }
+
+  /** Indexes the segments in the directory, and cleans up what crashes and expiry left behind. */
+  private void index() throws IOException {
+    long now = System.currentTimeMillis();
+    List<Segment> found = new ArrayList<>();
+    Map<Segment, Long> lastUsed = new HashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          if (name.endsWith(TEMP_SUFFIX)) {
+            if (now - Files.getLastModifiedTime(file).toMillis() > ABANDONED_TEMP_MILLIS) {
+              deleteQuietly(file);
+            }
+          } else if (name.endsWith(SEGMENT_SUFFIX)) {
+            Footer footer = readFooter(file);
+            if (footer == null || footer.expiresAtMillis <= now) {
+              deleteQuietly(file);
+              continue;
+            }
+            Segment segment = new Segment(file, Files.size(file), footer.expiresAtMillis);
+            lastUsed.put(segment, Files.getLastModifiedTime(file).toMillis());
+            found.add(segment);
+          }
+        } catch (IOException e) {
+          // another application sharing the directory got to it first
+          logger.debug("Failed to index " + file, e);
+        }
+      }
+    }
+    found.sort(Comparator.comparing(lastUsed::get));
+    for (Segment segment : found) {
+      String name = segment.path.getFileName().toString();
+      put(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), segment);
+    }
+  }
+
+  /** Returns the cached rows of the query of {@code key}, or null if there are none (anymore). */
+  @Nullable
+  Contents get(BQResultCache.Key key) {
+    String fingerprint = key.fingerprint();
+    Segment segment;
+    synchronized (segments) {
+      segment = segments.get(fingerprint);
+      if (segment != null && segment.isExpired()) {
+        remove(fingerprint, segment);
+        expirations.incrementAndGet();
+        segment = null;
+      }
+    }
+    Contents contents = segment == null ? null : map(fingerprint, segment);
+    if (contents == null) {
+      if (segment != null) {
+        // deleted or damaged behind our back
+        synchronized (segments) {
+          remove(fingerprint, segment);
+        }
+      }
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    try {
+      // so that the next index of the directory knows it was used
+      Files.setLastModifiedTime(segment.path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      logger.debug("Failed to touch " + segment.path, e);
+    }
+    return contents;
+  }
+
+  /**
+   * Writes the rows of {@code resultSet}, fresh from running the query of {@code key}, to a segment
+   * that expires in {@code ttlMillis}: right away if we have them all, or once the application has
+   * read them.
+   */
+  void offer(BQResultCache.Key key, long ttlMillis, ResultSet resultSet) {
+    if (resultSet instanceof BQScrollableResultSet) {
+      BQScrollableResultSet scrollable = (BQScrollableResultSet) resultSet;
+      Writer writer =
+          new Writer(
+              key,
+              ttlMillis,
+              scrollable.getSchema(),
+              scrollable.getJobReference(),
+              scrollable.getQueryId(),
+              scrollable.getTotalBytesProcessed(),
+              scrollable.getCacheHit());
+      if (writer.add(scrollable.getRows())) {
+        writer.finish();
+      }
+    } else if (resultSet instanceof BQForwardOnlyResultSet
+        && !(resultSet instanceof BQShardedResultSet)
+        && !(resultSet instanceof BQDiskResultSet)) {
+      BQForwardOnlyResultSet forwardOnly = (BQForwardOnlyResultSet) resultSet;
+      Job job = forwardOnly.getCompletedJob();
+      forwardOnly.record(
+          new Writer(
+              key,
+              ttlMillis,
+              forwardOnly.getSchema(),
+              job == null ? null : job.getJobReference(),
+              forwardOnly.getQueryId(),
+              forwardOnly.getTotalBytesProcessed(),
+              forwardOnly.getCacheHit()));
+    }
+  }
+
+  private void put(String fingerprint, Segment segment) {
+    synchronized (segments) {
+      Segment replaced = segments.put(fingerprint, segment);
+      if (replaced != null) {
+        // the new segment took the place of its file
+        bytes -= replaced.bytes;
+      }
+      bytes += segment.bytes;
+      Iterator<Segment> eldest = segments.values().iterator();
+      while (bytes > maxBytes) {
+        Segment evicted = eldest.next();
+        eldest.remove();
+        bytes -= evicted.bytes;
+        deleteQuietly(evicted.path);
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private void remove(String fingerprint, Segment segment) {
+    if (segments.remove(fingerprint, segment)) {
+      bytes -= segment.bytes;
+      deleteQuietly(segment.path);
+    }
+  }
+
+  /**
+   * Drops the segment of {@code contents}, which {@link #get} just returned, as the tables it was
+   * read from changed since; the lookup counts as a miss after all.
+   */
+  void invalidate(Contents contents) {
+    synchronized (segments) {
+      remove(contents.fingerprint, contents.segment);
+    }
+    hits.decrementAndGet();
+    misses.incrementAndGet();
+    invalidations.incrementAndGet();
+  }
+
+  /** Maps {@code segment}, or returns null if it isn't there or isn't whole. */
+  @Nullable
+  private static Contents map(String fingerprint, Segment segment) {
+    Path path = segment.path;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Footer footer = readFooter(channel);
+      if (footer == null) {
+        return null;
+      }
+      ByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, 0, footer.rowBytes);
+      return new Contents(footer, rows, fingerprint, segment);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      logger.warn("Failed to read " + path + " from the result cache", e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Footer readFooter(Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return readFooter(channel);
+    } catch (IOException e) {
+      logger.warn("Failed to read " + path + " from the result cache", e);
+      return null;
+    }
+  }
+
+  /** Reads the footer of a segment, or returns null if it has none, as its writer died. */
+  @Nullable
+  private static Footer readFooter(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < TRAILER_BYTES) {
+      return null;
+    }
+    ByteBuffer trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+    int footerBytes = trailer.getInt();
+    int checksum = trailer.getInt();
+    if (trailer.getInt() != MAGIC || footerBytes < 0 || footerBytes > size - TRAILER_BYTES) {
+      return null;
+    }
+    long rowBytes = size - TRAILER_BYTES - footerBytes;
+    byte[] footer = readFully(channel, rowBytes, footerBytes).array();
+    CRC32 crc = new CRC32();
+    crc.update(footer);
+    if ((int) crc.getValue() != checksum || rowBytes > MAX_SEGMENT_BYTES) {
+      return null;
+    }
+    return new Footer(rowBytes, new DataInputStream(new ByteArrayInputStream(footer)));
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of segment");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // a reader may still have it mapped on some platforms; the next index cleans it up
+      logger.debug("Failed to delete " + path, e);
+    }
+  }
+
+  private static void writeRow(DataOutputStream out, TableRow row) throws IOException {
+    List<TableCell> cells = row.getF();
+    out.writeInt(cells == null ? -1 : cells.size());
+    if (cells != null) {
+      for (TableCell cell : cells) {
+        writeValue(out, cell.getV());
+      }
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (Data.isNull(value)) {
+      out.writeByte(JSON_NULL);
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      out.writeByte(LIST);
+      out.writeInt(list.size());
+      for (Object element : list) {
+        writeValue(out, element);
+      }
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeByte(MAP);
+      out.writeInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(out, entry.getKey().toString());
+        writeValue(out, entry.getValue());
+      }
+    } else {
+      // the API sends everything else as strings
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  private static TableRow readRow(ByteBuffer in) {
+    int cellCount = in.getInt();
+    if (cellCount < 0) {
+      return new TableRow();
+    }
+    List<TableCell> cells = new ArrayList<>(cellCount);
+    for (int i = 0; i < cellCount; i++) {
+      cells.add(new TableCell().setV(readValue(in)));
+    }
+    return new TableRow().setF(cells);
+  }
+
+  @Nullable
+  private static Object readValue(ByteBuffer in) {
+    byte tag = in.get();
+    switch (tag) {
+      case NULL:
+        return null;
+      case JSON_NULL:
+        return Data.nullOf(Object.class);
+      case STRING:
+        return readString(in);
+      case LIST:
+        {
+          int size = in.getInt();
+          List<Object> list = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            list.add(readValue(in));
+          }
+          return list;
+        }
+      case MAP:
+        {
+          int size = in.getInt();
+          Map<String, Object> map = new LinkedHashMap<>();
+          for (int i = 0; i < size; i++) {
+            map.put(readString(in), readValue(in));
+          }
+          return map;
+        }
+      default:
+        throw new IllegalArgumentException("Unknown tag " + tag);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Drops every cached result, deleting its segment. */
+  public void clear() {
+    synchronized (segments) {
+      for (Segment segment : segments.values()) {
+        deleteQuietly(segment.path);
+      }
+      segments.clear();
+      bytes = 0;
+    }
+  }
+
+  /** Returns the directory the segments are in. */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /** Returns how many bytes of segments the cache holds at most. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Returns how big a single result may be to get cached. */
+  public long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  /** Returns how many bytes of segments the cache holds. */
+  public long getBytes() {
+    synchronized (segments) {
+      return bytes;
+    }
+  }
+
+  /** Returns how many results the cache holds. */
+  public int size() {
+    synchronized (segments) {
+      return segments.size();
+    }
+  }
+
+  /** Returns how many queries were answered from the cache. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Returns how many queries the cache had no result for. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /** Returns how many results were deleted to make room for others. */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /** Returns how many results were deleted because their TTL was up. */
+  public long getExpirations() {
+    return expirations.get();
+  }
+
+  /** Returns how many results were deleted because the tables they were read from changed. */
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+}
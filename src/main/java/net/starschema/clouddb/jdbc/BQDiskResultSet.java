@@ -0,0 +1,46 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.TableRow;
+import java.sql.SQLException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A forward only result set over the rows of a segment of the {@link BQDiskResultCache}, which
+ * decodes them straight from the mapped file a page at a time, rather than loading them all.
+ */
+class BQDiskResultSet extends BQForwardOnlyResultSet {
+
+  private final BQDiskResultCache.RowReader reader;
+
+  BQDiskResultSet(BQStatementRoot statement, BQDiskResultCache.Contents contents)
+      throws SQLException {
+    this(statement, contents, contents.rows());
+  }
+
+  private BQDiskResultSet(
+      BQStatementRoot statement,
+      BQDiskResultCache.Contents contents,
+      BQDiskResultCache.RowReader reader)
+      throws SQLException {
+    super(
+        statement.connection.getBigquery(),
+        statement.projectId,
+        contents.getJob(),
+        contents.footer.queryId,
+        statement,
+        reader.nextPage(),
+        contents.footer.rowCount == 0,
+        contents.footer.schema,
+        contents.footer.totalBytesProcessed,
+        contents.footer.cacheHit,
+        null,
+        null);
+    this.reader = reader;
+  }
+
+  @Override
+  protected @Nullable List<TableRow> fetchNextPage() throws SQLException {
+    return reader.nextPage();
+  }
+}
@@ -0,0 +1,72 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * What a dry run of a query told us about it, without running it: the schema of its results, the
+ * types BigQuery inferred for its parameters, the tables it reads and how many bytes it would
+ * process.
+ */
+class BQDryRun {
+
+  private final TableSchema schema;
+  private final List<QueryParameter> parameters;
+  private final List<TableReference> referencedTables;
+  private final @Nullable Long totalBytesProcessed;
+
+  BQDryRun(
+      TableSchema schema,
+      List<QueryParameter> parameters,
+      List<TableReference> referencedTables,
+      @Nullable Long totalBytesProcessed) {
+    this.schema = schema;
+    this.parameters = Collections.unmodifiableList(parameters);
+    this.referencedTables = Collections.unmodifiableList(referencedTables);
+    this.totalBytesProcessed = totalBytesProcessed;
+  }
+
+  /** Reads the result of a dry run out of the job returned by jobs.insert. */
+  static BQDryRun fromJob(Job job) {
+    JobStatistics statistics = job.getStatistics();
+    JobStatistics2 queryStatistics = statistics == null ? null : statistics.getQuery();
+    TableSchema schema = queryStatistics == null ? null : queryStatistics.getSchema();
+    List<QueryParameter> parameters =
+        queryStatistics == null ? null : queryStatistics.getUndeclaredQueryParameters();
+    List<TableReference> referencedTables =
+        queryStatistics == null ? null : queryStatistics.getReferencedTables();
+    return new BQDryRun(
+        schema == null ? new TableSchema().setFields(Collections.emptyList()) : schema,
+        parameters == null ? Collections.<QueryParameter>emptyList() : parameters,
+        referencedTables == null ? Collections.<TableReference>emptyList() : referencedTables,
+        statistics == null ? null : statistics.getTotalBytesProcessed());
+  }
+
+  /** The schema the query's results would have. */
+  TableSchema getSchema() {
+    return schema;
+  }
+
+  /** The parameters of the query, in order, with the types BigQuery inferred for them. */
+  List<QueryParameter> getParameters() {
+    return parameters;
+  }
+
+  /** The tables the query reads. */
+  List<TableReference> getReferencedTables() {
+    return referencedTables;
+  }
+
+  /** How many bytes the query would process, if BigQuery said. */
+  @Nullable
+  Long getTotalBytesProcessed() {
+    return totalBytesProcessed;
+  }
+}
@@ -0,0 +1,93 @@
+package net.starschema.clouddb.jdbc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Driver-wide executors used to run blocking BigQuery calls off the caller's thread.
+ *
+ * <p>Statements used to start a new {@link Thread} for every synchronous query so that {@link
+ * BQStatement#cancel()} could wait on it. Those threads now come from a shared, lazily created pool
+ * of daemon threads instead; on Java 21+ a virtual-thread-per-task executor can be used instead
+ * (see the {@code useVirtualThreads} connection property). Connections may also be given their own
+ * executor via {@link BQConnection#setQueryExecutor(ExecutorService)}.
+ */
+public final class BQExecutors {
+
+  private static final Logger logger = LoggerFactory.getLogger(BQExecutors.class);
+
+  private BQExecutors() {}
+
+  private static class SharedPoolHolder {
+    static final ExecutorService INSTANCE =
+        Executors.newCachedThreadPool(daemonThreadFactory("bqjdbc-query-"));
+  }
+
+  private static class SchedulerHolder {
+    static final ScheduledExecutorService INSTANCE = newScheduler();
+
+    private static ScheduledExecutorService newScheduler() {
+      ScheduledThreadPoolExecutor scheduler =
+          new ScheduledThreadPoolExecutor(1, daemonThreadFactory("bqjdbc-scheduler-"));
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+
+  private static class VirtualPoolHolder {
+    static final @Nullable ExecutorService INSTANCE = newVirtualThreadPerTaskExecutor();
+  }
+
+  /** A cached pool of daemon threads shared by every connection of the driver. */
+  public static ExecutorService sharedQueryExecutor() {
+    return SharedPoolHolder.INSTANCE;
+  }
+
+  /**
+   * A single daemon thread used to schedule delayed work, e.g. the next poll of a job. Tasks run on
+   * it must be short and must not block; hand anything else to a query executor.
+   */
+  public static ScheduledExecutorService sharedScheduler() {
+    return SchedulerHolder.INSTANCE;
+  }
+
+  /**
+   * A driver-wide executor that runs every task on its own virtual thread.
+   *
+   * @return the executor, or null if the running JVM has no virtual threads (before Java 21)
+   */
+  public static @Nullable ExecutorService virtualThreadExecutor() {
+    return VirtualPoolHolder.INSTANCE;
+  }
+
+  /**
+   * We still compile for Java 8, so look up {@code Executors.newVirtualThreadPerTaskExecutor}
+   * reflectively rather than linking against it.
+   */
+  private static @Nullable ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.debug("Virtual threads are not available in this JVM", e);
+      return null;
+    }
+  }
+
+  static ThreadFactory daemonThreadFactory(String namePrefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
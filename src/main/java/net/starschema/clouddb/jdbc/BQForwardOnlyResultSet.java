@@ -30,7 +30,6 @@ import com.google.api.services.bigquery.model.BiEngineReason;
 import com.google.api.services.bigquery.model.BiEngineStatistics;
 import com.google.api.services.bigquery.model.GetQueryResultsResponse;
 import com.google.api.services.bigquery.model.Job;
-import com.google.api.services.bigquery.model.JobStatistics;
 import com.google.api.services.bigquery.model.JobStatistics2;
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.api.services.bigquery.model.TableRow;
@@ -66,7 +65,6 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -117,19 +115,30 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
   /** Whether the ResultSet came from BigQuery's cache */
   private final @Nullable Boolean cacheHit;
   /** Specifies which mode of BI Engine acceleration was performed (if any). */
-  private final @Nullable String biEngineMode;
+  private @Nullable String biEngineMode;
   /**
    * In case of DISABLED or PARTIAL bi_engine_mode, these contain the explanatory reasons as to why
    * BI Engine could not accelerate. In case the full query was accelerated, this field is not
    * populated.
    */
-  private final @Nullable List<BiEngineReason> biEngineReasons;
+  private @Nullable List<BiEngineReason> biEngineReasons;
+  /** Job statistics that were not part of the query response, fetched on first use */
+  private final LazyJobStatistics jobStatistics;
   /**
    * Cursor position which goes from -1 to FETCH_SIZE then 0 to FETCH_SIZE The -1 is needed because
    * of the while(Result.next() == true) { } iterating method
    */
   private int Cursor = -1;
 
+  /** The most rows we return, as set by the statement's setMaxRows (with pushDownMaxRows only) */
+  private final long maxRows;
+
+  /** How many rows next() went through so far */
+  private long rowsReturned = 0;
+
+  /** Take the pages we go through for the result caches, until they have them all or give up */
+  private final List<BQResultCache.Recording> recordings = new ArrayList<>();
+
   /**
    * Constructor without query ID for backwards compatibility.
    *
@@ -193,6 +202,8 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
    * @param prefetchedRows - array of rows already fetched from BigQuery.
    * @param prefetchedAllRows - true if all rows have already been fetched and we should not ask for
    *     any more.
+   * @param biEngineMode - unused: BI Engine statistics are looked up on the job when asked for
+   * @param biEngineReasons - unused, as biEngineMode
    * @throws SQLException - if we fail to get the results
    */
   public BQForwardOnlyResultSet(
@@ -211,6 +222,12 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
       throws SQLException {
     logger.debug("Created forward only resultset TYPE_FORWARD_ONLY");
     this.Statementreference = (Statement) bqStatementRoot;
+    this.maxRows =
+        bqStatementRoot != null
+                && bqStatementRoot.connection != null
+                && bqStatementRoot.connection.getPushDownMaxRows()
+            ? bqStatementRoot.getMaxRows()
+            : Long.MAX_VALUE;
     this.completedJob = completedJob;
     this.queryId = queryId;
     this.projectId = projectId;
@@ -218,18 +235,12 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
       throw new BQSQLException("Failed to fetch results. Connection is closed.");
     }
     this.bigquery = bigquery;
-    Optional<BiEngineStatistics> biEngineStatisticsOptional =
-        Optional.ofNullable(completedJob)
-            .map(Job::getStatistics)
-            .map(JobStatistics::getQuery)
-            .map(JobStatistics2::getBiEngineStatistics);
-    if (biEngineStatisticsOptional.isPresent()) {
-      BiEngineStatistics biEngineStatistics = biEngineStatisticsOptional.get();
-      biEngineMode = biEngineStatistics.getBiEngineMode();
-      biEngineReasons = biEngineStatistics.getBiEngineReasons();
-    }
-    this.biEngineMode = biEngineMode;
-    this.biEngineReasons = biEngineReasons;
+    this.jobStatistics =
+        new LazyJobStatistics(
+            bigquery,
+            projectId,
+            completedJob == null ? null : completedJob.getJobReference(),
+            completedJob);
 
     if (prefetchedRows != null || prefetchedAllRows) {
       // prefetchedAllRows can be true with rows null for an empty result set
@@ -250,7 +261,7 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
       try {
         result =
             BQSupportFuncts.getQueryResultsDivided(
-                bigquery, projectId, completedJob, fetchPos, FETCH_SIZE);
+                bigquery, projectId, completedJob, fetchPos, pageSize());
       } catch (IOException e) {
         throw new BQSQLException("Failed to retrieve data", e);
       } // should not happen
@@ -553,6 +564,10 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
     // TODO free occupied resources
     this.closed = true;
     this.rowsofResult = null;
+    for (BQResultCache.Recording recording : recordings) {
+      recording.abandon();
+    }
+    recordings.clear();
   }
 
   /**
@@ -1570,19 +1585,59 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
     if (this.rowsofResult == null) {
       return false;
     }
+    if (rowsReturned >= maxRows) {
+      // the rest of the rows are dropped, as setMaxRows says
+      this.rowsofResult = null;
+      return false;
+    }
     if (Cursor < rowsofResult.size() - 1) {
       if (Cursor == -1) {
         AT_FIRST = true;
       } else AT_FIRST = false;
       Cursor++;
+      rowsReturned++;
       return true;
     }
 
-    if (this.prefetchedAllRows) {
-      // Nothing more to do, we've scrolled through all the rows we have.
+    List<TableRow> nextPage = fetchNextPage();
+    if (nextPage == null) {
       this.rowsofResult = null; // this is how we remember we are out of rows
+      for (BQResultCache.Recording recording : recordings) {
+        recording.finish();
+      }
+      recordings.clear();
       return false;
     }
+    recordings.removeIf(recording -> !recording.add(nextPage));
+    this.rowsofResult = nextPage;
+    fetchPos = fetchPos.add(BigInteger.valueOf((long) this.rowsofResult.size()));
+    Cursor = 0;
+    rowsReturned++;
+    return true;
+  }
+
+  /** How many rows to fetch next: a full page, or just the rest of what setMaxRows lets through. */
+  private int pageSize() {
+    long wanted = maxRows - fetchPos.min(BigInteger.valueOf(maxRows)).longValue();
+    return (int) Math.max(1, Math.min(FETCH_SIZE, wanted));
+  }
+
+  /**
+   * Fetches the page of rows that follows the ones we already went through.
+   *
+   * @return the next page of rows, or null if there are no more
+   * @throws SQLException if the page could not be fetched
+   */
+  protected @Nullable List<TableRow> fetchNextPage() throws SQLException {
+    if (this.prefetchedAllRows) {
+      // Nothing more to do, we've scrolled through all the rows we have.
+      return null;
+    }
+
+    if (fetchPos.compareTo(BigInteger.valueOf(maxRows)) >= 0) {
+      // we already have all the rows setMaxRows lets through
+      return null;
+    }
 
     if (completedJob == null) {
       throw new BQSQLException("Cannot poll results without a job reference");
@@ -1591,19 +1646,36 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
     try {
       result =
           BQSupportFuncts.getQueryResultsDivided(
-              bigquery, projectId, completedJob, fetchPos, FETCH_SIZE);
+              bigquery, projectId, completedJob, fetchPos, pageSize());
     } catch (IOException e) {
       // should not happen ... according to whoever cooked this up back in the day
       throw new BQSQLException("failed to fetch more results", e);
     }
-    if (result.getRows() == null) {
-      this.rowsofResult = null;
-      return false;
+    return result.getRows();
+  }
+
+  /** The schema of the rows of this result set. */
+  TableSchema getSchema() {
+    return schema;
+  }
+
+  /** The job whose results these are, if the query ran as one. */
+  @Nullable
+  Job getCompletedJob() {
+    return completedJob;
+  }
+
+  /**
+   * Hands the rows to {@code recording} as we go through them, starting with the ones we have, so
+   * that it can cache them once we went through them all.
+   */
+  void record(BQResultCache.Recording recording) {
+    if (this.rowsofResult == null) {
+      // no rows at all
+      recording.finish();
+    } else if (recording.add(this.rowsofResult)) {
+      recordings.add(recording);
     }
-    this.rowsofResult = result.getRows();
-    fetchPos = fetchPos.add(BigInteger.valueOf((long) this.rowsofResult.size()));
-    Cursor = 0;
-    return true;
   }
 
   /** {@inheritDoc} */
@@ -2993,6 +3065,12 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
   }
 
   public @Nullable Long getTotalBytesProcessed() {
+    if (totalBytesProcessed == null) {
+      JobStatistics2 queryStatistics = jobStatistics.getQueryStatistics();
+      if (queryStatistics != null) {
+        return queryStatistics.getTotalBytesProcessed();
+      }
+    }
     return totalBytesProcessed;
   }
 
@@ -3001,13 +3079,27 @@ public class BQForwardOnlyResultSet implements java.sql.ResultSet {
   }
 
   public @Nullable String getBiEngineMode() {
+    resolveBiEngineStatistics();
     return biEngineMode;
   }
 
   public @Nullable List<BiEngineReason> getBiEngineReasons() {
+    resolveBiEngineStatistics();
     return biEngineReasons;
   }
 
+  /** BI Engine statistics are not part of the query response, so look them up on the job. */
+  private void resolveBiEngineStatistics() {
+    if (biEngineMode != null || biEngineReasons != null) {
+      return;
+    }
+    BiEngineStatistics biEngineStatistics = jobStatistics.getBiEngineStatistics();
+    if (biEngineStatistics != null) {
+      biEngineMode = biEngineStatistics.getBiEngineMode();
+      biEngineReasons = biEngineStatistics.getBiEngineReasons();
+    }
+  }
+
   public @Nullable String getJobId() {
     if (this.completedJob != null) {
       return this.completedJob.getId();
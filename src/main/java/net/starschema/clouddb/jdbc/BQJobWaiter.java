@@ -0,0 +1,260 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.GetQueryResultsResponse;
+import com.google.api.services.bigquery.model.JobReference;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Waits for BigQuery query jobs to complete.
+ *
+ * <p>Instead of sleeping a fixed interval between {@code jobs.get} calls, we long-poll {@code
+ * jobs.getQueryResults} with {@code maxResults=0}. BigQuery holds each poll open until the job
+ * completes or the poll timeout elapses, so we learn about completion as soon as it happens without
+ * downloading any rows. When a poll comes back early without the job being complete, or fails with
+ * an I/O error, we back off exponentially (with jitter) before polling again.
+ *
+ * <p>A single waiter is shared by every statement of a {@link BQConnection}; it holds no per-job
+ * state and is safe to use from multiple threads.
+ */
+public class BQJobWaiter {
+
+  /** Issues a single poll for the completion state of a job. */
+  public interface Poller {
+    GetQueryResultsResponse poll(JobReference jobReference, long timeoutMillis) throws IOException;
+  }
+
+  /** How long BigQuery may hold a single poll open. */
+  public static final long DEFAULT_POLL_TIMEOUT_MILLIS = 10 * 1000;
+
+  public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+
+  public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5 * 1000;
+
+  public static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+
+  /** Each backoff is randomized by up to this fraction in either direction. */
+  public static final double DEFAULT_JITTER = 0.2;
+
+  /** How long BigQuery may hold a single poll open when we wait asynchronously. */
+  public static final long ASYNC_POLL_TIMEOUT_MILLIS = 200;
+
+  private final long pollTimeoutMillis;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final double backoffMultiplier;
+  private final double jitter;
+
+  public BQJobWaiter() {
+    this(
+        DEFAULT_POLL_TIMEOUT_MILLIS,
+        DEFAULT_INITIAL_BACKOFF_MILLIS,
+        DEFAULT_MAX_BACKOFF_MILLIS,
+        DEFAULT_BACKOFF_MULTIPLIER,
+        DEFAULT_JITTER);
+  }
+
+  public BQJobWaiter(
+      long pollTimeoutMillis,
+      long initialBackoffMillis,
+      long maxBackoffMillis,
+      double backoffMultiplier,
+      double jitter) {
+    if (pollTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("pollTimeoutMillis must be positive");
+    }
+    if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+      throw new IllegalArgumentException("backoff must satisfy 0 <= initial <= max");
+    }
+    if (backoffMultiplier < 1.0) {
+      throw new IllegalArgumentException("backoffMultiplier must be at least 1");
+    }
+    if (jitter < 0.0 || jitter > 1.0) {
+      throw new IllegalArgumentException("jitter must be between 0 and 1");
+    }
+    this.pollTimeoutMillis = pollTimeoutMillis;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.backoffMultiplier = backoffMultiplier;
+    this.jitter = jitter;
+  }
+
+  public long getPollTimeoutMillis() {
+    return pollTimeoutMillis;
+  }
+
+  /**
+   * Blocks until the job completes or {@code deadlineMillis} passes.
+   *
+   * @param jobReference the job to wait for
+   * @param poller issues the actual polls, normally {@link BQSupportFuncts#pollQueryResults}
+   * @param deadlineMillis the wall-clock time (as per {@link System#currentTimeMillis()}) after
+   *     which we stop waiting
+   * @param maxIoFailureRetries how many consecutive failed polls we tolerate before giving up
+   * @return the poll response which reported the job as complete, or null if the deadline passed
+   *     first
+   * @throws IOException if more than {@code maxIoFailureRetries} consecutive polls failed
+   * @throws InterruptedException if the waiting thread is interrupted while backing off
+   */
+  public @Nullable GetQueryResultsResponse waitForCompletion(
+      JobReference jobReference, Poller poller, long deadlineMillis, int maxIoFailureRetries)
+      throws IOException, InterruptedException {
+    long backoffMillis = initialBackoffMillis;
+    int failures = 0;
+    while (true) {
+      long remaining = deadlineMillis - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return null;
+      }
+      long pollTimeout = Math.min(pollTimeoutMillis, remaining);
+      long pollStart = System.currentTimeMillis();
+      try {
+        GetQueryResultsResponse response = poller.poll(jobReference, pollTimeout);
+        if (BQSupportFuncts.logAndGetQueryCompletion(jobReference, response)) {
+          return response;
+        }
+        failures = 0;
+        if (System.currentTimeMillis() - pollStart >= pollTimeout) {
+          // BigQuery held the poll open as long as we asked, no need to wait any longer.
+          backoffMillis = initialBackoffMillis;
+          continue;
+        }
+      } catch (IOException e) {
+        if (failures++ >= maxIoFailureRetries) {
+          throw e;
+        }
+      }
+      remaining = deadlineMillis - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return null;
+      }
+      Thread.sleep(Math.min(jittered(backoffMillis), remaining));
+      backoffMillis = Math.min(maxBackoffMillis, (long) (backoffMillis * backoffMultiplier));
+    }
+  }
+
+  /**
+   * Like {@link #waitForCompletion} but without blocking a thread while the job runs.
+   *
+   * <p>Each poll is a short task on {@code executor} that asks BigQuery to answer within {@link
+   * #ASYNC_POLL_TIMEOUT_MILLIS}; the gaps between polls are scheduled on {@code scheduler}, so no
+   * thread is held while we back off. The deadline is a single task on {@code scheduler} as well,
+   * rather than a check before every poll.
+   *
+   * @return a future of the poll response which reported the job as complete, or of null if the
+   *     deadline passed first; it fails with the {@link IOException} of the last poll if more than
+   *     {@code maxIoFailureRetries} consecutive polls failed
+   */
+  public CompletableFuture<GetQueryResultsResponse> waitForCompletionAsync(
+      JobReference jobReference,
+      Poller poller,
+      long deadlineMillis,
+      int maxIoFailureRetries,
+      Executor executor,
+      ScheduledExecutorService scheduler) {
+    CompletableFuture<GetQueryResultsResponse> result = new CompletableFuture<>();
+    if (deadlineMillis != Long.MAX_VALUE) {
+      try {
+        ScheduledFuture<?> deadline =
+            scheduler.schedule(
+                () -> result.complete(null),
+                deadlineMillis - System.currentTimeMillis(),
+                TimeUnit.MILLISECONDS);
+        result.whenComplete((response, e) -> deadline.cancel(false));
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+        return result;
+      }
+    }
+    new AsyncWait(jobReference, poller, maxIoFailureRetries, executor, scheduler, result)
+        .poll(initialBackoffMillis, 0);
+    return result;
+  }
+
+  /** The state of one {@link #waitForCompletionAsync} call. */
+  private class AsyncWait {
+    private final JobReference jobReference;
+    private final Poller poller;
+    private final int maxIoFailureRetries;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<GetQueryResultsResponse> result;
+
+    AsyncWait(
+        JobReference jobReference,
+        Poller poller,
+        int maxIoFailureRetries,
+        Executor executor,
+        ScheduledExecutorService scheduler,
+        CompletableFuture<GetQueryResultsResponse> result) {
+      this.jobReference = jobReference;
+      this.poller = poller;
+      this.maxIoFailureRetries = maxIoFailureRetries;
+      this.executor = executor;
+      this.scheduler = scheduler;
+      this.result = result;
+    }
+
+    void poll(long backoffMillis, int failures) {
+      if (result.isDone()) {
+        return;
+      }
+      try {
+        executor.execute(
+            () -> {
+              try {
+                GetQueryResultsResponse response =
+                    poller.poll(jobReference, ASYNC_POLL_TIMEOUT_MILLIS);
+                if (BQSupportFuncts.logAndGetQueryCompletion(jobReference, response)) {
+                  result.complete(response);
+                } else {
+                  pollLater(backoffMillis, 0);
+                }
+              } catch (IOException e) {
+                if (failures >= maxIoFailureRetries) {
+                  result.completeExceptionally(e);
+                } else {
+                  pollLater(backoffMillis, failures + 1);
+                }
+              } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    private void pollLater(long backoffMillis, int failures) {
+      if (result.isDone()) {
+        return;
+      }
+      long nextBackoffMillis =
+          Math.min(maxBackoffMillis, (long) (backoffMillis * backoffMultiplier));
+      try {
+        scheduler.schedule(
+            () -> poll(nextBackoffMillis, failures),
+            jittered(backoffMillis),
+            TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+      }
+    }
+  }
+
+  /** Visible for testing. */
+  long jittered(long backoffMillis) {
+    if (jitter == 0.0 || backoffMillis == 0) {
+      return backoffMillis;
+    }
+    double factor = 1.0 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble();
+    return Math.max(0L, Math.round(backoffMillis * factor));
+  }
+}
@@ -0,0 +1,154 @@
+package net.starschema.clouddb.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Adds a {@code LIMIT} to a query, so BigQuery only computes and returns the rows {@link
+ * java.sql.Statement#setMaxRows(int)} lets through (see the {@code pushDownMaxRows} connection
+ * property).
+ *
+ * <p>Only a single {@code SELECT} (or {@code WITH ... SELECT}) is rewritten: its trailing top-level
+ * {@code LIMIT} is tightened, or one is added if it has none. Scripts, DML, DDL and anything we
+ * can't read with confidence are left alone, as are queries whose limit is already tighter or is a
+ * parameter.
+ */
+class BQLimitRewriter {
+
+  /** A word, number or symbol of the query outside of parentheses, literals and comments. */
+  private static class Token {
+    final int start;
+    final int end;
+    final String text;
+
+    Token(String sql, int start, int end) {
+      this.start = start;
+      this.end = end;
+      this.text = sql.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    boolean isNumber() {
+      for (int i = 0; i < text.length(); i++) {
+        if (!Character.isDigit(text.charAt(i))) {
+          return false;
+        }
+      }
+      return !text.isEmpty();
+    }
+  }
+
+  private BQLimitRewriter() {}
+
+  /**
+   * Returns {@code sql} limited to at most {@code maxRows} rows, or {@code sql} itself if it isn't
+   * a query we can safely rewrite.
+   */
+  static String withLimit(String sql, long maxRows) {
+    if (!isQuery(sql)) {
+      return sql;
+    }
+    List<Token> tokens = topLevelTokens(sql);
+
+    int limit = -1;
+    for (int i = 0; i < tokens.size(); i++) {
+      if (tokens.get(i).text.equals("LIMIT")) {
+        if (limit != -1) {
+          return sql;
+        }
+        limit = i;
+      }
+    }
+    if (limit == -1) {
+      Token last = tokens.get(tokens.size() - 1);
+      // on a line of its own, in case the query ends with a line comment
+      return sql.substring(0, last.end) + "\nLIMIT " + maxRows + sql.substring(last.end);
+    }
+
+    // LIMIT n or LIMIT n OFFSET m must end the query; anything else we leave to BigQuery
+    int remaining = tokens.size() - limit - 1;
+    if (remaining != 1 && remaining != 3) {
+      return sql;
+    }
+    Token count = tokens.get(limit + 1);
+    if (!count.isNumber()) {
+      return sql;
+    }
+    if (remaining == 3
+        && !(tokens.get(limit + 2).text.equals("OFFSET") && tokens.get(limit + 3).isNumber())) {
+      return sql;
+    }
+    if (count.text.length() < 19 && Long.parseLong(count.text) <= maxRows) {
+      return sql;
+    }
+    return sql.substring(0, count.start) + maxRows + sql.substring(count.end);
+  }
+
+  /**
+   * Whether {@code sql} is a single {@code SELECT} (or {@code WITH ... SELECT}), which only reads.
+   * Scripts, DML, DDL and anything we can't read with confidence are not.
+   */
+  static boolean isQuery(String sql) {
+    List<Token> tokens = topLevelTokens(sql);
+    if (tokens == null || tokens.isEmpty()) {
+      return false;
+    }
+    String first = tokens.get(0).text;
+    return first.equals("SELECT") || first.equals("WITH");
+  }
+
+  /**
+   * Splits {@code sql} into the tokens outside of any parentheses, skipping literals and comments.
+   *
+   * @return the tokens, or null if {@code sql} has more than one statement or unbalanced
+   *     parentheses
+   */
+  private static List<Token> topLevelTokens(String sql) {
+    List<Token> tokens = new ArrayList<>();
+    int depth = 0;
+    boolean terminated = false;
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      int start = i;
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      } else if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+        i = BQSqlTemplate.skipQuoted(sql, i + 1, "\n");
+        continue;
+      } else if (c == '/' && sql.startsWith("/*", i)) {
+        i = BQSqlTemplate.skipQuoted(sql, i + 2, "*/");
+        continue;
+      }
+      if (terminated && c != ';') {
+        // a second statement
+        return null;
+      }
+      if (c == '\'' || c == '"') {
+        i = BQSqlTemplate.skipString(sql, i, c);
+      } else if (c == '`') {
+        i = BQSqlTemplate.skipQuoted(sql, i + 1, "`");
+      } else if (Character.isLetterOrDigit(c) || c == '_') {
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+          i++;
+        }
+      } else {
+        i++;
+        if (c == '(') {
+          depth++;
+        } else if (c == ')' && --depth < 0) {
+          return null;
+        } else if (c == ';' && depth == 0) {
+          terminated = true;
+          continue;
+        }
+      }
+      if (depth == 0) {
+        tokens.add(new Token(sql, start, i));
+      }
+    }
+    return depth == 0 ? tokens : null;
+  }
+}
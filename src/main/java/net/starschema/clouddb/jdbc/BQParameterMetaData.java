@@ -0,0 +1,175 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.QueryParameter;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ParameterMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * This class implements the java.sql.ParameterMetaData interface, from the parameter types BigQuery
+ * inferred in a dry run of the query.
+ *
+ * <p>BigQuery only infers types for standard SQL; with legacy SQL every parameter is reported as
+ * {@link Types#OTHER}.
+ */
+class BQParameterMetaData implements ParameterMetaData {
+
+  /** The BigQuery type of each parameter, null where we don't know it */
+  private final String[] types;
+
+  BQParameterMetaData(int parameterCount, List<QueryParameter> inferred) {
+    this.types = new String[parameterCount];
+    for (int i = 0; i < Math.min(parameterCount, inferred.size()); i++) {
+      QueryParameter parameter = inferred.get(i);
+      if (parameter != null && parameter.getParameterType() != null) {
+        this.types[i] = parameter.getParameterType().getType();
+      }
+    }
+  }
+
+  private @Nullable String typeOf(int param) throws SQLException {
+    if (param < 1 || param > types.length) {
+      throw new BQSQLException("No such parameter: " + param);
+    }
+    return types[param - 1];
+  }
+
+  @Override
+  public int getParameterCount() {
+    return types.length;
+  }
+
+  @Override
+  public int isNullable(int param) throws SQLException {
+    typeOf(param);
+    return parameterNullable;
+  }
+
+  @Override
+  public boolean isSigned(int param) throws SQLException {
+    String type = typeOf(param);
+    return type != null
+        && (type.equals("INT64")
+            || type.equals("FLOAT64")
+            || type.equals("NUMERIC")
+            || type.equals("BIGNUMERIC"));
+  }
+
+  @Override
+  public int getPrecision(int param) throws SQLException {
+    String type = typeOf(param);
+    if ("NUMERIC".equals(type)) {
+      return 38;
+    }
+    if ("BIGNUMERIC".equals(type)) {
+      return 76;
+    }
+    return 0;
+  }
+
+  @Override
+  public int getScale(int param) throws SQLException {
+    String type = typeOf(param);
+    if ("NUMERIC".equals(type)) {
+      return 9;
+    }
+    if ("BIGNUMERIC".equals(type)) {
+      return 38;
+    }
+    return 0;
+  }
+
+  /**
+   * Maps the standard SQL type names BigQuery uses for query parameters the same way {@link
+   * BQResultsetMetaData#getColumnType(int)} maps column types.
+   */
+  @Override
+  public int getParameterType(int param) throws SQLException {
+    String type = typeOf(param);
+    if (type == null) {
+      return Types.OTHER;
+    }
+    switch (type) {
+      case "INT64":
+        return Types.BIGINT;
+      case "FLOAT64":
+        return Types.DOUBLE;
+      case "NUMERIC":
+      case "BIGNUMERIC":
+        return Types.NUMERIC;
+      case "BOOL":
+        return Types.BOOLEAN;
+      case "STRING":
+      case "BYTES":
+      case "GEOGRAPHY":
+        return Types.VARCHAR;
+      case "DATE":
+        return Types.DATE;
+      case "TIME":
+        return Types.TIME;
+      case "DATETIME":
+      case "TIMESTAMP":
+        return Types.TIMESTAMP;
+      case "STRUCT":
+        return Types.STRUCT;
+      case "ARRAY":
+        return Types.ARRAY;
+      default:
+        return Types.OTHER;
+    }
+  }
+
+  @Override
+  public @Nullable String getParameterTypeName(int param) throws SQLException {
+    return typeOf(param);
+  }
+
+  @Override
+  public String getParameterClassName(int param) throws SQLException {
+    switch (getParameterType(param)) {
+      case Types.BIGINT:
+        return Long.class.getName();
+      case Types.DOUBLE:
+        return Double.class.getName();
+      case Types.NUMERIC:
+        return BigDecimal.class.getName();
+      case Types.BOOLEAN:
+        return Boolean.class.getName();
+      case Types.DATE:
+        return Date.class.getName();
+      case Types.TIME:
+        return Time.class.getName();
+      case Types.TIMESTAMP:
+        return Timestamp.class.getName();
+      case Types.VARCHAR:
+        return String.class.getName();
+      default:
+        return Object.class.getName();
+    }
+  }
+
+  @Override
+  public int getParameterMode(int param) throws SQLException {
+    typeOf(param);
+    return parameterModeIn;
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (!isWrapperFor(iface)) {
+      throw new BQSQLException("Not a wrapper for " + iface);
+    }
+    return iface.cast(this);
+  }
+}
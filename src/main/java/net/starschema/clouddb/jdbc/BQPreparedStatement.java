@@ -22,7 +22,9 @@
  */
 package net.starschema.clouddb.jdbc;
 
-import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.QueryParameterType;
+import com.google.api.services.bigquery.model.QueryParameterValue;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -30,7 +32,9 @@ import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.Calendar;
+import javax.annotation.Nullable;
 
 /**
  * This class implements java.sql.PreparedStatement
@@ -45,9 +49,15 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
 
   String RunnableStatement = null;
 
+  /** {@link #PrecompiledSQL}, split on its parameter markers */
+  BQSqlTemplate template = null;
+
   /** Reference for the Container that contains parameters for preparedStatement */
   String[] Parameters = null;
 
+  /** The same parameters as {@link #Parameters}, as typed BigQuery query parameters */
+  QueryParameter[] queryParameters = null;
+
   /**
    * Constructor for BQStatement object just initializes local variables as preparedStatement
    *
@@ -69,19 +79,13 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     this.resultSetType = ResultSet.TYPE_FORWARD_ONLY;
     this.resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
     this.PrecompiledSQL = querysql;
-    if (!this.PrecompiledSQL.contains("?")) {
-      this.RunnableStatement = this.PrecompiledSQL;
-    }
-
-    int count = 0;
-    for (int i = 0; i < querysql.length(); i++) {
-      if (querysql.charAt(i) == '?') {
-        count++;
-      }
-    }
+    this.template = bqConnection.getSqlTemplate(querysql);
+    this.poolable = true;
 
+    int count = this.template.getParameterCount();
     if (count != 0) {
       this.Parameters = new String[count];
+      this.queryParameters = new QueryParameter[count];
     }
 
     this.logger.debug("Constructor of PreparedStatement Ended with " + projectid);
@@ -113,15 +117,13 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     this.resultSetType = resultSetType;
     this.resultSetConcurrency = resultSetConcurrency;
     this.PrecompiledSQL = querysql;
+    this.template = bqConnection.getSqlTemplate(querysql);
+    this.poolable = true;
 
-    int count = 0;
-    for (int i = 0; i < querysql.length(); i++) {
-      if (querysql.charAt(i) == '?') {
-        count++;
-      }
-    }
+    int count = this.template.getParameterCount();
     if (count != 0) {
       this.Parameters = new String[count];
+      this.queryParameters = new QueryParameter[count];
     }
   }
 
@@ -131,63 +133,111 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Queues the statement with the parameters set so far, to be run by {@link #executeBatch()}. A
+   * batch runs as a script, which takes no positional parameters, so the values are written into
+   * the statement as literals of their type.
    *
-   * @throws BQSQLException
+   * @throws BQSQLException if the statement is closed or not all parameters are set
    */
   @Override
   public void addBatch() throws SQLException {
-    throw new BQSQLException("Not implemented." + "addBatch()");
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    checkParametersSet();
+    if (this.Parameters == null) {
+      super.addBatch(this.PrecompiledSQL);
+      return;
+    }
+    String[] literals = new String[this.queryParameters.length];
+    for (int i = 0; i < literals.length; i++) {
+      literals[i] = standardSqlLiteral(this.queryParameters[i]);
+    }
+    super.addBatch(this.template.render(literals));
+  }
+
+  /** {@code parameter} as a standard SQL literal of its type. */
+  static String standardSqlLiteral(QueryParameter parameter) {
+    String type = parameter.getParameterType().getType();
+    String value = parameter.getParameterValue().getValue();
+    if (value == null) {
+      return "CAST(NULL AS " + type + ")";
+    }
+    switch (type) {
+      case "INT64":
+      case "BOOL":
+        return value;
+      case "STRING":
+        return quote(value);
+      default:
+        // also covers the NaN and infinities of FLOAT64, which have no literal
+        return "CAST(" + quote(value) + " AS " + type + ")";
+    }
   }
 
+  private static String quote(String value) {
+    return "'"
+        + value.replace("\\", "\\\\").replace("'", "\\'").replace("\n", "\\n").replace("\r", "\\r")
+        + "'";
+  }
+
+  /**
+   *
+   *
+   * <h1>Implementation Details:</h1>
+   *
+   * <br>
+   * A poolable statement goes back to its connection's statement cache, if it has one, to be handed
+   * out again by a later prepareStatement of the same SQL.
+   */
   @Override
-  public void clearParameters() throws SQLException {
+  public void close() throws SQLException {
+    if (this.closed) {
+      return;
+    }
+    super.close();
+    if (this.poolable) {
+      this.connection.returnToStatementCache(this);
+    }
+  }
 
-    int count = 0;
-    for (int i = 0; i < this.PrecompiledSQL.length(); i++) {
-      if (this.PrecompiledSQL.charAt(i) == '?') {
-        count++;
-      }
+  /**
+   * Hands out {@code pooled}, a closed statement its connection kept for reuse, as a new statement
+   * of the same SQL. Whoever had {@code pooled} before may still hold on to it, or to result sets
+   * it created, so it stays closed; what it prepared moves over to the new statement.
+   */
+  static BQPreparedStatement reuse(BQPreparedStatement pooled) {
+    return new BQPreparedStatement(pooled);
+  }
+
+  private BQPreparedStatement(BQPreparedStatement pooled) {
+    this.projectId = pooled.projectId;
+    this.connection = pooled.connection;
+    this.resultSetType = pooled.resultSetType;
+    this.resultSetConcurrency = pooled.resultSetConcurrency;
+    this.PrecompiledSQL = pooled.PrecompiledSQL;
+    this.template = pooled.template;
+    this.poolable = true;
+    this.Parameters = pooled.Parameters;
+    this.queryParameters = pooled.queryParameters;
+    pooled.Parameters = null;
+    pooled.queryParameters = null;
+    if (this.Parameters != null) {
+      Arrays.fill(this.Parameters, null);
+      Arrays.fill(this.queryParameters, null);
     }
+  }
 
+  @Override
+  public void clearParameters() throws SQLException {
+    int count = this.template.getParameterCount();
     if (count != 0) {
       this.Parameters = new String[count];
+      this.queryParameters = new QueryParameter[count];
     } else {
       this.Parameters = null;
+      this.queryParameters = null;
     }
-
-    this.RunnableStatement = this.PrecompiledSQL;
-  }
-
-  /**
-   * Reconstructs the sql string which gets queried when for example executequery is called this
-   * function is called every time a paramater is changed
-   */
-  private void constructsql() {
-    String[] data = this.PrecompiledSQL.split("\\?");
-    String newsql = data[0];
-
-    int countofsema = 0;
-    for (int i = 0; i < this.Parameters.length; i++) {
-      // if parameter is not yet set
-      if (this.Parameters[i] == null) {
-        // if there's data after the parameter
-        if (++countofsema < data.length) {
-          newsql += "?" + data[countofsema];
-          // parameter is at the end
-        } else {
-          newsql += "?";
-        }
-      } else
-      // there's data after the parameter
-      if (++countofsema < data.length) {
-        newsql += this.Parameters[i] + data[countofsema];
-        // parameter is at the end
-      } else {
-        newsql += this.Parameters[i];
-      }
-    }
-    this.RunnableStatement = newsql;
   }
 
   /**
@@ -219,62 +269,27 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (this.isClosed()) {
       throw new BQSQLException("This Statement is Closed");
     }
-    if (this.RunnableStatement == null) {
-      throw new BQSQLException("Parameters are not set");
-    }
-    if (this.RunnableStatement.contains("?")) {
-      throw new BQSQLException("Not all parameters set");
-    }
-    this.starttime = System.currentTimeMillis();
-    Job referencedJob;
-
-    try {
-      // Gets the Job reference of the completed job with give Query
-      referencedJob =
-          BQSupportFuncts.startQuery(
-              this.connection.getBigquery(),
-              this.projectId,
-              this.RunnableStatement,
-              this.connection.getDataSet(),
-              this.connection.getDataSetProjectId(),
-              this.connection.getUseLegacySql(),
-              this.connection.getMaxBillingBytes());
-      this.logger.info("Executing Query: " + this.RunnableStatement);
-    } catch (IOException e) {
-      throw new BQSQLException("Something went wrong with the query: " + this.RunnableStatement, e);
-    }
-    try {
-      do {
-        if (BQSupportFuncts.getQueryState(
-                referencedJob, this.connection.getBigquery(), this.projectId)
-            .equals("DONE")) {
-          if (resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE) {
-            return new BQScrollableResultSet(
-                BQSupportFuncts.getQueryResults(
-                    this.connection.getBigquery(), this.projectId, referencedJob),
-                this);
-          } else {
-            return new BQForwardOnlyResultSet(
-                this.connection.getBigquery(), this.projectId, referencedJob, null, this);
-          }
+    checkParametersSet();
+    this.RunnableStatement =
+        this.Parameters == null ? this.PrecompiledSQL : this.template.render(this.Parameters);
+    if (this.connection.getUseLegacySql() || this.queryParameters == null) {
+      // Legacy SQL has no query parameters, so we have to splice them into the query text
+      return executeQuery(this.RunnableStatement, false, null);
+    }
+    // Standard SQL understands positional parameters as '?', just like JDBC. Sending the template
+    // as is keeps the query text the same from one execution to the next, which lets BigQuery
+    // serve repeated executions from its cache.
+    return executeQuery(this.PrecompiledSQL, false, Arrays.asList(this.queryParameters));
+  }
+
+  private void checkParametersSet() throws BQSQLException {
+    if (this.Parameters != null) {
+      for (String parameter : this.Parameters) {
+        if (parameter == null) {
+          throw new BQSQLException("Not all parameters set");
         }
-        // Pause execution for half second before polling job status
-        // again, to
-        // reduce unnecessary calls to the BigQUery API and lower
-        // overall
-        // application bandwidth.
-        Thread.sleep(500);
-        this.logger.debug("slept for 500" + "ms, querytimeout is: " + this.querytimeout + "s");
-      } while (System.currentTimeMillis() - this.starttime <= (long) this.querytimeout * 1000);
-      // it runs for a minimum of 1 time
-    } catch (IOException e) {
-      throw new BQSQLException("Something went wrong with the query: " + this.RunnableStatement, e);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
-    // here we should kill/stop the running job, but bigquery doesn't
-    // support that :(
-    throw new BQSQLException("Query run took more than the specified timeout");
+      }
+    }
   }
 
   /**
@@ -283,13 +298,24 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Runs the statement as DML, with its values bound as query parameters like {@link
+   * #executeQuery()} does.
    *
-   * @throws BQSQLException
+   * @return the number of rows the statement affected
    */
   @Override
   public int executeUpdate() throws SQLException {
-    throw new BQSQLFeatureNotSupportedException("executeUpdate()");
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    checkParametersSet();
+    this.RunnableStatement =
+        this.Parameters == null ? this.PrecompiledSQL : this.template.render(this.Parameters);
+    if (this.connection.getUseLegacySql() || this.queryParameters == null) {
+      // Legacy SQL has no DML either, which executeDML reports
+      return executeDML(this.RunnableStatement, null);
+    }
+    return executeDML(this.PrecompiledSQL, Arrays.asList(this.queryParameters));
   }
 
   @Override
@@ -297,11 +323,53 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     throw new BQSQLFeatureNotSupportedException("executeQuery(String querySQL)");
   }
 
+  /**
+   *
+   *
+   * <h1>Implementation Details:</h1>
+   *
+   * <br>
+   * Describes the results of the statement from a dry run of its SQL, which doesn't run the query.
+   * The connection remembers what the dry run said, so describing the same SQL again is free.
+   */
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    return new BQResultsetMetaData(dryRun().getSchema(), this.projectId);
+  }
+
+  /**
+   *
+   *
+   * <h1>Implementation Details:</h1>
+   *
+   * <br>
+   * Describes the parameters of the statement with the types BigQuery infers for them in a dry run
+   * (standard SQL only).
+   */
   @Override
   public ParameterMetaData getParameterMetaData() throws SQLException {
-    logger.debug("function call: getParameterMetaData()");
-    // TODO IMPLEMENT
-    return null;
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    return new BQParameterMetaData(this.template.getParameterCount(), dryRun().getParameters());
+  }
+
+  /** Dry runs the statement's SQL, whatever its parameters are set to. */
+  BQDryRun dryRun() throws SQLException {
+    int parameterCount = this.template.getParameterCount();
+    if (parameterCount == 0 || !this.connection.getUseLegacySql()) {
+      // Standard SQL lets BigQuery infer the types of the '?' parameters
+      return this.connection.dryRun(
+          this.PrecompiledSQL, parameterCount != 0, getPriority(), getAdmissionTenant());
+    }
+    // Legacy SQL has no parameters, but NULL goes anywhere a value does
+    String[] nulls = new String[parameterCount];
+    Arrays.fill(nulls, "NULL");
+    return this.connection.dryRun(
+        this.template.render(nulls), false, getPriority(), getAdmissionTenant());
   }
 
   @Override
@@ -329,7 +397,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
         throw new BQSQLException(e);
       }
       String theString = writer.toString();
-      this.SetParameter(parameterIndex, "\"" + theString + "\"");
+      this.SetParameter(parameterIndex, "\"" + theString + "\"", "STRING", theString);
     }
   }
 
@@ -353,7 +421,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
         throw new BQSQLException(e);
       }
       String theString = writer.toString();
-      this.SetParameter(parameterIndex, "\"" + theString + "\"");
+      this.SetParameter(parameterIndex, "\"" + theString + "\"", "STRING", theString);
     }
   }
 
@@ -377,7 +445,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
         throw new BQSQLException(e);
       }
       String theString = writer.toString();
-      this.SetParameter(parameterIndex, "\"" + theString + "\"");
+      this.SetParameter(parameterIndex, "\"" + theString + "\"", "STRING", theString);
     }
   }
 
@@ -393,7 +461,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, x.toString());
+      this.SetParameter(parameterIndex, x.toString(), numericType(x), x.toPlainString());
     }
   }
 
@@ -440,7 +508,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Boolean.toString(x));
+      this.SetParameter(parameterIndex, Boolean.toString(x), "BOOL", Boolean.toString(x));
     }
   }
 
@@ -456,7 +524,8 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Integer.toString(x & 0xff));
+      this.SetParameter(
+          parameterIndex, Integer.toString(x & 0xff), "INT64", Integer.toString(x & 0xff));
     }
   }
 
@@ -488,7 +557,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
       } catch (IOException e) {
         throw new BQSQLException(e);
       }
-      this.SetParameter(parameterIndex, "\"" + buf.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + buf.toString() + "\"", "STRING", buf.toString());
     }
   }
 
@@ -532,7 +601,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
       throw new BQSQLException("Index is not valid");
     } else {
       Date s = new Date(x.getTime() + Calendar.getInstance().getTimeZone().getRawOffset());
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "DATE", s.toString());
     }
   }
 
@@ -554,7 +623,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
                   + ((cal == null)
                       ? Calendar.getInstance().getTimeZone().getRawOffset()
                       : cal.getTimeZone().getRawOffset()));
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "DATE", s.toString());
     }
   }
 
@@ -570,7 +639,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Double.toString(x));
+      this.SetParameter(parameterIndex, Double.toString(x), "FLOAT64", Double.toString(x));
     }
   }
 
@@ -586,7 +655,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Float.toString(x));
+      this.SetParameter(parameterIndex, Float.toString(x), "FLOAT64", Float.toString(x));
     }
   }
 
@@ -602,7 +671,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Integer.toString(x));
+      this.SetParameter(parameterIndex, Integer.toString(x), "INT64", Integer.toString(x));
     }
   }
 
@@ -618,7 +687,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, Long.toString(x));
+      this.SetParameter(parameterIndex, Long.toString(x), "INT64", Long.toString(x));
     }
   }
 
@@ -665,7 +734,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "NULL");
+      this.SetParameter(parameterIndex, "NULL", typeOfSqlType(sqlType), null);
     }
   }
 
@@ -681,7 +750,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "NULL");
+      this.SetParameter(parameterIndex, "NULL", typeOfSqlType(sqlType), null);
     }
   }
 
@@ -752,10 +821,72 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     throw new BQSQLException(new SQLFeatureNotSupportedException());
   }
 
-  /** Sets the given paramter for the prepared statement (its a string value to change the ? for) */
-  private void SetParameter(int paramterNumber, String value) {
+  /**
+   * Sets a parameter both as SQL text, for when we have to splice it into the query, and as a typed
+   * BigQuery query parameter.
+   *
+   * @param value the parameter as a SQL literal
+   * @param type the BigQuery type of the parameter
+   * @param nativeValue the value of the parameter as BigQuery expects it, or null for NULL
+   */
+  private void SetParameter(
+      int paramterNumber, String value, String type, @Nullable String nativeValue) {
     this.Parameters[paramterNumber - 1] = value;
-    this.constructsql();
+    this.queryParameters[paramterNumber - 1] =
+        new QueryParameter()
+            .setParameterType(new QueryParameterType().setType(type))
+            .setParameterValue(new QueryParameterValue().setValue(nativeValue));
+  }
+
+  /** NUMERIC holds 29 digits before and 9 after the decimal point; anything else is BIGNUMERIC. */
+  private static String numericType(BigDecimal x) {
+    if (x.scale() <= 9 && x.precision() - x.scale() <= 29) {
+      return "NUMERIC";
+    }
+    return "BIGNUMERIC";
+  }
+
+  /** BigQuery timestamps have microsecond precision, {@link Timestamp#toString()} nanoseconds. */
+  private static String timestampValue(Timestamp x) {
+    String value = x.toString();
+    int dot = value.lastIndexOf('.');
+    if (dot >= 0 && value.length() - dot - 1 > 6) {
+      value = value.substring(0, dot + 7);
+    }
+    return value;
+  }
+
+  /** The BigQuery type of a NULL of the given {@link Types java.sql.Types} type. */
+  private static String typeOfSqlType(int sqlType) {
+    switch (sqlType) {
+      case Types.BIGINT:
+      case Types.INTEGER:
+      case Types.SMALLINT:
+      case Types.TINYINT:
+        return "INT64";
+      case Types.DOUBLE:
+      case Types.FLOAT:
+      case Types.REAL:
+        return "FLOAT64";
+      case Types.DECIMAL:
+      case Types.NUMERIC:
+        return "NUMERIC";
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return "BOOL";
+      case Types.DATE:
+        return "DATE";
+      case Types.TIME:
+        return "TIME";
+      case Types.TIMESTAMP:
+        return "TIMESTAMP";
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+        return "BYTES";
+      default:
+        return "STRING";
+    }
   }
 
   @Override
@@ -775,7 +906,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "\"" + x.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + x.toString() + "\"", "STRING", x.toString());
     }
   }
 
@@ -797,7 +928,8 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "\"" + xmlObject.getString() + "\"");
+      this.SetParameter(
+          parameterIndex, "\"" + xmlObject.getString() + "\"", "STRING", xmlObject.getString());
       // TODO Check conversion
     }
   }
@@ -814,7 +946,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "\"" + x + "\"");
+      this.SetParameter(parameterIndex, "\"" + x + "\"", "STRING", x);
     }
   }
 
@@ -831,7 +963,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
       throw new BQSQLException("Index is not valid");
     } else {
       Time s = new Time(x.getTime() + Calendar.getInstance().getTimeZone().getRawOffset());
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "TIME", s.toString());
     }
   }
 
@@ -853,7 +985,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
                   + ((cal == null)
                       ? Calendar.getInstance().getTimeZone().getRawOffset()
                       : cal.getTimeZone().getRawOffset()));
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "TIME", s.toString());
     }
   }
 
@@ -871,7 +1003,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     } else {
       Timestamp s =
           new Timestamp(x.getTime() + Calendar.getInstance().getTimeZone().getRawOffset());
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "TIMESTAMP", timestampValue(s));
     }
   }
 
@@ -893,7 +1025,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
                   + ((cal == null)
                       ? Calendar.getInstance().getTimeZone().getRawOffset()
                       : cal.getTimeZone().getRawOffset()));
-      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + s.toString() + "\"", "TIMESTAMP", timestampValue(s));
     }
   }
 
@@ -917,7 +1049,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
         throw new BQSQLException(e);
       }
       String theString = writer.toString();
-      this.SetParameter(parameterIndex, "\"" + theString + "\"");
+      this.SetParameter(parameterIndex, "\"" + theString + "\"", "STRING", theString);
     }
   }
 
@@ -933,7 +1065,7 @@ public class BQPreparedStatement extends BQStatementRoot implements PreparedStat
     if (parameterIndex < 1 || parameterIndex > this.Parameters.length) {
       throw new BQSQLException("Index is not valid");
     } else {
-      this.SetParameter(parameterIndex, "\"" + x.toString() + "\"");
+      this.SetParameter(parameterIndex, "\"" + x.toString() + "\"", "STRING", x.toString());
     }
   }
 
@@ -0,0 +1,363 @@
+package net.starschema.clouddb.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
+
+/**
+ * Decides when queries may start, so that neither background work nor a single noisy tenant can
+ * flood BigQuery with jobs at the expense of everyone else.
+ *
+ * <p>At most {@link #getMaxInFlight()} queries run at once. On top of that, each priority is a lane
+ * with its own cap on how many of its queries run at once. Whenever a query finishes, waiting
+ * interactive queries are started first, and a waiting {@link QueryPriority#BATCH} query only
+ * starts while no interactive query is waiting.
+ *
+ * <p>Within a lane, queries wait in one queue per tenant: the value of the label named by the
+ * {@code admissionLabel} connection property. The next query to start comes from the tenant with
+ * the fewest running queries for its weight (see {@link #setWeight(String, int)}), so a tenant that
+ * launches hundreds of queries only gets its share of the slots.
+ *
+ * <p>Unless given their own with {@link BQConnection#setQueryDispatcher(BQQueryDispatcher)},
+ * connections share the {@link #shared()} dispatcher, so all of this spans every connection of the
+ * driver.
+ */
+public final class BQQueryDispatcher {
+
+  /** How many queries may run at once by default; BigQuery's own default interactive quota. */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+  /** How many interactive queries may run at once by default. */
+  public static final int DEFAULT_MAX_INTERACTIVE_QUERIES = DEFAULT_MAX_IN_FLIGHT;
+
+  /** How many batch queries may run at once by default. */
+  public static final int DEFAULT_MAX_BATCH_QUERIES = 4;
+
+  /** The tenant of queries without the admission label. */
+  public static final String DEFAULT_TENANT = "";
+
+  private static class SharedHolder {
+    static final BQQueryDispatcher INSTANCE =
+        new BQQueryDispatcher(
+            DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_INTERACTIVE_QUERIES, DEFAULT_MAX_BATCH_QUERIES);
+  }
+
+  /** A query's turn to start: it may start once this completes. */
+  static final class Turn extends CompletableFuture<Void> {
+    final QueryPriority priority;
+    final String tenant;
+    final long requestedNanos = System.nanoTime();
+
+    private Turn(QueryPriority priority, String tenant) {
+      this.priority = priority;
+      this.tenant = tenant;
+    }
+  }
+
+  /** The queries of one priority. */
+  private static class Lane {
+    int maxRunning;
+    int running = 0;
+
+    /** The turns waiting to start, by tenant, each oldest first. */
+    final Map<String, Deque<Turn>> waiting = new LinkedHashMap<>();
+
+    Lane(int maxRunning) {
+      this.maxRunning = maxRunning;
+    }
+
+    /** Drops the turns cancelled while waiting, and the tenants left with none. */
+    void purge() {
+      Iterator<Deque<Turn>> queues = waiting.values().iterator();
+      while (queues.hasNext()) {
+        Deque<Turn> queue = queues.next();
+        queue.removeIf(CompletableFuture::isDone);
+        if (queue.isEmpty()) {
+          queues.remove();
+        }
+      }
+    }
+  }
+
+  private final Map<QueryPriority, Lane> lanes = new EnumMap<>(QueryPriority.class);
+
+  private int maxInFlight;
+  private int inFlight = 0;
+
+  /** How many queries of each tenant are running; tenants with none are left out. */
+  private final Map<String, Integer> inFlightByTenant = new HashMap<>();
+
+  /** The weights set with {@link #setWeight}; other tenants weigh 1. */
+  private final Map<String, Integer> weights = new HashMap<>();
+
+  private long startedQueries = 0;
+  private long totalWaitNanos = 0;
+  private long maxWaitNanos = 0;
+
+  /**
+   * Creates a dispatcher with lanes of its own.
+   *
+   * @param maxInFlight how many queries may run at once
+   * @param maxInteractive how many interactive queries may run at once
+   * @param maxBatch how many batch queries may run at once
+   */
+  public BQQueryDispatcher(int maxInFlight, int maxInteractive, int maxBatch) {
+    checkPositive("maxInFlight", maxInFlight);
+    checkPositive("maxInteractive", maxInteractive);
+    checkPositive("maxBatch", maxBatch);
+    this.maxInFlight = maxInFlight;
+    lanes.put(QueryPriority.INTERACTIVE, new Lane(maxInteractive));
+    lanes.put(QueryPriority.BATCH, new Lane(maxBatch));
+  }
+
+  /** The dispatcher shared by every connection that wasn't given one of its own. */
+  public static BQQueryDispatcher shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * Sets how many queries may run at once, whatever their priority. Queries already running are not
+   * affected; if the cap went up, waiting queries start right away.
+   *
+   * @throws IllegalArgumentException if {@code maxInFlight} isn't positive
+   */
+  public void setMaxInFlight(int maxInFlight) {
+    checkPositive("maxInFlight", maxInFlight);
+    List<Turn> started;
+    synchronized (this) {
+      this.maxInFlight = maxInFlight;
+      started = dispatch();
+    }
+    start(started);
+  }
+
+  /** Returns how many queries may run at once, whatever their priority. */
+  public synchronized int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * Sets how many queries of {@code priority} may run at once. Queries already running are not
+   * affected; if the cap went up, waiting queries start right away.
+   *
+   * @throws IllegalArgumentException if {@code maxRunning} isn't positive
+   */
+  public void setMaxRunning(QueryPriority priority, int maxRunning) {
+    checkPositive("maxRunning", maxRunning);
+    List<Turn> started;
+    synchronized (this) {
+      lanes.get(priority).maxRunning = maxRunning;
+      started = dispatch();
+    }
+    start(started);
+  }
+
+  /** Returns how many queries of {@code priority} may run at once. */
+  public synchronized int getMaxRunning(QueryPriority priority) {
+    return lanes.get(priority).maxRunning;
+  }
+
+  /**
+   * Sets the share of the running queries {@code tenant} gets when tenants compete for them: a
+   * tenant of weight 2 may run twice as many queries as one of weight 1 before the other's waiting
+   * queries go first.
+   *
+   * @throws IllegalArgumentException if {@code weight} isn't positive
+   */
+  public synchronized void setWeight(String tenant, int weight) {
+    checkPositive("weight", weight);
+    weights.put(tenant, weight);
+  }
+
+  /** Returns the weight of {@code tenant}, 1 unless set with {@link #setWeight}. */
+  public synchronized int getWeight(String tenant) {
+    return weights.getOrDefault(tenant, 1);
+  }
+
+  /** Returns how many queries are running. */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /** Returns how many queries of {@code priority} are running. */
+  public synchronized int getRunning(QueryPriority priority) {
+    return lanes.get(priority).running;
+  }
+
+  /** Returns how many queries are waiting to start. */
+  public synchronized int getQueueDepth() {
+    int depth = 0;
+    for (QueryPriority priority : QueryPriority.values()) {
+      depth += getQueueDepth(priority);
+    }
+    return depth;
+  }
+
+  /** Returns how many queries of {@code priority} are waiting to start. */
+  public synchronized int getQueueDepth(QueryPriority priority) {
+    Lane lane = lanes.get(priority);
+    lane.purge();
+    int depth = 0;
+    for (Deque<Turn> queue : lane.waiting.values()) {
+      depth += queue.size();
+    }
+    return depth;
+  }
+
+  /** Returns how many queries of {@code tenant} are waiting to start. */
+  public synchronized int getQueueDepth(String tenant) {
+    int depth = 0;
+    for (Lane lane : lanes.values()) {
+      lane.purge();
+      Deque<Turn> queue = lane.waiting.get(tenant);
+      depth += queue == null ? 0 : queue.size();
+    }
+    return depth;
+  }
+
+  /** Returns how many queries have been let start so far. */
+  public synchronized long getStartedQueries() {
+    return startedQueries;
+  }
+
+  /** Returns how long the queries let start so far waited for it, together, in milliseconds. */
+  public synchronized long getTotalWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+  }
+
+  /** Returns the longest any query let start so far waited for it, in milliseconds. */
+  public synchronized long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+  }
+
+  /**
+   * Asks for a turn to run a query of {@code priority} for {@code tenant}.
+   *
+   * <p>The query may start once the returned turn completes. Cancelling the turn gives up the place
+   * in the queue. Either way, pass it to {@link #relinquish} once the query is done.
+   */
+  Turn acquire(QueryPriority priority, String tenant) {
+    Turn turn = new Turn(priority, tenant);
+    List<Turn> started;
+    synchronized (this) {
+      lanes.get(priority).waiting.computeIfAbsent(tenant, t -> new ArrayDeque<>()).add(turn);
+      started = dispatch();
+    }
+    start(started);
+    return turn;
+  }
+
+  /**
+   * Gives up a turn from {@link #acquire}: frees its slot if the query was started, or takes it out
+   * of its queue if it is still waiting.
+   */
+  void relinquish(Turn turn) {
+    if (turn.cancel(false)) {
+      // it never started; dispatch() drops it
+      return;
+    }
+    release(turn);
+  }
+
+  /** Frees the slot of a started turn, and starts whatever may start now. */
+  private void release(Turn turn) {
+    List<Turn> started;
+    synchronized (this) {
+      lanes.get(turn.priority).running--;
+      inFlight--;
+      inFlightByTenant.merge(turn.tenant, -1, (running, one) -> running == 1 ? null : running - 1);
+      started = dispatch();
+    }
+    start(started);
+  }
+
+  /**
+   * Takes the turns that may start now out of their queues, interactive ones first, and counts them
+   * as running. Complete them with {@link #start} once out of the lock.
+   */
+  private List<Turn> dispatch() {
+    List<Turn> started = new ArrayList<>();
+    Lane interactive = lanes.get(QueryPriority.INTERACTIVE);
+    Lane batch = lanes.get(QueryPriority.BATCH);
+    while (inFlight < maxInFlight) {
+      Turn next = takeNext(interactive);
+      if (next == null && interactive.waiting.isEmpty()) {
+        next = takeNext(batch);
+      }
+      if (next == null) {
+        break;
+      }
+      lanes.get(next.priority).running++;
+      inFlight++;
+      inFlightByTenant.merge(next.tenant, 1, Integer::sum);
+      long waitNanos = System.nanoTime() - next.requestedNanos;
+      startedQueries++;
+      totalWaitNanos += waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+      started.add(next);
+    }
+    return started;
+  }
+
+  /**
+   * Takes the next turn of {@code lane} out of its queue: the oldest of the tenant that runs the
+   * fewest queries for its weight, the longest waiting one among equals.
+   *
+   * @return the turn, or null if the lane is full or has none waiting
+   */
+  private Turn takeNext(Lane lane) {
+    lane.purge();
+    if (lane.running >= lane.maxRunning) {
+      return null;
+    }
+    Deque<Turn> fairest = null;
+    double fairestShare = 0;
+    for (Map.Entry<String, Deque<Turn>> queue : lane.waiting.entrySet()) {
+      String tenant = queue.getKey();
+      double share =
+          (double) inFlightByTenant.getOrDefault(tenant, 0) / weights.getOrDefault(tenant, 1);
+      if (fairest == null
+          || share < fairestShare
+          || (share == fairestShare
+              && queue.getValue().peek().requestedNanos - fairest.peek().requestedNanos < 0)) {
+        fairest = queue.getValue();
+        fairestShare = share;
+      }
+    }
+    if (fairest == null) {
+      return null;
+    }
+    Turn next = fairest.poll();
+    if (fairest.isEmpty()) {
+      lane.waiting.values().remove(fairest);
+    }
+    return next;
+  }
+
+  /**
+   * Lets the queries of {@code started} turns start. A turn cancelled since {@link #dispatch} took
+   * it doesn't start, and frees its slot again.
+   */
+  private void start(List<Turn> started) {
+    for (Turn turn : started) {
+      if (!turn.complete(null)) {
+        release(turn);
+      }
+    }
+  }
+
+  private static void checkPositive(String name, int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(name + " must be positive: " + value);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * What running a query would involve, according to a dry run of it.
+ *
+ * <p>Get one from {@link BQStatement#estimate(String)}, e.g. through {@code
+ * statement.unwrap(BQStatement.class).estimate(sql)}.
+ */
+public final class BQQueryEstimate {
+
+  private final BQDryRun dryRun;
+
+  BQQueryEstimate(BQDryRun dryRun) {
+    this.dryRun = dryRun;
+  }
+
+  /**
+   * How many bytes the query would process, which is what on-demand pricing bills for.
+   *
+   * @return the number of bytes, or null if BigQuery didn't say
+   */
+  public @Nullable Long getTotalBytesProcessed() {
+    return dryRun.getTotalBytesProcessed();
+  }
+
+  /** The tables the query reads. */
+  public List<TableReference> getReferencedTables() {
+    return dryRun.getReferencedTables();
+  }
+
+  /** The schema the query's results would have. */
+  public TableSchema getSchema() {
+    return dryRun.getSchema();
+  }
+}
@@ -0,0 +1,35 @@
+package net.starschema.clouddb.jdbc;
+
+/**
+ * Thrown instead of running a query that a dry run says would process more bytes than the
+ * connection's {@code preflightMaxBytes} allows. No job is created for the query.
+ */
+public class BQQueryTooExpensiveException extends BQSQLException {
+
+  private static final long serialVersionUID = 2482195853710396122L;
+
+  private final transient BQQueryEstimate estimate;
+
+  private final long maxBytes;
+
+  BQQueryTooExpensiveException(BQQueryEstimate estimate, long maxBytes) {
+    super(
+        "The query would process "
+            + estimate.getTotalBytesProcessed()
+            + " bytes, more than the "
+            + maxBytes
+            + " allowed by preflightMaxBytes");
+    this.estimate = estimate;
+    this.maxBytes = maxBytes;
+  }
+
+  /** What the dry run said about the query, e.g. to decide where else to run it. */
+  public BQQueryEstimate getEstimate() {
+    return estimate;
+  }
+
+  /** The limit the query exceeded. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+}
@@ -0,0 +1,431 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the rows of queries in memory, so that running the same query again, on any connection with
+ * the {@code resultCacheTtlMs} property, costs no round trip to BigQuery at all.
+ *
+ * <p>Only the results of SELECT statements are cached; DML, DDL and scripts run every time. A
+ * result is only cached once all of its rows are in: right away for a scrollable result set, and
+ * once the application read a forward only one to the end. Results bigger than {@link
+ * #getMaxEntryBytes()} are not cached. Each result stays for the TTL of the connection that cached
+ * it, and while the cache holds more than {@link #getMaxBytes()} of rows the least recently used
+ * ones are evicted. Sizes are estimates of the memory the rows take up.
+ *
+ * <p>Unless given their own with {@link BQConnection#setResultCache(BQResultCache)}, connections
+ * share the {@link #shared()} cache.
+ */
+public final class BQResultCache {
+
+  /** How many bytes of rows the cache holds by default. */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /** How big a single result may be to get cached, by default. */
+  public static final long DEFAULT_MAX_ENTRY_BYTES = 4L * 1024 * 1024;
+
+  private static class SharedHolder {
+    static final BQResultCache INSTANCE =
+        new BQResultCache(DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRY_BYTES);
+  }
+
+  /** What makes two queries return the same rows; labels don't matter. */
+  static final class Key {
+    private final List<Object> parts;
+
+    Key(
+        String credentialsFingerprint,
+        String projectId,
+        @Nullable String datasetProjectId,
+        @Nullable String dataset,
+        boolean useLegacySql,
+        String querySql,
+        @Nullable List<QueryParameter> queryParameters,
+        long maxRows) {
+      this.parts =
+          Arrays.asList(
+              credentialsFingerprint,
+              projectId,
+              datasetProjectId,
+              dataset,
+              useLegacySql,
+              BQSqlTemplate.normalize(querySql),
+              queryParameters == null ? null : queryParameters.toString(),
+              maxRows);
+    }
+
+    /** A hash of the key that stays the same from one run of the application to the next. */
+    String fingerprint() {
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (Object part : parts) {
+        String value = String.valueOf(part);
+        hasher.putInt(part == null ? -1 : value.length()).putString(value, StandardCharsets.UTF_8);
+      }
+      return hasher.hash().toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && parts.equals(((Key) other).parts);
+    }
+
+    @Override
+    public int hashCode() {
+      return parts.hashCode();
+    }
+  }
+
+  /** The rows of a query, and what its result sets tell about them. */
+  static final class Entry {
+    final TableSchema schema;
+    final List<TableRow> rows;
+    final @Nullable JobReference jobReference;
+    final @Nullable String queryId;
+    final @Nullable Long totalBytesProcessed;
+    final @Nullable Boolean cacheHit;
+    final long bytes;
+    final long expiresAtNanos;
+
+    private Entry(Recorder recorder, List<TableRow> rows) {
+      this.schema = recorder.schema;
+      this.rows = Collections.unmodifiableList(rows);
+      this.jobReference = recorder.jobReference;
+      this.queryId = recorder.queryId;
+      this.totalBytesProcessed = recorder.totalBytesProcessed;
+      this.cacheHit = recorder.cacheHit;
+      this.bytes = recorder.bytes;
+      this.expiresAtNanos = System.nanoTime() + recorder.ttlNanos;
+    }
+
+    boolean isExpired() {
+      return System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /** A result set over the cached rows, of the kind {@code statement} asks for. */
+    ResultSet toResultSet(BQStatementRoot statement) throws SQLException {
+      if (statement.resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE) {
+        return new BQScrollableResultSet(
+            rows,
+            statement,
+            schema,
+            totalBytesProcessed,
+            cacheHit,
+            null,
+            null,
+            jobReference,
+            queryId);
+      }
+      return new BQForwardOnlyResultSet(
+          statement.connection.getBigquery(),
+          statement.projectId,
+          jobReference == null ? null : LazyJobStatistics.jobFromReference(jobReference),
+          queryId,
+          statement,
+          rows,
+          true,
+          schema,
+          totalBytesProcessed,
+          cacheHit,
+          null,
+          null);
+    }
+  }
+
+  /** Takes the rows of a forward only result set page by page, as the application reads them. */
+  interface Recording {
+    /**
+     * Adds the next page of rows.
+     *
+     * @return false if the recording gave up, and there's no need to hand it any more
+     */
+    boolean add(List<TableRow> page);
+
+    /** The result set has no more rows. */
+    void finish();
+
+    /** The result set was closed before the application read all of its rows. */
+    void abandon();
+  }
+
+  /**
+   * Collects the pages of a forward only result set as the application reads them, and caches them
+   * once it has read them all.
+   */
+  final class Recorder implements Recording {
+    private final Key key;
+    private final long ttlNanos;
+    private final TableSchema schema;
+    private final @Nullable JobReference jobReference;
+    private final @Nullable String queryId;
+    private final @Nullable Long totalBytesProcessed;
+    private final @Nullable Boolean cacheHit;
+    private final List<List<TableRow>> pages = new ArrayList<>();
+    private long bytes = 0;
+
+    Recorder(
+        Key key,
+        long ttlMillis,
+        TableSchema schema,
+        @Nullable JobReference jobReference,
+        @Nullable String queryId,
+        @Nullable Long totalBytesProcessed,
+        @Nullable Boolean cacheHit) {
+      this.key = key;
+      this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+      this.schema = schema;
+      this.jobReference = jobReference;
+      this.queryId = queryId;
+      this.totalBytesProcessed = totalBytesProcessed;
+      this.cacheHit = cacheHit;
+    }
+
+    /**
+     * Adds the next page of rows.
+     *
+     * @return false if the result got too big to cache, and there's no need to record any more
+     */
+    @Override
+    public boolean add(List<TableRow> page) {
+      bytes += estimateBytes(page);
+      if (bytes > maxEntryBytes) {
+        pages.clear();
+        return false;
+      }
+      pages.add(page);
+      return true;
+    }
+
+    /** Caches the pages added so far: the result set has no more. */
+    @Override
+    public void finish() {
+      List<TableRow> rows = new ArrayList<>();
+      for (List<TableRow> page : pages) {
+        rows.addAll(page);
+      }
+      put(key, new Entry(this, rows));
+    }
+
+    @Override
+    public void abandon() {
+      pages.clear();
+    }
+  }
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+
+  /** The cached results, least recently used first. */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long bytes = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong expirations = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Creates a cache of its own.
+   *
+   * @param maxBytes how many bytes of rows to hold at most
+   * @param maxEntryBytes how big a single result may be to get cached
+   */
+  public BQResultCache(long maxBytes, long maxEntryBytes) {
+    if (maxBytes <= 0 || maxEntryBytes <= 0) {
+      throw new IllegalArgumentException("The sizes of a result cache must be positive");
+    }
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+  }
+
+  /** The cache shared by every connection that wasn't given one of its own. */
+  public static BQResultCache shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /** Returns the cached result of the query of {@code key}, or null if there is none (anymore). */
+  @Nullable
+  Entry get(Key key) {
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.isExpired()) {
+        remove(key);
+        expirations.incrementAndGet();
+        entry = null;
+      }
+      (entry == null ? misses : hits).incrementAndGet();
+      return entry;
+    }
+  }
+
+  /**
+   * Caches the rows of {@code resultSet}, fresh from running the query of {@code key}, for {@code
+   * ttlMillis}: right away if we have them all, or once the application has read them.
+   */
+  void offer(Key key, long ttlMillis, ResultSet resultSet) {
+    if (resultSet instanceof BQScrollableResultSet) {
+      BQScrollableResultSet scrollable = (BQScrollableResultSet) resultSet;
+      Recorder recorder =
+          new Recorder(
+              key,
+              ttlMillis,
+              scrollable.getSchema(),
+              scrollable.getJobReference(),
+              scrollable.getQueryId(),
+              scrollable.getTotalBytesProcessed(),
+              scrollable.getCacheHit());
+      if (recorder.add(scrollable.getRows())) {
+        recorder.finish();
+      }
+    } else if (resultSet instanceof BQForwardOnlyResultSet
+        && !(resultSet instanceof BQShardedResultSet)) {
+      BQForwardOnlyResultSet forwardOnly = (BQForwardOnlyResultSet) resultSet;
+      Job job = forwardOnly.getCompletedJob();
+      forwardOnly.record(
+          new Recorder(
+              key,
+              ttlMillis,
+              forwardOnly.getSchema(),
+              job == null ? null : job.getJobReference(),
+              forwardOnly.getQueryId(),
+              forwardOnly.getTotalBytesProcessed(),
+              forwardOnly.getCacheHit()));
+    }
+  }
+
+  /**
+   * Drops {@code entry}, which {@link #get} just returned for {@code key}, as the tables it was
+   * read from changed since; the lookup counts as a miss after all.
+   */
+  void invalidate(Key key, Entry entry) {
+    synchronized (entries) {
+      if (entries.remove(key, entry)) {
+        bytes -= entry.bytes;
+      }
+    }
+    hits.decrementAndGet();
+    misses.incrementAndGet();
+    invalidations.incrementAndGet();
+  }
+
+  private void put(Key key, Entry entry) {
+    synchronized (entries) {
+      remove(key);
+      entries.put(key, entry);
+      bytes += entry.bytes;
+      Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes) {
+        bytes -= eldest.next().getValue().bytes;
+        eldest.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private void remove(Key key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      bytes -= removed.bytes;
+    }
+  }
+
+  /** Drops every cached result. */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  /** Returns how many bytes of rows the cache holds at most. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Returns how big a single result may be to get cached. */
+  public long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  /** Returns how many bytes of rows the cache holds. */
+  public long getBytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  /** Returns how many results the cache holds. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Returns how many queries were answered from the cache. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Returns how many queries the cache had no result for, and that ran against BigQuery. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /** Returns how many results were dropped to make room for others. */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /** Returns how many results were dropped because their TTL was up. */
+  public long getExpirations() {
+    return expirations.get();
+  }
+
+  /** Returns how many results were dropped because the tables they were read from changed. */
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+
+  /** Estimates how much memory {@code value}, a row or any part of one, takes up. */
+  static long estimateBytes(@Nullable Object value) {
+    if (value instanceof CharSequence) {
+      return 40 + 2L * ((CharSequence) value).length();
+    }
+    if (value instanceof Map) {
+      long bytes = 48;
+      for (Object field : ((Map<?, ?>) value).values()) {
+        bytes += 32 + estimateBytes(field);
+      }
+      return bytes;
+    }
+    if (value instanceof Collection) {
+      long bytes = 24;
+      for (Object element : (Collection<?>) value) {
+        bytes += 8 + estimateBytes(element);
+      }
+      return bytes;
+    }
+    return 16;
+  }
+}
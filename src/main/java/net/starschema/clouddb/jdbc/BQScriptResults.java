@@ -0,0 +1,189 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobList;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * The results of the statements of a script, in order, as {@link java.sql.Statement#getMoreResults}
+ * walks through them.
+ *
+ * <p>Each child job of the script is one result: statements that return rows give a result set, the
+ * others an update count. While the caller reads one result, the first pages of the next {@link
+ * #PREFETCHED_RESULTS} result sets are fetched in the background.
+ */
+class BQScriptResults {
+
+  /** Builds the result set of a finished child job, fetching its first page of results. */
+  interface Loader {
+    ResultSet load(Job childJob) throws IOException, SQLException;
+  }
+
+  /** How many result sets past the current one we fetch ahead of the caller. */
+  static final int PREFETCHED_RESULTS = 2;
+
+  /** The result of one statement of the script. */
+  private static class Result {
+    /** The child job of a statement that returns rows, or null. */
+    final @Nullable Job job;
+
+    final int updateCount;
+
+    @Nullable CompletableFuture<ResultSet> resultSet;
+
+    Result(@Nullable Job job, int updateCount) {
+      this.job = job;
+      this.updateCount = updateCount;
+    }
+  }
+
+  private final List<Result> results;
+  private final Loader loader;
+  private final Executor executor;
+
+  /** The index of the current result; {@code results.size()} once there are no more. */
+  private int current = 0;
+
+  BQScriptResults(List<JobList.Jobs> children, Loader loader, Executor executor) {
+    this.results = new ArrayList<>(children.size());
+    for (JobList.Jobs child : children) {
+      JobStatistics2 query =
+          child.getStatistics() == null ? null : child.getStatistics().getQuery();
+      if (query != null && "SELECT".equals(query.getStatementType())) {
+        Job job =
+            new Job()
+                .setId(child.getId())
+                .setJobReference(child.getJobReference())
+                .setStatistics(child.getStatistics())
+                .setStatus(child.getStatus());
+        results.add(new Result(job, -1));
+      } else {
+        Long affectedRows = query == null ? null : query.getNumDmlAffectedRows();
+        results.add(new Result(null, BQStatementRoot.toUpdateCount(affectedRows)));
+      }
+    }
+    this.loader = loader;
+    this.executor = executor;
+    prefetch();
+  }
+
+  /** Whether the current result is a result set. */
+  boolean isResultSet() {
+    return current < results.size() && results.get(current).job != null;
+  }
+
+  /**
+   * Returns the current result set, waiting for its first page if it's still being fetched.
+   *
+   * @return the result set, or null if the current result is an update count or there are no more
+   *     results
+   */
+  @Nullable
+  ResultSet getResultSet() throws SQLException {
+    if (!isResultSet()) {
+      return null;
+    }
+    Result result = results.get(current);
+    if (result.resultSet == null) {
+      result.resultSet = CompletableFuture.completedFuture(load(result.job));
+    }
+    try {
+      return result.resultSet.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw new BQSQLException("Failed to retrieve data", e.getCause());
+    }
+  }
+
+  /** The update count of the current result, or -1 if it is a result set or there are no more. */
+  int getUpdateCount() {
+    return isResultSet() || current >= results.size() ? -1 : results.get(current).updateCount;
+  }
+
+  /**
+   * Moves on to the next result.
+   *
+   * @return true if the next result is a result set
+   */
+  boolean next() {
+    if (current < results.size()) {
+      current++;
+      prefetch();
+    }
+    return isResultSet();
+  }
+
+  /** Closes the result sets before the current one, which the caller may have kept open. */
+  void closePassed() throws SQLException {
+    close(0, Math.min(current, results.size()));
+  }
+
+  /** Closes every result set we fetched, including those the caller hasn't reached yet. */
+  void close() throws SQLException {
+    close(0, results.size());
+  }
+
+  private void close(int from, int to) throws SQLException {
+    for (Result result : results.subList(from, to)) {
+      if (result.resultSet == null) {
+        continue;
+      }
+      if (!result.resultSet.cancel(false) && !result.resultSet.isCompletedExceptionally()) {
+        ResultSet resultSet = result.resultSet.getNow(null);
+        if (resultSet != null) {
+          resultSet.close();
+        }
+      }
+    }
+  }
+
+  private ResultSet load(Job job) throws SQLException {
+    try {
+      return loader.load(job);
+    } catch (IOException e) {
+      throw new BQSQLException("Failed to retrieve data", e);
+    }
+  }
+
+  /** Starts fetching the current result set and the ones right after it, if we haven't yet. */
+  private void prefetch() {
+    int fetched = 0;
+    for (int i = current; i < results.size() && fetched <= PREFETCHED_RESULTS; i++) {
+      Result result = results.get(i);
+      if (result.job == null) {
+        continue;
+      }
+      fetched++;
+      if (result.resultSet != null) {
+        continue;
+      }
+      try {
+        result.resultSet =
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    return load(result.job);
+                  } catch (SQLException e) {
+                    throw new CompletionException(e);
+                  }
+                },
+                executor);
+      } catch (RejectedExecutionException e) {
+        // fetched when the caller gets to it
+        return;
+      }
+    }
+  }
+}
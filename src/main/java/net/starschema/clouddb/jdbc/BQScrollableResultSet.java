@@ -24,8 +24,10 @@ package net.starschema.clouddb.jdbc;
 
 import com.google.api.client.util.Data;
 import com.google.api.services.bigquery.model.BiEngineReason;
+import com.google.api.services.bigquery.model.BiEngineStatistics;
 import com.google.api.services.bigquery.model.GetQueryResultsResponse;
 import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics2;
 import com.google.api.services.bigquery.model.TableCell;
 import com.google.api.services.bigquery.model.TableRow;
 import com.google.api.services.bigquery.model.TableSchema;
@@ -34,6 +36,7 @@ import java.math.BigInteger;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 
@@ -58,16 +61,19 @@ public class BQScrollableResultSet extends ScrollableResultset<Object>
   private final @Nullable Boolean cacheHit;
 
   /** Specifies which mode of BI Engine acceleration was performed (if any). */
-  private final @Nullable String biEngineMode;
+  private @Nullable String biEngineMode;
   /**
    * In case of DISABLED or PARTIAL bi_engine_mode, these contain the explanatory reasons as to why
    * BI Engine could not accelerate. In case the full query was accelerated, this field is not
    * populated.
    */
-  private final @Nullable List<BiEngineReason> biEngineReasons;
+  private @Nullable List<BiEngineReason> biEngineReasons;
 
   private final @Nullable JobReference jobReference;
 
+  /** Job statistics that were not part of the query response, fetched on first use */
+  private final LazyJobStatistics jobStatistics;
+
   /** The BigQuery query ID; set if the query completed without a Job */
   private final @Nullable String queryId;
 
@@ -132,6 +138,12 @@ public class BQScrollableResultSet extends ScrollableResultset<Object>
     this.biEngineReasons = biEngineReasons;
     this.jobReference = jobReference;
     this.queryId = queryId;
+    this.jobStatistics =
+        new LazyJobStatistics(
+            bqStatementRoot.connection == null ? null : bqStatementRoot.connection.getBigquery(),
+            bqStatementRoot.projectId,
+            jobReference,
+            null);
   }
 
   /** {@inheritDoc} */
@@ -277,6 +289,12 @@ public class BQScrollableResultSet extends ScrollableResultset<Object>
   }
 
   public @Nullable Long getTotalBytesProcessed() {
+    if (totalBytesProcessed == null) {
+      JobStatistics2 queryStatistics = jobStatistics.getQueryStatistics();
+      if (queryStatistics != null) {
+        return queryStatistics.getTotalBytesProcessed();
+      }
+    }
     return totalBytesProcessed;
   }
 
@@ -285,13 +303,27 @@ public class BQScrollableResultSet extends ScrollableResultset<Object>
   }
 
   public @Nullable String getBiEngineMode() {
+    resolveBiEngineStatistics();
     return biEngineMode;
   }
 
   public @Nullable List<BiEngineReason> getBiEngineReasons() {
+    resolveBiEngineStatistics();
     return biEngineReasons;
   }
 
+  /** BI Engine statistics are not part of the query response, so look them up on the job. */
+  private void resolveBiEngineStatistics() {
+    if (biEngineMode != null || biEngineReasons != null) {
+      return;
+    }
+    BiEngineStatistics biEngineStatistics = jobStatistics.getBiEngineStatistics();
+    if (biEngineStatistics != null) {
+      biEngineMode = biEngineStatistics.getBiEngineMode();
+      biEngineReasons = biEngineStatistics.getBiEngineReasons();
+    }
+  }
+
   public @Nullable String getJobId() {
     if (this.jobReference != null) {
       return this.jobReference.getJobId();
@@ -303,4 +335,26 @@ public class BQScrollableResultSet extends ScrollableResultset<Object>
   public @Nullable String getQueryId() {
     return queryId;
   }
+
+  /** All rows of this result set. */
+  List<TableRow> getRows() {
+    List<TableRow> rows = new ArrayList<>();
+    if (this.RowsofResult != null) {
+      for (Object row : this.RowsofResult) {
+        rows.add((TableRow) row);
+      }
+    }
+    return rows;
+  }
+
+  /** The schema of the rows of this result set. */
+  TableSchema getSchema() {
+    return schema;
+  }
+
+  /** The job whose results these are, if the query ran as one. */
+  @Nullable
+  JobReference getJobReference() {
+    return jobReference;
+  }
 }
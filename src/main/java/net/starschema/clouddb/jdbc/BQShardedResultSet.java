@@ -0,0 +1,322 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A forward only result set over the rows of several shards of one query.
+ *
+ * <p>Every shard is a query of its own, run concurrently through {@link
+ * BQConnection#executeAll(List)}. As soon as a shard's first page is in, a task on the connection's
+ * query executor keeps fetching its pages into a buffer of at most {@code bufferPagesPerShard}
+ * pages, so a slow reader holds back the shards instead of filling up memory. {@link #next()} takes
+ * its rows from those buffers, in the order given by the {@link MergeMode}.
+ *
+ * <p>Closing the result set stops fetching, cancels any shard that is still running and closes the
+ * statement it was created with.
+ */
+public class BQShardedResultSet extends BQForwardOnlyResultSet {
+
+  /** How the rows of the shards are merged into one stream. */
+  public enum MergeMode {
+    /** All rows of the first shard, then all rows of the second, and so on. */
+    ORDERED,
+    /** Pages of rows in whichever order the shards deliver them. */
+    INTERLEAVED
+  }
+
+  /** Replaced with each shard's predicate in the query template. */
+  public static final String SHARD_PLACEHOLDER = "{shard}";
+
+  public static final int DEFAULT_BUFFER_PAGES_PER_SHARD = 2;
+
+  /** How often a blocked producer checks whether we've been closed. */
+  private static final long PRODUCER_WAKEUP_MILLIS = 500;
+
+  /** One entry in a shard's buffer. */
+  private static class Page {
+    static final Page END = new Page(null, null);
+
+    final @Nullable List<TableRow> rows;
+    final @Nullable Throwable failure;
+
+    Page(@Nullable List<TableRow> rows, @Nullable Throwable failure) {
+      this.rows = rows;
+      this.failure = failure;
+    }
+  }
+
+  private final MergeMode mergeMode;
+  private final List<CompletableFuture<ResultSet>> shards;
+  private final List<BlockingQueue<Page>> buffers;
+  /** One permit per page (or end/failure marker) in any buffer; only used when interleaving. */
+  private final Semaphore bufferedPages = new Semaphore(0);
+  /** Shards we haven't yet read to the end. */
+  private final List<Integer> openShards = new ArrayList<>();
+
+  private int currentShard = 0;
+  private volatile boolean stopped = false;
+
+  private BQShardedResultSet(
+      BQConnection connection,
+      BQStatementRoot statement,
+      TableSchema schema,
+      List<CompletableFuture<ResultSet>> shards,
+      MergeMode mergeMode,
+      int bufferPagesPerShard)
+      throws SQLException {
+    super(
+        connection.getBigquery(),
+        connection.getProjectId(),
+        null,
+        null,
+        statement,
+        Collections.<TableRow>emptyList(),
+        false,
+        schema,
+        null,
+        null,
+        null,
+        null);
+    this.mergeMode = mergeMode;
+    this.shards = shards;
+    this.buffers = new ArrayList<>(shards.size());
+    for (int i = 0; i < shards.size(); i++) {
+      buffers.add(new ArrayBlockingQueue<>(bufferPagesPerShard));
+      openShards.add(i);
+    }
+  }
+
+  /**
+   * Runs {@code queryTemplate} once per shard, with {@link #SHARD_PLACEHOLDER} replaced by the
+   * shard's predicate, and merges the results.
+   *
+   * <p>Blocks until a shard with a schema has its first page of results, so we know the schema.
+   * Shards without rows may have none.
+   */
+  static BQShardedResultSet execute(
+      BQConnection connection,
+      String queryTemplate,
+      List<String> shardPredicates,
+      MergeMode mergeMode,
+      int bufferPagesPerShard)
+      throws SQLException {
+    if (!queryTemplate.contains(SHARD_PLACEHOLDER)) {
+      throw new BQSQLException("The query template must contain " + SHARD_PLACEHOLDER);
+    }
+    if (shardPredicates.isEmpty()) {
+      throw new BQSQLException("At least one shard is required");
+    }
+    if (bufferPagesPerShard < 1) {
+      throw new BQSQLException("bufferPagesPerShard must be positive.");
+    }
+    List<String> queries = new ArrayList<>(shardPredicates.size());
+    for (String predicate : shardPredicates) {
+      queries.add(queryTemplate.replace(SHARD_PLACEHOLDER, "(" + predicate + ")"));
+    }
+    BQStatementRoot statement = (BQStatementRoot) connection.createStatement();
+    List<CompletableFuture<ResultSet>> shards = connection.executeAll(queries);
+
+    TableSchema schema;
+    try {
+      schema = awaitSchema(shards);
+    } catch (SQLException e) {
+      cancelAll(shards);
+      statement.close();
+      throw e;
+    }
+
+    BQShardedResultSet merged =
+        new BQShardedResultSet(
+            connection, statement, schema, shards, mergeMode, bufferPagesPerShard);
+    merged.startProducers(connection.getQueryExecutor());
+    return merged;
+  }
+
+  /**
+   * Waits for the shards until one of them tells the schema of the rows. If none does, which is
+   * when they have no rows, the schema has no fields.
+   */
+  private static TableSchema awaitSchema(List<CompletableFuture<ResultSet>> shards)
+      throws SQLException {
+    List<CompletableFuture<ResultSet>> pending = new ArrayList<>(shards);
+    while (!pending.isEmpty()) {
+      ResultSet shard;
+      try {
+        shard =
+            (ResultSet) CompletableFuture.anyOf(pending.toArray(new CompletableFuture<?>[0])).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new BQSQLException("Interrupted while waiting for the shards", e);
+      } catch (ExecutionException e) {
+        throw asSqlException(e.getCause());
+      }
+      if (!(shard instanceof BQForwardOnlyResultSet)) {
+        throw new BQSQLException("Shards must produce forward only result sets");
+      }
+      TableSchema schema = ((BQForwardOnlyResultSet) shard).getSchema();
+      if (schema != null) {
+        return schema;
+      }
+      pending.removeIf(CompletableFuture::isDone);
+    }
+    return new TableSchema().setFields(Collections.emptyList());
+  }
+
+  private void startProducers(Executor executor) {
+    for (int i = 0; i < shards.size(); i++) {
+      int shard = i;
+      shards
+          .get(i)
+          .whenComplete(
+              (resultSet, e) -> {
+                if (e != null) {
+                  offer(shard, new Page(null, e));
+                  return;
+                }
+                try {
+                  executor.execute(() -> produce(shard, (BQForwardOnlyResultSet) resultSet));
+                } catch (RejectedExecutionException rejected) {
+                  offer(shard, new Page(null, rejected));
+                }
+              });
+    }
+  }
+
+  /** Copies the pages of one shard into its buffer, until we run out of pages or are closed. */
+  private void produce(int shard, BQForwardOnlyResultSet resultSet) {
+    try {
+      List<TableRow> page = resultSet.rowsofResult;
+      while (page != null && !stopped) {
+        if (!page.isEmpty() && !offer(shard, new Page(page, null))) {
+          return;
+        }
+        page = resultSet.fetchNextPage();
+        if (page != null) {
+          resultSet.fetchPos = resultSet.fetchPos.add(BigInteger.valueOf(page.size()));
+        }
+      }
+      offer(shard, Page.END);
+    } catch (SQLException | RuntimeException e) {
+      offer(shard, new Page(null, e));
+    } finally {
+      try {
+        resultSet.close();
+      } catch (SQLException e) {
+        // Nothing to do
+      }
+    }
+  }
+
+  /** Blocks until there's room for {@code page}; false if we were closed in the meantime. */
+  private boolean offer(int shard, Page page) {
+    try {
+      while (!stopped) {
+        if (buffers.get(shard).offer(page, PRODUCER_WAKEUP_MILLIS, TimeUnit.MILLISECONDS)) {
+          bufferedPages.release();
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  @Override
+  protected @Nullable List<TableRow> fetchNextPage() throws SQLException {
+    try {
+      while (!openShards.isEmpty()) {
+        int shard;
+        Page page;
+        if (mergeMode == MergeMode.ORDERED) {
+          shard = openShards.get(0);
+          page = buffers.get(shard).take();
+        } else {
+          bufferedPages.acquire();
+          shard = -1;
+          page = null;
+          // Every permit stands for one buffered page, so one of the open shards has it.
+          for (int i = 0; page == null; i = (i + 1) % openShards.size()) {
+            int candidate = openShards.get((currentShard + i) % openShards.size());
+            page = buffers.get(candidate).poll();
+            shard = candidate;
+          }
+          currentShard = (openShards.indexOf(shard) + 1) % openShards.size();
+        }
+        if (page.failure != null) {
+          close();
+          throw asSqlException(page.failure);
+        }
+        if (page == Page.END) {
+          openShards.remove(Integer.valueOf(shard));
+          continue;
+        }
+        return page.rows;
+      }
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BQSQLException("Interrupted while waiting for the shards", e);
+    }
+  }
+
+  /** The sum of the bytes processed by all shards that have completed. */
+  @Override
+  public @Nullable Long getTotalBytesProcessed() {
+    long total = 0;
+    for (CompletableFuture<ResultSet> shard : shards) {
+      if (!shard.isDone() || shard.isCompletedExceptionally()) {
+        // failed and cancelled shards processed nothing we can tell of
+        continue;
+      }
+      ResultSet resultSet = shard.join();
+      if (resultSet instanceof BQForwardOnlyResultSet) {
+        Long bytes = ((BQForwardOnlyResultSet) resultSet).getTotalBytesProcessed();
+        total += bytes == null ? 0 : bytes;
+      }
+    }
+    return total;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    stopped = true;
+    cancelAll(shards);
+    super.close();
+    getStatement().close();
+  }
+
+  private static void cancelAll(List<CompletableFuture<ResultSet>> shards) {
+    for (CompletableFuture<ResultSet> shard : shards) {
+      shard.cancel(true);
+    }
+  }
+
+  private static SQLException asSqlException(Throwable failure) {
+    Throwable cause =
+        failure instanceof CompletionException || failure instanceof ExecutionException
+            ? failure.getCause()
+            : failure;
+    if (cause instanceof SQLException) {
+      return (SQLException) cause;
+    }
+    return new BQSQLException("A shard of the query failed", cause);
+  }
+}
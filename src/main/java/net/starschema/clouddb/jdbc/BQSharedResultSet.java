@@ -0,0 +1,56 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.TableRow;
+import java.sql.SQLException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A forward only result set over the rows of a query that several statements ran at once, see
+ * {@link BQSingleFlight}.
+ *
+ * <p>Each statement gets a result set of its own, which goes through the rows at its own pace; the
+ * pages themselves are fetched once, by the {@link BQSingleFlight.Flight}, for all of them.
+ */
+class BQSharedResultSet extends BQForwardOnlyResultSet {
+
+  private final BQSingleFlight.Flight flight;
+
+  /** The page of the flight we are on. */
+  private int page = 0;
+
+  BQSharedResultSet(BQStatementRoot statement, BQSingleFlight.Flight flight) throws SQLException {
+    super(
+        statement.connection.getBigquery(),
+        statement.projectId,
+        flight.job,
+        flight.queryId,
+        statement,
+        flight.firstPage(),
+        false,
+        flight.schema,
+        flight.totalBytesProcessed,
+        flight.cacheHit,
+        null,
+        null);
+    this.flight = flight;
+    flight.register(this);
+  }
+
+  @Override
+  protected @Nullable List<TableRow> fetchNextPage() throws SQLException {
+    List<TableRow> rows = flight.page(this, page + 1);
+    if (rows != null) {
+      page++;
+    }
+    return rows;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (!this.closed) {
+      flight.release(this);
+    }
+    super.close();
+  }
+}
@@ -0,0 +1,327 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import javax.annotation.Nullable;
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
+
+/**
+ * Lets identical queries that run at the same time share one job, for connections with the {@code
+ * singleFlight} property. Only queries that just read, a single {@code SELECT}, share; statements
+ * that write run as often as they are asked to.
+ *
+ * <p>The first statement to run a query leads a {@link Flight} and runs the query as usual.
+ * Statements that run an identical query (see {@link Key}) before the leader has its results follow
+ * that flight rather than start jobs of their own. Once the leader has the first page of rows, each
+ * of them, the leader included, gets a {@link BQSharedResultSet}: a cursor of its own over the
+ * flight's pages. Each page is fetched from BigQuery once, by the first cursor to need it, and let
+ * go once every cursor went past it.
+ *
+ * <p>If the query fails, its followers fail with it; unless the leader's statement was cancelled,
+ * in which case they run the query on their own.
+ */
+final class BQSingleFlight {
+
+  private static final BQSingleFlight SHARED = new BQSingleFlight();
+
+  /** The flights whose leader is still waiting for its results. */
+  private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+  /** The single flight of the driver. */
+  static BQSingleFlight shared() {
+    return SHARED;
+  }
+
+  /** Runs a query for the leader of a flight. */
+  interface Query {
+    ResultSet run() throws SQLException;
+  }
+
+  /** What makes queries identical: the same SQL, run the same way, with the same credentials. */
+  static final class Key {
+    private final List<Object> parts;
+
+    Key(
+        String credentialsFingerprint,
+        String projectId,
+        @Nullable String datasetProjectId,
+        @Nullable String dataset,
+        boolean useLegacySql,
+        String querySql,
+        @Nullable List<QueryParameter> queryParameters,
+        @Nullable Long maxBillingBytes,
+        long maxRows,
+        QueryPriority priority) {
+      this.parts =
+          Arrays.asList(
+              credentialsFingerprint,
+              projectId,
+              datasetProjectId,
+              dataset,
+              useLegacySql,
+              querySql,
+              queryParameters == null ? null : queryParameters.toString(),
+              maxBillingBytes,
+              maxRows,
+              priority);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && parts.equals(((Key) other).parts);
+    }
+
+    @Override
+    public int hashCode() {
+      return parts.hashCode();
+    }
+  }
+
+  /**
+   * Boards {@code own} if no identical query is in the air, making the caller its leader; or else
+   * joins the flight of the identical query as a follower.
+   *
+   * @return {@code own} if the caller leads it, the flight it follows otherwise
+   */
+  Flight board(Flight own) {
+    own.boarded = this;
+    while (true) {
+      Flight running = flights.putIfAbsent(own.key, own);
+      if (running == null) {
+        return own;
+      }
+      if (running.follow()) {
+        return running;
+      }
+      // it landed, but hasn't left the map yet
+      flights.remove(own.key, running);
+    }
+  }
+
+  /** Returns how many flights are waiting for their results. */
+  int getFlights() {
+    return flights.size();
+  }
+
+  /** One query, and the statements waiting for its results. */
+  static final class Flight {
+    private final Key key;
+    private @Nullable BQSingleFlight boarded;
+
+    /**
+     * Completes once the leader has its results: with true if its followers can read them, false if
+     * they must run the query on their own.
+     */
+    final CompletableFuture<Boolean> landing = new CompletableFuture<>();
+
+    private int participants = 1;
+    private boolean landed = false;
+    /** Cursors that will still ask for the first page. */
+    private int pendingReaders = 0;
+
+    // Set before landing completes
+    @Nullable TableSchema schema;
+    @Nullable Job job;
+    @Nullable String queryId;
+    @Nullable Long totalBytesProcessed;
+    @Nullable Boolean cacheHit;
+
+    /** The result set we fetch further pages from; null once there are no more. */
+    private @Nullable BQForwardOnlyResultSet source;
+
+    /** The pages fetched so far; those every cursor went past are null. */
+    private final List<List<TableRow>> pages = new ArrayList<>();
+
+    private int firstRetainedPage = 0;
+
+    /** The page each open cursor is on. */
+    private final Map<BQSharedResultSet, Integer> readers = new IdentityHashMap<>();
+
+    Flight(Key key) {
+      this.key = key;
+    }
+
+    private synchronized boolean follow() {
+      if (landed) {
+        return false;
+      }
+      participants++;
+      return true;
+    }
+
+    /**
+     * Gives up following: for a follower that stopped waiting for the landing, or that won't read
+     * the results after all.
+     */
+    synchronized void leave() {
+      if (!landed) {
+        participants--;
+      } else if (pendingReaders > 0) {
+        pendingReaders--;
+        trim();
+      }
+    }
+
+    /**
+     * Runs the query as the leader and lets the followers share its results.
+     *
+     * @param statement the leader's statement
+     * @param query runs the query
+     * @param cancelled whether the leader's statement was cancelled, asked if the query fails
+     * @return the leader's result set
+     */
+    ResultSet lead(BQStatementRoot statement, Query query, BooleanSupplier cancelled)
+        throws SQLException {
+      ResultSet resultSet;
+      try {
+        resultSet = query.run();
+      } catch (SQLException | RuntimeException e) {
+        land();
+        if (cancelled.getAsBoolean()) {
+          landing.complete(false);
+        } else {
+          landing.completeExceptionally(e);
+        }
+        throw e;
+      }
+      boolean shared = false;
+      try {
+        shared = land() > 0 && share(resultSet);
+      } finally {
+        landing.complete(shared);
+      }
+      return shared ? open(statement) : resultSet;
+    }
+
+    /** Opens a cursor over the results for {@code statement}, once they can be shared. */
+    BQSharedResultSet open(BQStatementRoot statement) throws SQLException {
+      try {
+        return new BQSharedResultSet(statement, this);
+      } catch (SQLException | RuntimeException e) {
+        leave();
+        throw e;
+      }
+    }
+
+    /**
+     * Takes the flight out of the air, so that no one else follows it.
+     *
+     * @return how many followers it has
+     */
+    private synchronized int land() {
+      landed = true;
+      if (boarded != null) {
+        boarded.flights.remove(key, this);
+      }
+      pendingReaders = participants;
+      return participants - 1;
+    }
+
+    /** Takes over the leader's result set as the source of the pages, if it is one we can share. */
+    private synchronized boolean share(ResultSet resultSet) throws SQLException {
+      if (resultSet.getClass() == BQForwardOnlyResultSet.class) {
+        BQForwardOnlyResultSet forwardOnly = (BQForwardOnlyResultSet) resultSet;
+        schema = forwardOnly.getSchema();
+        job = forwardOnly.getCompletedJob();
+        queryId = forwardOnly.getQueryId();
+        totalBytesProcessed = forwardOnly.getTotalBytesProcessed();
+        cacheHit = forwardOnly.getCacheHit();
+        if (forwardOnly.rowsofResult == null) {
+          pages.add(Collections.<TableRow>emptyList());
+          forwardOnly.close();
+        } else {
+          pages.add(forwardOnly.rowsofResult);
+          source = forwardOnly;
+        }
+        return true;
+      }
+      if (resultSet instanceof BQScrollableResultSet) {
+        BQScrollableResultSet scrollable = (BQScrollableResultSet) resultSet;
+        schema = scrollable.getSchema();
+        job =
+            scrollable.getJobReference() == null
+                ? null
+                : LazyJobStatistics.jobFromReference(scrollable.getJobReference());
+        queryId = scrollable.getQueryId();
+        totalBytesProcessed = scrollable.getTotalBytesProcessed();
+        cacheHit = scrollable.getCacheHit();
+        pages.add(scrollable.getRows());
+        scrollable.close();
+        return true;
+      }
+      return false;
+    }
+
+    /** The first page, for a cursor about to {@link #register} itself. */
+    synchronized List<TableRow> firstPage() {
+      return pages.get(0);
+    }
+
+    /** Starts keeping pages around for {@code reader}, which is on the first one. */
+    synchronized void register(BQSharedResultSet reader) {
+      pendingReaders--;
+      readers.put(reader, 0);
+    }
+
+    /**
+     * Returns page {@code index} for {@code reader}, fetching it if no cursor did yet.
+     *
+     * @return the page, or null if there are no more
+     */
+    synchronized @Nullable List<TableRow> page(BQSharedResultSet reader, int index)
+        throws SQLException {
+      while (index >= pages.size() && source != null) {
+        List<TableRow> page = source.fetchNextPage();
+        if (page == null) {
+          source.close();
+          source = null;
+        } else {
+          source.fetchPos = source.fetchPos.add(BigInteger.valueOf(page.size()));
+          pages.add(page);
+        }
+      }
+      if (index >= pages.size()) {
+        return null;
+      }
+      List<TableRow> page = pages.get(index);
+      readers.put(reader, index);
+      trim();
+      return page;
+    }
+
+    /** Stops keeping pages around for {@code reader}. */
+    synchronized void release(BQSharedResultSet reader) throws SQLException {
+      readers.remove(reader);
+      trim();
+      if (readers.isEmpty() && pendingReaders == 0 && source != null) {
+        source.close();
+        source = null;
+      }
+    }
+
+    /** Lets go of the pages every cursor went past. */
+    private void trim() {
+      if (pendingReaders > 0) {
+        return;
+      }
+      int firstNeeded = readers.isEmpty() ? pages.size() : Collections.min(readers.values());
+      for (; firstRetainedPage < firstNeeded; firstRetainedPage++) {
+        pages.set(firstRetainedPage, null);
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package net.starschema.clouddb.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SQL text of a prepared statement, split once into the literal text around its {@code ?}
+ * parameter markers.
+ *
+ * <p>Only markers outside of string literals, quoted identifiers and comments count as parameters.
+ * Templates are immutable, so a connection can share them between all statements that prepare the
+ * same SQL (see {@link BQConnection#getSqlTemplate(String)}).
+ */
+class BQSqlTemplate {
+
+  /** The text before the first parameter, between each pair of parameters, and after the last. */
+  private final String[] segments;
+
+  /** The length of all segments together. */
+  private final int literalLength;
+
+  private BQSqlTemplate(List<String> segments) {
+    this.segments = segments.toArray(new String[0]);
+    int length = 0;
+    for (String segment : segments) {
+      length += segment.length();
+    }
+    this.literalLength = length;
+  }
+
+  /** Splits {@code sql} on the parameter markers that are not quoted or commented out. */
+  static BQSqlTemplate parse(String sql) {
+    List<String> segments = new ArrayList<>();
+    int segmentStart = 0;
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (c == '?') {
+        segments.add(sql.substring(segmentStart, i));
+        segmentStart = ++i;
+      } else if (c == '\'' || c == '"') {
+        i = skipString(sql, i, c);
+      } else if (c == '`') {
+        i = skipQuoted(sql, i + 1, "`");
+      } else if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+        i = skipQuoted(sql, i + 1, "\n");
+      } else if (c == '/' && sql.startsWith("/*", i)) {
+        i = skipQuoted(sql, i + 2, "*/");
+      } else {
+        i++;
+      }
+    }
+    segments.add(sql.substring(segmentStart));
+    return new BQSqlTemplate(segments);
+  }
+
+  /**
+   * Normalizes {@code sql} so that queries that differ only in layout compare equal: runs of
+   * whitespace outside literals become a single space, and leading and trailing whitespace and
+   * semicolons are dropped.
+   */
+  static String normalize(String sql) {
+    StringBuilder normalized = new StringBuilder(sql.length());
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      int end;
+      if (Character.isWhitespace(c)) {
+        while (i < length && Character.isWhitespace(sql.charAt(i))) {
+          i++;
+        }
+        normalized.append(' ');
+        continue;
+      } else if (c == '\'' || c == '"') {
+        end = skipString(sql, i, c);
+      } else if (c == '`') {
+        end = skipQuoted(sql, i + 1, "`");
+      } else if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+        // keeps the newline that ends the comment
+        end = skipQuoted(sql, i + 1, "\n");
+      } else if (c == '/' && sql.startsWith("/*", i)) {
+        end = skipQuoted(sql, i + 2, "*/");
+      } else {
+        end = i + 1;
+      }
+      normalized.append(sql, i, end);
+      i = end;
+    }
+    int start = 0;
+    int end = normalized.length();
+    while (start < end && normalized.charAt(start) == ' ') {
+      start++;
+    }
+    while (end > start
+        && (normalized.charAt(end - 1) == ' ' || normalized.charAt(end - 1) == ';')) {
+      end--;
+    }
+    return normalized.substring(start, end);
+  }
+
+  /**
+   * Skips a string literal that starts with {@code quote} at {@code start}, which may be a triple
+   * quoted one.
+   *
+   * @return the index just after the literal
+   */
+  static int skipString(String sql, int start, char quote) {
+    String triple = new String(new char[] {quote, quote, quote});
+    if (sql.startsWith(triple, start)) {
+      return skipQuoted(sql, start + 3, triple);
+    }
+    return skipQuoted(sql, start + 1, String.valueOf(quote));
+  }
+
+  /**
+   * Skips to the first unescaped {@code end} at or after {@code from}.
+   *
+   * @return the index just after {@code end}, or the length of {@code sql} if it isn't closed
+   */
+  static int skipQuoted(String sql, int from, String end) {
+    boolean escapes = !end.equals("\n") && !end.equals("*/");
+    int i = from;
+    while (i < sql.length()) {
+      if (escapes && sql.charAt(i) == '\\') {
+        i += 2;
+      } else if (sql.startsWith(end, i)) {
+        return i + end.length();
+      } else {
+        i++;
+      }
+    }
+    return sql.length();
+  }
+
+  /** The number of parameter markers in the template. */
+  int getParameterCount() {
+    return segments.length - 1;
+  }
+
+  /**
+   * Renders the template in one pass, with each parameter marker replaced by the corresponding
+   * value. Parameters that are null are left as {@code ?}.
+   */
+  String render(String[] values) {
+    int length = literalLength;
+    for (String value : values) {
+      length += value == null ? 1 : value.length();
+    }
+    StringBuilder sql = new StringBuilder(length);
+    sql.append(segments[0]);
+    for (int i = 1; i < segments.length; i++) {
+      String value = values[i - 1];
+      sql.append(value == null ? "?" : value).append(segments[i]);
+    }
+    return sql.toString();
+  }
+}
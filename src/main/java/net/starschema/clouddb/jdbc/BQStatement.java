@@ -31,10 +31,19 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /**
  * This class implements java.sql.Statement
@@ -47,18 +56,24 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
   private static final long MAX_LABELS = 64;
   public static final int MAX_IO_FAILURE_RETRIES = 3;
   private Job job;
-  private AtomicReference<Thread> runningSyncThread = new AtomicReference<>();
+  private AtomicReference<Future<?>> runningSyncQuery = new AtomicReference<>();
+  /** Queries started by {@link #executeQueryAsync} that have not completed yet. */
+  private final Set<AsyncQuery> pendingAsyncQueries = ConcurrentHashMap.newKeySet();
+
   private AtomicReference<QueryResponse> syncResponseFromCurrentQuery = new AtomicReference<>();
+  /**
+   * The job of the query {@link #runSyncQuery} runs: while BigQuery creates it, the reference we
+   * chose for it, then the one BigQuery returned.
+   */
+  private final AtomicReference<JobReference> syncJob = new AtomicReference<>();
+  /** Whether {@link #syncJob} is known to exist. */
+  private volatile boolean syncJobCreated = false;
+  /** Set by {@link #cancel()}, so that a job too new to cancel then is cancelled once it exists. */
+  private volatile boolean cancelRequested = false;
   // Labels to be sent with the request
   // (in addition to the ones specified in the connection string).
   private ImmutableMap<String, String> statementLabels = ImmutableMap.of();
 
-  /**
-   * Enough time to give fast queries time to complete, but fast enough that if we want to cancel
-   * the query (for which we have to wait at least this long), we don't have to wait too long.
-   */
-  public static final long SYNC_TIMEOUT_MILLIS = 5 * 1000;
-
   /**
    * Constructor for BQStatement object just initializes local variables
    *
@@ -102,10 +117,6 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
     this.resultSetConcurrency = resultSetConcurrency;
   }
 
-  protected long getSyncTimeoutMillis() {
-    return SYNC_TIMEOUT_MILLIS;
-  }
-
   public void setLabels(Map<String, String> statementLabels) {
     this.statementLabels = ImmutableMap.copyOf(statementLabels);
   }
@@ -120,6 +131,9 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
 
   @Override
   protected Map<String, String> getAllLabels() {
+    // Combine the connection's labels with `statementLabels`, the latter taking precedence.
+    // However, if the total number of labels is greater than `MAX_LABELS`,
+    // truncate the statement labels first, then the connection labels, if necessary.
     return ImmutableMap.<String, String>builder()
         .putAll(
             Stream.concat(
@@ -134,14 +148,7 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
   /** {@inheritDoc} */
   @Override
   public ResultSet executeQuery(String querySql) throws SQLException {
-    try {
-      this.connection.addRunningStatement(this);
-      return executeQueryHelper(querySql, false);
-    } finally {
-      this.job = null;
-      this.syncResponseFromCurrentQuery.set(null);
-      this.connection.removeRunningStatement(this);
-    }
+    return executeQuery(querySql, false);
   }
 
   @Override
@@ -149,13 +156,296 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
       throws SQLException {
     try {
       this.connection.addRunningStatement(this);
-      return executeQueryHelper(querySql, unlimitedBillingBytes);
+      return executeCached(
+          querySql,
+          unlimitedBillingBytes,
+          null,
+          () -> {
+            checkPreflight(withMaxRowsLimit(querySql), unlimitedBillingBytes, false);
+            return runAdmitted(() -> executeQueryHelper(querySql, unlimitedBillingBytes));
+          });
     } finally {
       this.job = null;
+      this.syncResponseFromCurrentQuery.set(null);
+      this.syncJob.set(null);
       this.connection.removeRunningStatement(this);
     }
   }
 
+  @Override
+  protected boolean isCancelRequested() {
+    return this.cancelRequested;
+  }
+
+  /**
+   * Estimates what running {@code querySql} would involve, with a dry run that doesn't run it.
+   * Reach this through {@code statement.unwrap(BQStatement.class)}.
+   *
+   * <p>The connection remembers the estimate, so asking again about the same query, even laid out
+   * differently, is free.
+   *
+   * @throws BQSQLException if the query is invalid or the dry run fails
+   */
+  public BQQueryEstimate estimate(String querySql) throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    return new BQQueryEstimate(
+        this.connection.dryRun(querySql, false, getPriority(), getAdmissionTenant()));
+  }
+
+  /**
+   * Runs a query without blocking the calling thread.
+   *
+   * <p>The job is started, polled and its first page of results fetched by short tasks on the
+   * connection's query executor; no thread is held while BigQuery runs the job. Reach this through
+   * {@code statement.unwrap(BQStatement.class)}.
+   *
+   * <p>Cancelling the returned future, or calling {@link #cancel()} or {@link
+   * BQConnection#cancelRunningQueries()}, cancels the BigQuery job as well. The future fails with a
+   * {@link BQSQLException} if the query fails or does not finish within the query timeout.
+   *
+   * @param querySql the query to run
+   * @return a future of the query's result set
+   * @throws SQLException if this statement is closed
+   */
+  public CompletableFuture<ResultSet> executeQueryAsync(String querySql) throws SQLException {
+    return executeQueryAsync(querySql, false);
+  }
+
+  /** Like {@link #executeQueryAsync(String)}, optionally ignoring the connection's byte limit. */
+  public CompletableFuture<ResultSet> executeQueryAsync(
+      String querySql, boolean unlimitedBillingBytes) throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    AsyncQuery query =
+        new AsyncQuery(withMaxRowsLimit(querySql), deadlineMillis(System.currentTimeMillis()));
+    this.pendingAsyncQueries.add(query);
+    this.connection.addRunningStatement(this);
+    query.whenComplete(
+        (resultSet, e) -> {
+          this.pendingAsyncQueries.remove(query);
+          if (this.pendingAsyncQueries.isEmpty() && this.runningSyncQuery.get() == null) {
+            this.connection.removeRunningStatement(this);
+          }
+        });
+    query.start(unlimitedBillingBytes);
+    return query;
+  }
+
+  /** A step of an {@link AsyncQuery} that calls BigQuery. */
+  private interface AsyncStep<T> {
+    T run() throws IOException, SQLException;
+  }
+
+  /**
+   * A query started by {@link #executeQueryAsync}, and the future of its result set.
+   *
+   * <p>Every step that calls BigQuery runs on the connection's query executor; waiting for the job
+   * is left to {@link BQJobWaiter#waitForCompletionAsync}.
+   */
+  private class AsyncQuery extends CompletableFuture<ResultSet> {
+    private final String querySql;
+    private final long deadlineMillis;
+    private final ExecutorService executor = connection.getQueryExecutor();
+    private final AtomicReference<JobReference> jobReference = new AtomicReference<>();
+    /** The wait for the job to complete, once it started. */
+    private final AtomicReference<CompletableFuture<?>> completion = new AtomicReference<>();
+
+    AsyncQuery(String querySql, long deadlineMillis) {
+      this.querySql = querySql;
+      this.deadlineMillis = deadlineMillis;
+    }
+
+    void start(boolean unlimitedBillingBytes) {
+      JobReference clientJobReference = newJobReference();
+      jobReference.set(clientJobReference);
+      BQQueryDispatcher dispatcher = connection.getQueryDispatcher();
+      // the preflight's dry run waits for a turn of its own, so the query asks for one after it
+      CompletableFuture<QueryResponse> response =
+          onExecutor(
+                  () -> {
+                    checkPreflight(querySql, unlimitedBillingBytes, false);
+                    return null;
+                  })
+              .thenCompose(
+                  checked -> {
+                    BQQueryDispatcher.Turn turn =
+                        dispatcher.acquire(getPriority(), getAdmissionTenant());
+                    whenComplete((resultSet, e) -> dispatcher.relinquish(turn));
+                    return turn;
+                  })
+              .thenCompose(
+                  started ->
+                      onExecutor(
+                          () ->
+                              startQuery(
+                                  querySql,
+                                  unlimitedBillingBytes,
+                                  null,
+                                  (long) getMaxRows(),
+                                  clientJobReference,
+                                  ref -> {
+                                    jobReference.set(ref);
+                                    if (isCancelled()) {
+                                      cancelJob();
+                                    }
+                                  })));
+      CompletableFuture<ResultSet> result = response.thenCompose(this::onQueryResponse);
+      result.whenComplete(
+          (resultSet, e) -> {
+            if (e == null) {
+              complete(resultSet);
+            } else {
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              completeExceptionally(
+                  cause instanceof SQLException
+                      ? cause
+                      : new BQSQLException("Query execution failed: ", cause));
+            }
+          });
+    }
+
+    /** Runs {@code step} on the query executor. */
+    private <T> CompletableFuture<T> onExecutor(AsyncStep<T> step) {
+      try {
+        return CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return step.run();
+              } catch (IOException e) {
+                throw new CompletionException(new BQSQLException("Query execution failed: ", e));
+              } catch (SQLException e) {
+                throw new CompletionException(e);
+              }
+            },
+            executor);
+      } catch (RejectedExecutionException e) {
+        CompletableFuture<T> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(
+            new BQSQLException("The query executor did not accept the query", e));
+        return rejected;
+      }
+    }
+
+    private CompletableFuture<ResultSet> onQueryResponse(QueryResponse qr) {
+      JobReference ref = qr.getJobReference();
+      jobReference.set(ref);
+      mostRecentJobReference.set(ref);
+      if (isCancelled()) {
+        // We were cancelled before we knew which job to cancel
+        cancelJob();
+        return this;
+      }
+      try {
+        if (defaultValueIfNull(qr.getJobComplete(), false)) {
+          ResultSet resultSet = resultSetFromCompletedQuery(qr);
+          if (resultSet != null) {
+            return CompletableFuture.completedFuture(resultSet);
+          }
+        }
+        if (ref == null) {
+          throw new BQSQLException("Cannot poll results without a job reference");
+        }
+      } catch (SQLException e) {
+        throw new CompletionException(e);
+      }
+      CompletableFuture<GetQueryResultsResponse> waiting =
+          connection
+              .getJobWaiter()
+              .waitForCompletionAsync(
+                  ref,
+                  BQStatement.this::pollQueryResults,
+                  deadlineMillis,
+                  MAX_IO_FAILURE_RETRIES,
+                  executor,
+                  BQExecutors.sharedScheduler());
+      completion.set(waiting);
+      if (isCancelled()) {
+        // stop polling, in case we were cancelled before the wait began
+        waiting.cancel(false);
+      }
+      return waiting
+          .handle(
+              (completion, e) -> {
+                if (e != null) {
+                  Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                  throw new CompletionException(
+                      new BQSQLException(
+                          "Something went wrong getting results for the job "
+                              + ref.getJobId()
+                              + ", query: "
+                              + querySql,
+                          cause));
+                }
+                if (completion == null) {
+                  cancelJob();
+                  throw new CompletionException(
+                      new BQSQLException("Query run took more than the specified timeout"));
+                }
+                return completion;
+              })
+          .thenApplyAsync(
+              completion -> {
+                try {
+                  if (connection.isClosed()) {
+                    throw new BQSQLException("Connection is closed");
+                  }
+                  if (isCancelled()) {
+                    throw new BQSQLException("The query was cancelled");
+                  }
+                  return resultSetFromCompletedJob(LazyJobStatistics.jobFromReference(ref));
+                } catch (IOException e) {
+                  throw new CompletionException(
+                      new BQSQLException(
+                          "Something went wrong getting results for the job "
+                              + ref.getJobId()
+                              + ", query: "
+                              + querySql,
+                          e));
+                } catch (SQLException e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        CompletableFuture<?> waiting = completion.get();
+        if (waiting != null) {
+          // stops the polling, and with it the fetching of the results
+          waiting.cancel(false);
+        }
+        cancelJob();
+      }
+      return cancelled;
+    }
+
+    /** Cancels the BigQuery job, if we know which it is, without blocking the caller. */
+    private void cancelJob() {
+      JobReference ref = jobReference.get();
+      if (ref == null) {
+        return;
+      }
+      try {
+        executor.execute(
+            () -> {
+              try {
+                performQueryCancel(ref);
+              } catch (IOException e) {
+                logger.warn("Failed to cancel job " + ref.getJobId(), e);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        logger.warn("Failed to cancel job " + ref.getJobId(), e);
+      }
+    }
+  }
+
   private ResultSet executeQueryHelper(String querySql, boolean unlimitedBillingBytes)
       throws SQLException {
     if (this.isClosed()) {
@@ -168,75 +458,18 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
 
     this.starttime = System.currentTimeMillis();
     Job referencedJob = null;
-    int retries = 0;
     boolean jobAlreadyCompleted = false;
-    String biEngineMode = null;
-    List<BiEngineReason> biEngineReasons = null;
 
     try {
       QueryResponse qr = runSyncQuery(querySql, unlimitedBillingBytes);
-      boolean jobComplete = defaultValueIfNull(qr.getJobComplete(), false);
-      boolean fetchedAll =
-          jobComplete
-              && qr.getTotalRows() != null
-              && (qr.getTotalRows().equals(BigInteger.ZERO)
-                  || (qr.getRows() != null
-                      && qr.getTotalRows().equals(BigInteger.valueOf(qr.getRows().size()))));
-
-      if (!this.connection.isClosed()) {
-        if (qr.getJobReference() != null) {
-          referencedJob =
-              this.connection
-                  .getBigquery()
-                  .jobs()
-                  .get(projectId, qr.getJobReference().getJobId())
-                  .setLocation(qr.getJobReference().getLocation())
-                  .execute();
-
-          Optional<BiEngineStatistics> biEngineStatisticsOptional =
-              Optional.ofNullable(referencedJob)
-                  .map(Job::getStatistics)
-                  .map(JobStatistics::getQuery)
-                  .map(JobStatistics2::getBiEngineStatistics);
-          if (biEngineStatisticsOptional.isPresent()) {
-            BiEngineStatistics biEngineStatistics = biEngineStatisticsOptional.get();
-            biEngineMode = biEngineStatistics.getBiEngineMode();
-            biEngineReasons = biEngineStatistics.getBiEngineReasons();
-          }
-        }
+      if (qr.getJobReference() != null) {
+        // Statistics that jobs.query doesn't return are looked up by the result set, if needed.
+        referencedJob = LazyJobStatistics.jobFromReference(qr.getJobReference());
       }
-      if (jobComplete) {
-        if (resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE) {
-          List<TableRow> rows = defaultValueIfNull(qr.getRows(), new ArrayList<TableRow>());
-          TableSchema schema = defaultValueIfNull(qr.getSchema(), new TableSchema());
-
-          return new BQForwardOnlyResultSet(
-              this.connection.getBigquery(),
-              projectId,
-              referencedJob,
-              qr.getQueryId(),
-              this,
-              rows,
-              fetchedAll,
-              schema,
-              qr.getTotalBytesProcessed(),
-              qr.getCacheHit(),
-              biEngineMode,
-              biEngineReasons);
-        } else if (fetchedAll) {
-          // We can only return scrollable result sets here if we have all the rows: otherwise we'll
-          // have to go get more below
-          TableSchema schema = defaultValueIfNull(qr.getSchema(), new TableSchema());
-          return new BQScrollableResultSet(
-              qr.getRows(),
-              this,
-              schema,
-              qr.getTotalBytesProcessed(),
-              qr.getCacheHit(),
-              biEngineMode,
-              biEngineReasons,
-              qr.getJobReference(),
-              qr.getQueryId());
+      if (defaultValueIfNull(qr.getJobComplete(), false)) {
+        ResultSet resultSet = resultSetFromCompletedQuery(qr);
+        if (resultSet != null) {
+          return resultSet;
         }
         jobAlreadyCompleted = true;
       }
@@ -247,58 +480,30 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
     }
 
     try {
-      do {
-        if (this.connection.isClosed()) {
-          throw new BQSQLException("Connection is closed");
+      if (!jobAlreadyCompleted) {
+        if (referencedJob == null) {
+          throw new BQSQLException("Cannot poll results without a job reference");
         }
-
-        String status;
-        if (jobAlreadyCompleted) {
-          status = "DONE";
-        } else {
-          if (referencedJob == null) {
-            throw new BQSQLException("Cannot poll results without a job reference");
-          }
-          try {
-            Job pollJob = getPollJob(referencedJob);
-            status = BQSupportFuncts.logAndGetQueryState(pollJob);
-          } catch (IOException e) {
-            if (retries++ < MAX_IO_FAILURE_RETRIES) {
-              continue;
-            } else {
-              throw new BQSQLException(
-                  "Something went wrong getting results for the job "
-                      + referencedJob.getId()
-                      + ", query: "
-                      + querySql,
-                  e);
-            }
-          }
+        GetQueryResultsResponse completion;
+        try {
+          completion = waitForJob(referencedJob.getJobReference(), getDeadlineMillis());
+        } catch (IOException e) {
+          throw new BQSQLException(
+              "Something went wrong getting results for the job "
+                  + referencedJob.getId()
+                  + ", query: "
+                  + querySql,
+              e);
         }
-
-        if (status.equals("DONE")) {
-          if (resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE) {
-            if (referencedJob == null) {
-              throw new BQSQLException("Cannot poll results without a job reference");
-            }
-            return new BQScrollableResultSet(
-                BQSupportFuncts.getQueryResults(
-                    this.connection.getBigquery(), projectId, referencedJob),
-                this);
-          } else {
-            return new BQForwardOnlyResultSet(
-                this.connection.getBigquery(), projectId, referencedJob, null, this);
-          }
+        if (completion == null) {
+          this.cancel();
+          throw new BQSQLException("Query run took more than the specified timeout");
         }
-        // Pause execution for half second before polling job status
-        // again, to
-        // reduce unnecessary calls to the BigQUery API and lower
-        // overall
-        // application bandwidth.
-        Thread.sleep(500);
-        this.logger.debug("slept for 500" + "ms, querytimeout is: " + getQueryTimeout() + "ms");
-      } while (System.currentTimeMillis() - this.starttime <= (long) getQueryTimeout());
-      // it runs for a minimum of 1 time
+      }
+      if (this.connection.isClosed()) {
+        throw new BQSQLException("Connection is closed");
+      }
+      return resultSetFromCompletedJob(referencedJob);
     } catch (IOException e) {
       throw new BQSQLException(
           "Something went wrong getting results for the job "
@@ -307,11 +512,59 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
               + querySql,
           e);
     } catch (InterruptedException e) {
-      e.printStackTrace();
+      Thread.currentThread().interrupt();
+      this.cancel();
+      throw new BQSQLException("Interrupted while waiting for the query to complete", e);
     }
+  }
 
-    this.cancel();
-    throw new BQSQLException("Query run took more than the specified timeout");
+  /**
+   * Builds the result set of a query which jobs.query reported as complete.
+   *
+   * @return the result set, or null if the response doesn't hold enough of the rows and they must
+   *     be fetched from the job instead
+   */
+  private @Nullable ResultSet resultSetFromCompletedQuery(QueryResponse qr) throws SQLException {
+    boolean fetchedAll =
+        qr.getTotalRows() != null
+            && (qr.getTotalRows().equals(BigInteger.ZERO)
+                || (qr.getRows() != null
+                    && qr.getTotalRows().equals(BigInteger.valueOf(qr.getRows().size()))));
+    if (resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE) {
+      List<TableRow> rows = defaultValueIfNull(qr.getRows(), new ArrayList<TableRow>());
+      TableSchema schema = defaultValueIfNull(qr.getSchema(), new TableSchema());
+
+      return new BQForwardOnlyResultSet(
+          this.connection.getBigquery(),
+          projectId,
+          qr.getJobReference() == null
+              ? null
+              : LazyJobStatistics.jobFromReference(qr.getJobReference()),
+          qr.getQueryId(),
+          this,
+          rows,
+          fetchedAll,
+          schema,
+          qr.getTotalBytesProcessed(),
+          qr.getCacheHit(),
+          null,
+          null);
+    } else if (fetchedAll) {
+      // We can only return scrollable result sets here if we have all the rows: otherwise we'll
+      // have to go get more from the job
+      TableSchema schema = defaultValueIfNull(qr.getSchema(), new TableSchema());
+      return new BQScrollableResultSet(
+          qr.getRows(),
+          this,
+          schema,
+          qr.getTotalBytesProcessed(),
+          qr.getCacheHit(),
+          null,
+          null,
+          qr.getJobReference(),
+          qr.getQueryId());
+    }
+    return null;
   }
 
   private static <T> T defaultValueIfNull(T value, T defaultValue) {
@@ -321,50 +574,57 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
   /**
    * Runs a query synchronously.
    *
-   * <p>Assumes will only be called once for a given statement. Runs the sync query in a thread and
-   * sets that thread in [runningSyncThread], storing the result in [lastSyncResponse], so that
-   * cancel code can wait for a long running job to time out on the sync response and then cancel
-   * it.
+   * <p>Assumes will only be called once for a given statement. Runs the sync query on the
+   * connection's query executor and sets its future in [runningSyncQuery], storing the result in
+   * [lastSyncResponse]. Unless the connection lets BigQuery skip creating jobs, we choose the job's
+   * ID up front and keep it in [syncJob], so that {@link #cancel()} never has to wait for BigQuery
+   * to tell us which job to cancel.
    */
-  protected QueryResponse runSyncQuery(String querySql, boolean unlimitedBillingBytes)
+  protected QueryResponse runSyncQuery(String originalSql, boolean unlimitedBillingBytes)
       throws IOException, SQLException {
+    String querySql = withMaxRowsLimit(originalSql);
     final AtomicReference<Exception> diedWith = new AtomicReference<>();
-    // Combine the connection's labels with `statementLabels`, the latter taking precedence.
-    // However, if the total number of labels is greater than `MAX_LABELS`,
-    // truncate the statement labels first, then the connection labels, if necessary.
+    JobReference clientJobReference = newJobReference();
+    onQueryStarting(clientJobReference);
     Runnable runSync =
         () -> {
           try {
             QueryResponse resp =
-                BQSupportFuncts.runSyncQuery(
-                    this.connection.getBigquery(),
-                    projectId,
+                startQuery(
                     querySql,
-                    connection.getDataSet(),
-                    connection.getDataSetProjectId(),
-                    this.connection.getUseLegacySql(),
-                    !unlimitedBillingBytes ? this.connection.getMaxBillingBytes() : null,
-                    getSyncTimeoutMillis(), // we need this to respond fast enough to avoid any
-                    // socket timeouts
+                    unlimitedBillingBytes,
+                    null,
                     (long) getMaxRows(),
-                    this.getAllLabels(),
-                    this.connection.getUseQueryCache(),
-                    this.connection.getJobCreationMode());
+                    clientJobReference,
+                    this::onJobCreated);
             syncResponseFromCurrentQuery.set(resp);
             this.mostRecentJobReference.set(resp.getJobReference());
+            if (clientJobReference == null
+                && resp.getJobReference() != null
+                && !defaultValueIfNull(resp.getJobComplete(), false)) {
+              onJobCreated(resp.getJobReference());
+            }
           } catch (Exception e) {
             diedWith.set(e);
           }
         };
-    Thread syncThread = new Thread(runSync);
-    runningSyncThread.set(syncThread);
-    syncThread.start();
+    FutureTask<Void> syncQuery = new FutureTask<>(runSync, null);
+    runningSyncQuery.set(syncQuery);
+    try {
+      this.connection.getQueryExecutor().execute(syncQuery);
+    } catch (RejectedExecutionException e) {
+      runningSyncQuery.set(null);
+      throw new BQSQLException("The query executor did not accept the query", e);
+    }
     try {
-      syncThread.join();
+      syncQuery.get();
     } catch (InterruptedException e) {
       throw new IOException(e);
+    } catch (ExecutionException e) {
+      // runSync catches exceptions itself, so this is an Error
+      diedWith.compareAndSet(null, new RuntimeException(e.getCause()));
     }
-    runningSyncThread.set(null);
+    runningSyncQuery.set(null);
 
     Exception e = diedWith.get();
     if (e != null) {
@@ -380,38 +640,63 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
     return syncResponseFromCurrentQuery.get();
   }
 
+  @Override
+  protected void onQueryStarting(@Nullable JobReference jobReference) {
+    this.cancelRequested = false;
+    this.syncJobCreated = false;
+    this.syncJob.set(jobReference);
+  }
+
+  /** Records that the job of the sync query exists, and cancels it if we were asked to already. */
+  @Override
+  protected void onJobCreated(JobReference jobReference) {
+    this.syncJob.set(jobReference);
+    this.syncJobCreated = true;
+    if (this.cancelRequested) {
+      try {
+        performQueryCancel(jobReference);
+      } catch (IOException e) {
+        logger.warn("Failed to cancel job " + jobReference.getJobId(), e);
+      }
+    }
+  }
+
   public Job getJob() {
     return this.job;
   }
 
+  /**
+   * Cancels the running query without waiting for it: we know the ID of its job even before
+   * BigQuery has created it. A job that is still being created when we are asked to cancel it is
+   * cancelled as soon as it exists.
+   */
   @Override
   public void cancel() throws SQLException {
-    Thread currentlyRunningSyncThread = runningSyncThread.get();
-    QueryResponse maybeAlreadyComplete = syncResponseFromCurrentQuery.get();
+    for (AsyncQuery query : pendingAsyncQueries) {
+      query.cancel(true);
+    }
+    CompletableFuture<?> start = this.awaitedStart;
+    if (start != null) {
+      // a query still waiting to start never gets to
+      start.cancel(false);
+    }
 
-    JobReference jobRefToCancel = null;
-    // Check if we're in the synchronous path
-    if (maybeAlreadyComplete != null && !maybeAlreadyComplete.getJobComplete()) {
-      // The sync part of the query already completed (but the job is still running): we know which
-      // job we need to cancel
-      jobRefToCancel = maybeAlreadyComplete.getJobReference();
-    } else if (currentlyRunningSyncThread != null) {
-      // The sync part of the query has not completed yet: wait for it so we can find the job to
-      // cancel
-      try {
-        currentlyRunningSyncThread.join(getSyncTimeoutMillis());
-        QueryResponse resp = syncResponseFromCurrentQuery.get();
-        if (resp != null && !resp.getJobComplete()) { // Don't bother cancel if the job is complete
-          jobRefToCancel = resp.getJobReference();
-        }
-      } catch (InterruptedException e) {
-        // Do nothing
-      }
+    // Ask before looking for the job, so that a job created in between is cancelled by the query
+    this.cancelRequested = true;
+    boolean jobCreated = this.syncJobCreated;
+    JobReference jobRefToCancel = this.syncJob.get();
+    QueryResponse maybeAlreadyComplete = syncResponseFromCurrentQuery.get();
+    if (maybeAlreadyComplete != null
+        && defaultValueIfNull(maybeAlreadyComplete.getJobComplete(), false)) {
+      // Don't bother cancel if the job is complete
+      jobRefToCancel = null;
+      jobCreated = false;
     }
 
     if (jobRefToCancel == null && this.job != null) {
       // the async case
       jobRefToCancel = this.job.getJobReference();
+      jobCreated = true;
     }
 
     if (jobRefToCancel == null) {
@@ -422,7 +707,11 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
     try {
       performQueryCancel(jobRefToCancel);
     } catch (IOException e) {
-      throw new SQLException("Failed to kill query");
+      if (jobCreated) {
+        throw new SQLException("Failed to kill query");
+      }
+      // BigQuery may not know the job yet; it is cancelled once it's created
+      this.logger.debug("Job " + jobRefToCancel.getJobId() + " is not created yet", e);
     }
   }
 
@@ -431,12 +720,6 @@ public class BQStatement extends BQStatementRoot implements java.sql.Statement {
     BQSupportFuncts.cancelQuery(jobRefToCancel, this.connection.getBigquery(), projectId);
   }
 
-  /** Wrap [BQSupportFuncts.getPollJob] for convenience and testability purposes. */
-  protected Job getPollJob(Job jobToPoll) throws IOException {
-    JobReference jobRef = jobToPoll.getJobReference();
-    return BQSupportFuncts.getPollJob(jobRef, this.connection.getBigquery(), projectId);
-  }
-
   /**
    * Use the BigQuery API to retrieve the labels sent along with the most recent query job.
    *
@@ -0,0 +1,130 @@
+package net.starschema.clouddb.jdbc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * The prepared statements a connection keeps for reuse once the application has closed them.
+ *
+ * <p>A poolable {@link BQPreparedStatement} goes back here when it is closed, and the next {@link
+ * BQConnection#prepareStatement(String)} of the same SQL (with the same result set type and
+ * concurrency) {@link BQPreparedStatement#reuse reuses} what it prepared, instead of preparing the
+ * SQL again. The closed statement itself is never handed out again: its earlier holder may still
+ * close it or read its result sets. We keep at most one idle statement per SQL text and at most
+ * {@code capacity} in total, dropping the least recently used first.
+ */
+class BQStatementCache {
+
+  private static final class Key {
+    final String sql;
+    final int resultSetType;
+    final int resultSetConcurrency;
+
+    Key(String sql, int resultSetType, int resultSetConcurrency) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return sql.equals(other.sql)
+          && resultSetType == other.resultSetType
+          && resultSetConcurrency == other.resultSetConcurrency;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sql, resultSetType, resultSetConcurrency);
+    }
+  }
+
+  private final int capacity;
+
+  /** Idle statements, least recently used first. */
+  private final LinkedHashMap<Key, BQPreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  BQStatementCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  /**
+   * Takes the idle statement prepared for {@code sql}, if there is one.
+   *
+   * @return the statement, which the caller must {@link BQPreparedStatement#reuse reuse}, or null
+   *     if there is none
+   */
+  @Nullable
+  BQPreparedStatement take(String sql, int resultSetType, int resultSetConcurrency) {
+    if (!isEnabled()) {
+      return null;
+    }
+    BQPreparedStatement statement;
+    synchronized (idle) {
+      statement = idle.remove(new Key(sql, resultSetType, resultSetConcurrency));
+    }
+    (statement == null ? misses : hits).incrementAndGet();
+    return statement;
+  }
+
+  /**
+   * Keeps a closed statement for reuse, unless there already is one for the same SQL.
+   *
+   * @return whether the statement was kept
+   */
+  boolean offer(BQPreparedStatement statement) {
+    if (!isEnabled()) {
+      return false;
+    }
+    Key key =
+        new Key(statement.PrecompiledSQL, statement.resultSetType, statement.resultSetConcurrency);
+    synchronized (idle) {
+      if (idle.containsKey(key)) {
+        return false;
+      }
+      idle.put(key, statement);
+      Iterator<Map.Entry<Key, BQPreparedStatement>> eldest = idle.entrySet().iterator();
+      while (idle.size() > capacity) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+    return true;
+  }
+
+  /** Drops every idle statement. */
+  void clear() {
+    synchronized (idle) {
+      idle.clear();
+    }
+  }
+
+  int size() {
+    synchronized (idle) {
+      return idle.size();
+    }
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+}
@@ -27,10 +27,21 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import net.starschema.clouddb.jdbc.BQConnection.JobCreationMode;
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,17 +67,38 @@ public abstract class BQStatementRoot {
   /** Reference for the Connection that created this Statement object */
   BQConnection connection;
 
+  /** The {@link #querytimeout} of a statement without a timeout. */
+  static final int NO_QUERY_TIMEOUT = Integer.MAX_VALUE / 1000 - 1;
+
+  /** The {@link #resultMaxRowCount} of a statement without a max row count. */
+  static final int NO_MAX_ROWS = Integer.MAX_VALUE - 1;
+
+  /**
+   * Enough time to give fast queries time to complete, but fast enough that if we want to cancel
+   * the query (for which we have to wait at least this long), we don't have to wait too long.
+   */
+  public static final long SYNC_TIMEOUT_MILLIS = 5 * 1000;
+
+  /** How much longer than our own timeout BigQuery lets a job run. */
+  static final long JOB_TIMEOUT_GRACE_MILLIS = 10 * 1000;
+
   /** Variable that stores the set query timeout */
-  int querytimeout = Integer.MAX_VALUE / 1000 - 1;
+  int querytimeout = NO_QUERY_TIMEOUT;
   /** Instance of log4j.Logger */
   /** Variable stores the time an execute is made */
   long starttime = 0;
   /** Variable that stores the max row number which can be stored in the resultset */
-  int resultMaxRowCount = Integer.MAX_VALUE - 1;
+  int resultMaxRowCount = NO_MAX_ROWS;
 
   /** Variable to Store EscapeProc state */
   boolean EscapeProc = false;
 
+  /** Whether the statement may be reused once closed, see {@link #setPoolable(boolean)} */
+  boolean poolable = false;
+
+  /** The priority of this statement's queries, or null for the connection's */
+  private QueryPriority priority = null;
+
   /** These Variables contain information about the type of resultset this statement creates */
   int resultSetType;
 
@@ -77,18 +109,33 @@ public abstract class BQStatementRoot {
 
   protected AtomicReference<JobReference> mostRecentJobReference = new AtomicReference<>();
 
+  /** What the running query waits for before it may start; cancelling the statement cancels it. */
+  protected volatile CompletableFuture<?> awaitedStart = null;
+
+  /** Statements queued by {@link #addBatch(String)} */
+  private final List<String> batch = new ArrayList<>();
+
+  /** Why the last script run by {@link #executeBatch()} failed, if it did */
+  private Throwable batchFailure;
+
+  /** The results of the script last run by {@link #execute(String)}, if it ran one */
+  private BQScriptResults scriptResults;
+
   /**
    *
    *
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Queues {@code sql} to be run by {@link #executeBatch()}.
    *
-   * @throws BQSQLException
+   * @throws BQSQLException if the statement is closed
    */
-  public void addBatch(String arg0) throws SQLException {
-    throw new BQSQLException("Not implemented." + "addBatch(string)");
+  public void addBatch(String sql) throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    this.batch.add(sql);
   }
 
   /**
@@ -111,12 +158,10 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
-   *
-   * @throws BQSQLException
+   * Forgets the statements queued by {@link #addBatch(String)}.
    */
   public void clearBatch() throws SQLException {
-    throw new BQSQLException("Not implemented." + "clearBatch()");
+    this.batch.clear();
   }
 
   /**
@@ -146,6 +191,42 @@ public abstract class BQStatementRoot {
     if (this.resset != null) {
       this.resset.close();
     }
+    closeScriptResults();
+  }
+
+  /** Closes the result sets of the last script we ran, including those not reached yet. */
+  private void closeScriptResults() throws SQLException {
+    BQScriptResults results = this.scriptResults;
+    this.scriptResults = null;
+    if (results != null) {
+      results.close();
+    }
+  }
+
+  /**
+   * Limits {@code querySql} to the statement's max row count, if the connection pushes that down to
+   * BigQuery and the query is one we can rewrite (see {@link BQLimitRewriter}).
+   */
+  protected String withMaxRowsLimit(String querySql) {
+    if (!this.connection.getPushDownMaxRows() || this.resultMaxRowCount >= NO_MAX_ROWS) {
+      return querySql;
+    }
+    return BQLimitRewriter.withLimit(querySql, this.resultMaxRowCount);
+  }
+
+  /**
+   * Refuses to run {@code querySql} if the connection has a {@code preflightMaxBytes} limit and a
+   * dry run says the query would go over it. Queries that may bill unlimited bytes are exempt.
+   *
+   * @throws BQQueryTooExpensiveException if the query would process too much
+   */
+  protected void checkPreflight(
+      String querySql, boolean unlimitedBillingBytes, boolean positionalParameters)
+      throws SQLException {
+    if (!unlimitedBillingBytes) {
+      this.connection.checkPreflight(
+          querySql, positionalParameters, getPriority(), getAdmissionTenant());
+    }
   }
 
   /**
@@ -166,13 +247,18 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Executes the given SQL statement on BigQuery (note: it returns only 1 resultset). This function
-   * directly uses executeQuery function. It also allows bypassing maxBillingBytes for PDTs.
+   * Executes the given SQL statement on BigQuery. A single statement is run through executeQuery
+   * and gives one resultset; a script gives one result per statement, see {@link
+   * #getMoreResults()}. It also allows bypassing maxBillingBytes for PDTs.
    */
   public boolean execute(String sql, boolean unlimitedBillingBytes) throws SQLException {
     if (this.isClosed()) {
       throw new BQSQLException("This Statement is Closed");
     }
+    closeScriptResults();
+    if (!this.connection.getUseLegacySql() && isScript(sql)) {
+      return executeScript(sql, unlimitedBillingBytes);
+    }
     this.resset = this.executeQuery(sql, unlimitedBillingBytes);
     this.logger.info("Executing Query: " + sql);
     if (this.resset != null) {
@@ -182,6 +268,116 @@ public abstract class BQStatementRoot {
     }
   }
 
+  /**
+   * Runs a script and lists its child jobs, one per statement, so the application can walk through
+   * their results with {@link #getMoreResults()}. The first pages of the first result sets are
+   * fetched in parallel while the application reads the first one.
+   *
+   * @return true if the first result is a result set
+   */
+  private boolean executeScript(String script, boolean unlimitedBillingBytes) throws SQLException {
+    checkPreflight(script, unlimitedBillingBytes, false);
+    List<JobList.Jobs> children;
+    this.connection.addRunningStatement(this);
+    try {
+      children = runAdmitted(() -> runScriptJob(script, unlimitedBillingBytes));
+    } finally {
+      this.connection.removeRunningStatement(this);
+    }
+    this.scriptResults =
+        new BQScriptResults(
+            children, this::resultSetFromCompletedJob, this.connection.getQueryExecutor());
+    this.resset = this.scriptResults.getResultSet();
+    return this.scriptResults.isResultSet();
+  }
+
+  /** Runs {@code script} for {@link #executeScript}, and returns its child jobs. */
+  private List<JobList.Jobs> runScriptJob(String script, boolean unlimitedBillingBytes)
+      throws SQLException {
+    this.starttime = System.currentTimeMillis();
+    // choose the job's ID up front, so that the script can be cancelled while BigQuery creates it
+    JobReference jobReference = BQSupportFuncts.newJobReference(projectId);
+    onQueryStarting(jobReference);
+    try {
+      QueryResponse qr =
+          startQuery(script, unlimitedBillingBytes, null, 0L, jobReference, this::onJobCreated);
+      jobReference = qr.getJobReference();
+      this.mostRecentJobReference.set(jobReference);
+      this.logger.info("Executing Script: " + script);
+
+      if (!defaultValueIfNull(qr.getJobComplete(), false)
+          && waitForJob(jobReference, getDeadlineMillis()) == null) {
+        cancelTimedOutJob(jobReference);
+        throw new BQSQLException("Query run took more than the specified timeout");
+      }
+      return BQSupportFuncts.listChildJobs(this.connection.getBigquery(), projectId, jobReference);
+    } catch (IOException e) {
+      throw new BQSQLException("Something went wrong with the query: " + script, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BQSQLException("Interrupted while waiting for the script to complete", e);
+    } finally {
+      onQueryStarting(null);
+    }
+  }
+
+  /** The statements which, when they begin a query, make it a script. */
+  private static final List<String> SCRIPT_KEYWORDS =
+      Arrays.asList(
+          "DECLARE", "BEGIN", "IF", "LOOP", "WHILE", "REPEAT", "FOR", "CALL", "SET", "EXECUTE",
+          "RAISE");
+
+  /**
+   * Whether {@code sql} is a script rather than a single statement: it has more than one statement,
+   * or starts with a procedural statement such as {@code DECLARE} or {@code BEGIN}. Literals and
+   * comments are skipped.
+   */
+  static boolean isScript(String sql) {
+    boolean terminated = false;
+    int firstWordStart = -1;
+    int firstWordEnd = -1;
+    int i = 0;
+    int length = sql.length();
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      } else if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+        i = BQSqlTemplate.skipQuoted(sql, i + 1, "\n");
+        continue;
+      } else if (c == '/' && sql.startsWith("/*", i)) {
+        i = BQSqlTemplate.skipQuoted(sql, i + 2, "*/");
+        continue;
+      }
+      if (terminated && c != ';') {
+        // a second statement
+        return true;
+      }
+      if (firstWordStart == -1) {
+        firstWordStart = i;
+        while (i < length && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_')) {
+          i++;
+        }
+        firstWordEnd = i;
+        if (i > firstWordStart) {
+          continue;
+        }
+      }
+      if (c == '\'' || c == '"') {
+        i = BQSqlTemplate.skipString(sql, i, c);
+      } else if (c == '`') {
+        i = BQSqlTemplate.skipQuoted(sql, i + 1, "`");
+      } else {
+        terminated |= c == ';';
+        i++;
+      }
+    }
+    return firstWordStart != -1
+        && SCRIPT_KEYWORDS.contains(
+            sql.substring(firstWordStart, firstWordEnd).toUpperCase(Locale.ROOT));
+  }
+
   /**
    *
    *
@@ -230,143 +426,631 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Runs the queued statements as few BigQuery scripts as {@link #MAX_SCRIPT_LENGTH} allows, rather
+   * than as one job each. The update count of every statement is read from the child job BigQuery
+   * ran it in. Statements that aren't DML (e.g. DDL) count as 0 rows; if we can't match the child
+   * jobs of a script to its statements, its statements are reported as {@link
+   * Statement#SUCCESS_NO_INFO}.
    *
-   * @throws BQSQLException
+   * <p>The queued statements are cleared, whether or not the batch succeeds.
+   *
+   * @throws BatchUpdateException if a statement failed, with the update counts of the statements
+   *     that ran before it
    */
   public int[] executeBatch() throws SQLException {
-    throw new BQSQLException("Not implemented." + "executeBatch()");
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    if (connection.getUseLegacySql()) {
+      throw new BQSQLFeatureNotSupportedException("Legacy SQL does not support scripts");
+    }
+    List<String> statements = new ArrayList<>(this.batch);
+    this.batch.clear();
+    this.starttime = System.currentTimeMillis();
+
+    int[] updateCounts = new int[statements.size()];
+    int done = 0;
+    for (List<String> script : packScripts(statements, MAX_SCRIPT_LENGTH)) {
+      int[] scriptCounts = new int[script.size()];
+      int succeeded = runScript(script, scriptCounts);
+      System.arraycopy(scriptCounts, 0, updateCounts, done, succeeded);
+      done += succeeded;
+      if (succeeded < script.size()) {
+        throw new BatchUpdateException(
+            "Batch statement " + done + " failed: " + statements.get(done),
+            Arrays.copyOf(updateCounts, done),
+            this.batchFailure);
+      }
+    }
+    return updateCounts;
+  }
+
+  /** The longest query BigQuery accepts is 1024K characters; leave some room to spare. */
+  static final int MAX_SCRIPT_LENGTH = 1000 * 1000;
+
+  /**
+   * Splits {@code statements} into as few scripts as possible, none longer than {@code maxLength}
+   * once joined by {@link #joinScript(List)}. A statement longer than that on its own gets a script
+   * of its own.
+   */
+  static List<List<String>> packScripts(List<String> statements, int maxLength) {
+    List<List<String>> scripts = new ArrayList<>();
+    List<String> script = new ArrayList<>();
+    int length = 0;
+    for (String statement : statements) {
+      int statementLength = stripTerminator(statement).length() + 2;
+      if (!script.isEmpty() && length + statementLength > maxLength) {
+        scripts.add(script);
+        script = new ArrayList<>();
+        length = 0;
+      }
+      script.add(statement);
+      length += statementLength;
+    }
+    if (!script.isEmpty()) {
+      scripts.add(script);
+    }
+    return scripts;
+  }
+
+  /** Joins statements into one script. */
+  static String joinScript(List<String> statements) {
+    StringBuilder script = new StringBuilder();
+    for (String statement : statements) {
+      script.append(stripTerminator(statement)).append(";\n");
+    }
+    return script.toString();
+  }
+
+  private static String stripTerminator(String statement) {
+    String stripped = statement.trim();
+    while (stripped.endsWith(";")) {
+      stripped = stripped.substring(0, stripped.length() - 1).trim();
+    }
+    return stripped;
+  }
+
+  /**
+   * Runs one script and fills in {@code updateCounts} from its child jobs.
+   *
+   * @return how many of the script's statements succeeded; if fewer than all of them, {@link
+   *     #batchFailure} holds the reason
+   */
+  private int runScript(List<String> statements, int[] updateCounts) throws SQLException {
+    String script = joinScript(statements);
+    this.batchFailure = null;
+    checkPreflight(script, false, false);
+    return runAdmitted(() -> runBatchScript(script, statements, updateCounts));
+  }
+
+  /** Runs {@code script}, the statements joined, for {@link #runScript}. */
+  private int runBatchScript(String script, List<String> statements, int[] updateCounts)
+      throws SQLException {
+    JobReference jobReference;
+    boolean complete;
+    // Only for a lone statement, which BigQuery runs as a query rather than a script
+    Long affectedRows;
+    try {
+      // a script always gets a job, as the update counts are read from its child jobs
+      QueryResponse qr =
+          startQuery(
+              script, false, null, 0L, BQSupportFuncts.newJobReference(projectId), ref -> {});
+      jobReference = qr.getJobReference();
+      complete = defaultValueIfNull(qr.getJobComplete(), false);
+      affectedRows = qr.getNumDmlAffectedRows();
+    } catch (IOException e) {
+      this.batchFailure = e;
+      return 0;
+    }
+    this.mostRecentJobReference.set(jobReference);
+
+    if (!complete) {
+      try {
+        GetQueryResultsResponse completion = waitForJob(jobReference, getDeadlineMillis());
+        if (completion == null) {
+          cancelTimedOutJob(jobReference);
+          throw new BQSQLException("Query run took more than the specified timeout");
+        }
+        affectedRows = completion.getNumDmlAffectedRows();
+      } catch (IOException e) {
+        // The script failed; find out how far it got below
+        this.batchFailure = e;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new BQSQLException("Interrupted while waiting for the batch to complete", e);
+      }
+    }
+
+    if (statements.size() == 1) {
+      // a single statement has no child jobs; its job tells the count itself
+      if (this.batchFailure != null) {
+        return 0;
+      }
+      updateCounts[0] = toUpdateCount(affectedRows);
+      return 1;
+    }
+
+    List<JobList.Jobs> children;
+    try {
+      children =
+          BQSupportFuncts.listChildJobs(this.connection.getBigquery(), projectId, jobReference);
+    } catch (IOException e) {
+      if (this.batchFailure != null) {
+        return 0;
+      }
+      logger.warn("Failed to list the child jobs of " + jobReference.getJobId(), e);
+      children = Collections.emptyList();
+    }
+
+    if (this.batchFailure == null && children.size() != statements.size()) {
+      Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+      return statements.size();
+    }
+    int succeeded = 0;
+    for (JobList.Jobs child : children) {
+      if (succeeded == statements.size()
+          || (child.getStatus() != null && child.getStatus().getErrorResult() != null)) {
+        break;
+      }
+      Long childAffectedRows =
+          child.getStatistics() == null || child.getStatistics().getQuery() == null
+              ? null
+              : child.getStatistics().getQuery().getNumDmlAffectedRows();
+      updateCounts[succeeded++] = toUpdateCount(childAffectedRows);
+    }
+    if (this.batchFailure == null && succeeded < statements.size()) {
+      this.batchFailure = new BQSQLException("Statement failed in script " + jobReference);
+    }
+    return succeeded;
+  }
+
+  /**
+   * The update count JDBC reports for {@code affectedRows}, which can be more than an int holds.
+   * Statements that affect no rows, such as DDL, report none.
+   */
+  static int toUpdateCount(@Nullable Long affectedRows) {
+    return (int) Math.min(defaultValueIfNull(affectedRows, 0L), Integer.MAX_VALUE);
   }
 
   /**
    * Execute DML (DELETE, INSERT, UPDATE). If you want to perform a SELECT or other DDL look at
    * {@link #execute(String)}
+   *
+   * @param queryParameters what the {@code ?} placeholders of {@code sql} are bound to, in order;
+   *     null if it has none
    */
-  private int executeDML(String sql) throws SQLException {
+  protected int executeDML(String sql, @Nullable List<QueryParameter> queryParameters)
+      throws SQLException {
     if (this.isClosed()) {
       throw new BQSQLException("This Statement is Closed");
     }
     if (connection.getUseLegacySql()) {
       throw new BQSQLFeatureNotSupportedException("Legacy SQL does not support DML");
     }
+    checkPreflight(sql, false, queryParameters != null);
+    return runAdmitted(() -> runDML(sql, queryParameters));
+  }
+
+  /** Runs {@code sql} for {@link #executeDML}. */
+  private int runDML(String sql, @Nullable List<QueryParameter> queryParameters)
+      throws SQLException {
     this.starttime = System.currentTimeMillis();
 
-    final Job referencedJob;
+    final JobReference jobReference;
 
     try {
       QueryResponse qr =
-          BQSupportFuncts.runSyncQuery(
-              this.connection.getBigquery(),
-              projectId,
-              sql,
-              connection.getDataSet(),
-              connection.getDataSetProjectId(),
-              this.connection.getUseLegacySql(),
-              this.connection.getMaxBillingBytes(),
-              (long) querytimeout * 1000,
-              (long) getMaxRows(),
-              this.getAllLabels(),
-              this.connection.getUseQueryCache(),
-              this.connection.getJobCreationMode());
+          startQuery(
+              sql, false, queryParameters, (long) getMaxRows(), newJobReference(), ref -> {});
       this.mostRecentJobReference.set(qr.getJobReference());
 
       if (defaultValueIfNull(qr.getJobComplete(), false)) {
         // I hope they don't insert more than 2^32-1 :)
         return Math.toIntExact(defaultValueIfNull(qr.getNumDmlAffectedRows(), 0L));
       }
-
-      referencedJob =
-          this.connection
-              .getBigquery()
-              .jobs()
-              .get(projectId, qr.getJobReference().getJobId())
-              .execute();
+      jobReference = qr.getJobReference();
     } catch (IOException e) {
       throw new BQSQLException("Something went wrong with the query: " + sql, e);
     }
 
     try {
-      do {
-        if (BQSupportFuncts.getQueryState(referencedJob, this.connection.getBigquery(), projectId)
-            .equals("DONE")) {
-          return Math.toIntExact(
-              BQSupportFuncts.getQueryResults(
-                      this.connection.getBigquery(), projectId, referencedJob)
-                  .getNumDmlAffectedRows());
-        }
-        Thread.sleep(500);
-        this.logger.debug("slept for 500" + "ms, querytimeout is: " + this.querytimeout + "s");
-      } while (System.currentTimeMillis() - this.starttime <= (long) this.querytimeout * 1000);
+      GetQueryResultsResponse completion = waitForJob(jobReference, getDeadlineMillis());
+      if (completion != null) {
+        return Math.toIntExact(defaultValueIfNull(completion.getNumDmlAffectedRows(), 0L));
+      }
     } catch (IOException | InterruptedException e) {
       throw new BQSQLException("Something went wrong with the query: " + sql, e);
     }
-    // here we should kill/stop the running job, but bigquery doesn't
-    // support that :(
+    cancelTimedOutJob(jobReference);
     throw new BQSQLException("Query run took more than the specified timeout");
   }
 
   public ResultSet executeQuery(String querySql, boolean unlimitedBillingBytes)
       throws SQLException {
+    return executeQuery(querySql, unlimitedBillingBytes, null);
+  }
+
+  /**
+   * Runs {@code querySql} with its {@code ?} placeholders bound to {@code queryParameters}, in
+   * order. Without parameters, {@code querySql} must not contain any placeholder.
+   */
+  protected ResultSet executeQuery(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters)
+      throws SQLException {
+    return executeCached(
+        querySql,
+        unlimitedBillingBytes,
+        queryParameters,
+        () -> runQuery(querySql, unlimitedBillingBytes, queryParameters));
+  }
+
+  /**
+   * Answers a query from the connection's {@link BQResultCache}, or else its {@link
+   * BQDiskResultCache}, if the connection has a {@code resultCacheTtlMs} and a cache has the
+   * query's rows; or else from the destination table of its last job, if the connection has a
+   * {@code reuseDestinationTablesMs} and the table is still there. Runs the query through {@link
+   * #executeSingleFlight} otherwise, and offers its rows to the caches. Only a single SELECT, as
+   * {@link BQLimitRewriter#isQuery} reads the SQL, goes through the caches at all.
+   *
+   * @param query runs the query, if this statement has to
+   */
+  protected ResultSet executeCached(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters,
+      BQSingleFlight.Query query)
+      throws SQLException {
+    Integer ttlMs = this.connection.getResultCacheTtlMs();
+    Integer reuseMs = this.connection.getReuseDestinationTablesMs();
+    if ((ttlMs == null && reuseMs == null)
+        || !this.connection.getUseQueryCache()
+        || this.connection.getSessionId() != null
+        // DML, DDL and scripts have to run every time they are asked to
+        || !BQLimitRewriter.isQuery(querySql)) {
+      return executeSingleFlight(querySql, unlimitedBillingBytes, queryParameters, query);
+    }
     if (this.isClosed()) {
       throw new BQSQLException("This Statement is Closed");
     }
-    this.starttime = System.currentTimeMillis();
-    Job referencedJob;
+    BQResultCache.Key key =
+        new BQResultCache.Key(
+            this.connection.getCredentialsFingerprint(),
+            projectId,
+            this.connection.getDataSetProjectId(),
+            this.connection.getDataSet(),
+            this.connection.getUseLegacySql(),
+            withMaxRowsLimit(querySql),
+            queryParameters,
+            this.connection.getPushDownMaxRows() ? getMaxRows() : 0);
+    BQResultCache cache = ttlMs == null ? null : this.connection.getResultCache();
+    BQResultCache.Entry cached = cache == null ? null : cache.get(key);
+    if (cached != null) {
+      if (isUnchanged(cached.jobReference)) {
+        return cached.toResultSet(this);
+      }
+      cache.invalidate(key, cached);
+    }
+    BQDiskResultCache diskCache = ttlMs == null ? null : this.connection.getDiskResultCache();
+    if (diskCache != null) {
+      BQDiskResultCache.Contents stored = diskCache.get(key);
+      if (stored != null) {
+        if (isUnchanged(stored.footer.jobReference)) {
+          return stored.toResultSet(this);
+        }
+        diskCache.invalidate(stored);
+      }
+    }
+    ResultSet resultSet = reuseMs == null ? null : readDestinationTable(key);
+    if (resultSet == null) {
+      resultSet = executeSingleFlight(querySql, unlimitedBillingBytes, queryParameters, query);
+      if (reuseMs != null) {
+        BQDestinationTables.shared().record(key, resultSet, reuseMs);
+      }
+    }
+    if (cache != null) {
+      cache.offer(key, ttlMs, resultSet);
+    }
+    if (diskCache != null) {
+      diskCache.offer(key, ttlMs, resultSet);
+    }
+    return resultSet;
+  }
+
+  /**
+   * Reads the rows of the query of {@code key} from the destination table of its last job, if we
+   * remember one whose tables are unchanged and the table is still there; or else returns null.
+   */
+  private @Nullable ResultSet readDestinationTable(BQResultCache.Key key) throws SQLException {
+    BQDestinationTables destinationTables = BQDestinationTables.shared();
+    BQDestinationTables.Entry entry = destinationTables.get(key);
+    if (entry == null) {
+      return null;
+    }
+    ResultSet resultSet = isUnchanged(entry.job) ? destinationTables.read(this, entry) : null;
+    if (resultSet == null) {
+      destinationTables.forget(key, entry);
+    }
+    return resultSet;
+  }
+
+  /**
+   * Tells whether the tables that {@code job} read are unchanged since, if the connection has
+   * {@code resultCacheCheckTables}; a cached result of {@code job} can be served if they are.
+   */
+  private boolean isUnchanged(@Nullable JobReference job) throws SQLException {
+    if (!this.connection.getResultCacheCheckTables()) {
+      return true;
+    }
+    return BQTableFreshness.shared()
+        .isFresh(
+            this.connection.getBigquery(),
+            this.connection.getCredentialsFingerprint(),
+            projectId,
+            job,
+            this.connection.getResultCacheCheckIntervalMs());
+  }
+
+  /**
+   * Runs a query through the driver's {@link BQSingleFlight} if the connection asks for that, so
+   * that it shares the job and rows of an identical query that is already running, if any. Only
+   * queries that just read share; DML, DDL and scripts always run.
+   *
+   * @param query runs the query, if this statement has to
+   */
+  protected ResultSet executeSingleFlight(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters,
+      BQSingleFlight.Query query)
+      throws SQLException {
+    if (!this.connection.getSingleFlight()
+        || this.resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE
+        || this.connection.getSessionId() != null
+        || !BQLimitRewriter.isQuery(querySql)) {
+      // scrollable result sets need all the rows, session queries may see temp tables, and
+      // statements that write must run as often as they are asked to
+      return query.run();
+    }
+    BQSingleFlight.Key key =
+        new BQSingleFlight.Key(
+            this.connection.getCredentialsFingerprint(),
+            projectId,
+            this.connection.getDataSetProjectId(),
+            this.connection.getDataSet(),
+            this.connection.getUseLegacySql(),
+            withMaxRowsLimit(querySql),
+            queryParameters,
+            unlimitedBillingBytes ? null : this.connection.getMaxBillingBytes(),
+            this.connection.getPushDownMaxRows() ? getMaxRows() : 0,
+            getPriority());
+    BQSingleFlight.Flight own = new BQSingleFlight.Flight(key);
+    BQSingleFlight.Flight flight = BQSingleFlight.shared().board(own);
+    if (flight == own) {
+      return flight.lead(this, query, this::isCancelRequested);
+    }
+    boolean shared;
+    try {
+      // wait on a copy, so that cancelling this statement leaves the flight alone
+      shared =
+          awaitStart(
+              flight.landing.thenApply(landed -> landed),
+              deadlineMillis(System.currentTimeMillis()));
+    } catch (SQLException e) {
+      flight.leave();
+      throw e;
+    }
+    if (!shared) {
+      flight.leave();
+      return query.run();
+    }
+    return flight.open(this);
+  }
 
+  /**
+   * Waits until {@code start} lets this statement's query go ahead, until {@code deadlineMillis} or
+   * until the statement is cancelled.
+   */
+  protected <T> T awaitStart(CompletableFuture<T> start, long deadlineMillis) throws SQLException {
+    this.awaitedStart = start;
+    try {
+      if (deadlineMillis == Long.MAX_VALUE) {
+        return start.get();
+      }
+      return start.get(
+          Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (CancellationException e) {
+      throw new BQSQLException("The query was cancelled before it started");
+    } catch (TimeoutException e) {
+      throw new BQSQLException("Query run took more than the specified timeout");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BQSQLException("Interrupted while waiting for the query to start", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof SQLException
+          ? new BQSQLException(cause.getMessage(), cause)
+          : new BQSQLException(cause);
+    } finally {
+      this.awaitedStart = null;
+    }
+  }
+
+  /** Whether the running query failed because the statement was cancelled. */
+  protected boolean isCancelRequested() {
+    return false;
+  }
+
+  /** A query to run once the connection's dispatcher lets it start. */
+  protected interface AdmittedQuery<T> {
+    T run() throws SQLException;
+  }
+
+  /**
+   * Runs {@code query} once the connection's {@link BQQueryDispatcher} gives this statement a turn,
+   * and holds the turn until the query is done. Gives up at the query timeout, or once the
+   * statement is cancelled, if the turn doesn't come before. Preflight checks must come first, as
+   * their dry runs wait for turns of their own.
+   */
+  protected <T> T runAdmitted(AdmittedQuery<T> query) throws SQLException {
+    BQQueryDispatcher dispatcher = this.connection.getQueryDispatcher();
+    BQQueryDispatcher.Turn turn = dispatcher.acquire(getPriority(), getAdmissionTenant());
+    try {
+      awaitStart(turn, deadlineMillis(System.currentTimeMillis()));
+      return query.run();
+    } finally {
+      dispatcher.relinquish(turn);
+    }
+  }
+
+  /** How long to wait for the first results of a query before polling its job instead. */
+  protected long getSyncTimeoutMillis() {
+    return SYNC_TIMEOUT_MILLIS;
+  }
+
+  /**
+   * Called before this statement starts a query, with the reference it chose for the query's job if
+   * it chose one, so that {@link #cancel()} can cancel the job while BigQuery still creates it; and
+   * with null once the statement is done with the job.
+   */
+  protected void onQueryStarting(@Nullable JobReference jobReference) {}
+
+  /** Called as soon as the job of the running query exists. */
+  protected void onJobCreated(JobReference jobReference) {}
+
+  /**
+   * A reference for the job of the next query, so that it can be cancelled while BigQuery is still
+   * creating it; or null if the connection lets BigQuery run queries without a job. Batch queries
+   * always get a job, as jobs.query can't set their priority.
+   */
+  protected @Nullable JobReference newJobReference() {
+    if (this.connection.getJobCreationMode() == JobCreationMode.JOB_CREATION_OPTIONAL
+        && getPriority() != QueryPriority.BATCH) {
+      return null;
+    }
+    return BQSupportFuncts.newJobReference(projectId);
+  }
+
+  /**
+   * Starts a query and waits up to {@link #getSyncTimeoutMillis()} for its first results.
+   *
+   * <p>With a {@code jobReference}, the job is created under that ID through jobs.insert, and
+   * {@code onJobCreated} is called with its reference as soon as it exists. Without one, the query
+   * goes through jobs.query, which may not create a job at all.
+   *
+   * @param queryParameters what the {@code ?} placeholders of {@code querySql} are bound to, in
+   *     order; null if it has none
+   * @param maxResults how many rows the first results may hold at most
+   */
+  protected QueryResponse startQuery(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters,
+      long maxResults,
+      @Nullable JobReference jobReference,
+      Consumer<JobReference> onJobCreated)
+      throws IOException, SQLException {
     Long billingBytes = !unlimitedBillingBytes ? this.connection.getMaxBillingBytes() : null;
+    if (jobReference == null) {
+      return BQSupportFuncts.runSyncQuery(
+          this.connection.getBigquery(),
+          projectId,
+          querySql,
+          connection.getDataSet(),
+          connection.getDataSetProjectId(),
+          this.connection.getUseLegacySql(),
+          billingBytes,
+          getSyncTimeoutMillis(), // we need this to respond fast enough to avoid any
+          // socket timeouts
+          getJobTimeoutMillis(),
+          maxResults,
+          this.getAllLabels(),
+          this.connection.getUseQueryCache(),
+          this.connection.getJobCreationMode(),
+          queryParameters,
+          this.connection.getSessionId());
+    }
+    Job created =
+        BQSupportFuncts.insertQueryJob(
+            this.connection.getBigquery(),
+            projectId,
+            jobReference,
+            querySql,
+            connection.getDataSet(),
+            connection.getDataSetProjectId(),
+            this.connection.getUseLegacySql(),
+            billingBytes,
+            getJobTimeoutMillis(),
+            this.getAllLabels(),
+            this.connection.getUseQueryCache(),
+            queryParameters,
+            this.connection.getSessionId(),
+            getPriority());
+    JobReference createdReference =
+        created.getJobReference() != null ? created.getJobReference() : jobReference;
+    onJobCreated.accept(createdReference);
+    return BQSupportFuncts.getFirstQueryResults(
+        this.connection.getBigquery(),
+        projectId,
+        createdReference,
+        getSyncTimeoutMillis(),
+        maxResults);
+  }
 
+  /** Runs {@code querySql} for {@link #executeQuery(String, boolean, List)}. */
+  private ResultSet runQuery(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters)
+      throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    String limitedSql = withMaxRowsLimit(querySql);
+    checkPreflight(limitedSql, unlimitedBillingBytes, queryParameters != null);
+    return runAdmitted(() -> runQueryJob(limitedSql, unlimitedBillingBytes, queryParameters));
+  }
+
+  /** Runs {@code querySql}, already limited to the max row count, for {@link #runQuery}. */
+  private ResultSet runQueryJob(
+      String querySql,
+      boolean unlimitedBillingBytes,
+      @Nullable List<QueryParameter> queryParameters)
+      throws SQLException {
+    this.starttime = System.currentTimeMillis();
+    Job referencedJob = null;
     boolean jobAlreadyCompleted = false;
 
     try {
       QueryResponse qr =
-          BQSupportFuncts.runSyncQuery(
-              this.connection.getBigquery(),
-              projectId,
+          startQuery(
               querySql,
-              connection.getDataSet(),
-              connection.getDataSetProjectId(),
-              this.connection.getUseLegacySql(),
-              billingBytes,
-              (long) querytimeout * 1000,
+              unlimitedBillingBytes,
+              queryParameters,
               (long) getMaxRows(),
-              this.getAllLabels(),
-              this.connection.getUseQueryCache(),
-              this.connection.getJobCreationMode());
+              newJobReference(),
+              ref -> {});
       this.mostRecentJobReference.set(qr.getJobReference());
 
-      referencedJob =
-          this.connection
-              .getBigquery()
-              .jobs()
-              .get(projectId, qr.getJobReference().getJobId())
-              .execute();
+      if (qr.getJobReference() != null) {
+        // with JOB_CREATION_OPTIONAL, a query which fits in the response may run without a job
+        referencedJob = LazyJobStatistics.jobFromReference(qr.getJobReference());
+      }
 
       if (defaultValueIfNull(qr.getJobComplete(), false)) {
         List<TableRow> rows = defaultValueIfNull(qr.getRows(), new ArrayList<TableRow>());
         if (BigInteger.valueOf(rows.size()).equals(qr.getTotalRows())) {
           TableSchema schema = defaultValueIfNull(qr.getSchema(), new TableSchema());
-          String biEngineMode = null;
-          List<BiEngineReason> biEngineReasons = null;
-
-          Optional<BiEngineStatistics> biEngineStatisticsOptional =
-              Optional.ofNullable(referencedJob)
-                  .map(Job::getStatistics)
-                  .map(JobStatistics::getQuery)
-                  .map(JobStatistics2::getBiEngineStatistics);
-          if (biEngineStatisticsOptional.isPresent()) {
-            BiEngineStatistics biEngineStatistics = biEngineStatisticsOptional.get();
-            biEngineMode = biEngineStatistics.getBiEngineMode();
-            biEngineReasons = biEngineStatistics.getBiEngineReasons();
-          }
           return new BQScrollableResultSet(
               rows,
               this,
               schema,
               qr.getTotalBytesProcessed(),
               qr.getCacheHit(),
-              biEngineMode,
-              biEngineReasons,
-              referencedJob.getJobReference(),
+              null,
+              null,
+              qr.getJobReference(),
               qr.getQueryId());
         }
         jobAlreadyCompleted = true;
@@ -376,39 +1060,108 @@ public abstract class BQStatementRoot {
     } catch (IOException e) {
       throw new BQSQLException("Something went wrong with the query: " + querySql, e);
     }
+    if (referencedJob == null) {
+      throw new BQSQLException("Cannot poll results without a job reference");
+    }
     try {
-      do {
-        if (jobAlreadyCompleted
-            || BQSupportFuncts.getQueryState(
-                    referencedJob, this.connection.getBigquery(), projectId)
-                .equals("DONE")) {
-          if (resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE) {
-            return new BQScrollableResultSet(
-                BQSupportFuncts.getQueryResults(
-                    this.connection.getBigquery(), projectId, referencedJob),
-                this);
-          } else {
-            return new BQForwardOnlyResultSet(
-                this.connection.getBigquery(), projectId, referencedJob, null, this);
-          }
-        }
-        // Pause execution for half second before polling job status
-        // again, to
-        // reduce unnecessary calls to the BigQUery API and lower
-        // overall
-        // application bandwidth.
-        Thread.sleep(500);
-        this.logger.debug("slept for 500" + "ms, querytimeout is: " + this.querytimeout + "s");
-      } while (System.currentTimeMillis() - this.starttime <= (long) this.querytimeout * 1000);
-      // it runs for a minimum of 1 time
+      if (!jobAlreadyCompleted
+          && waitForJob(referencedJob.getJobReference(), getDeadlineMillis()) == null) {
+        cancelTimedOutJob(referencedJob.getJobReference());
+        throw new BQSQLException("Query run took more than the specified timeout");
+      }
+      return resultSetFromCompletedJob(referencedJob);
     } catch (IOException e) {
       throw new BQSQLException("Something went wrong with the query: " + querySql, e);
     } catch (InterruptedException e) {
-      e.printStackTrace();
+      Thread.currentThread().interrupt();
+      throw new BQSQLException("Interrupted while waiting for the query to complete", e);
     }
-    // here we should kill/stop the running job, but bigquery doesn't
-    // support that :(
-    throw new BQSQLException("Query run took more than the specified timeout");
+  }
+
+  /** Builds the result set of a finished job, fetching its first page of results. */
+  protected ResultSet resultSetFromCompletedJob(@Nullable Job completedJob)
+      throws IOException, SQLException {
+    if (resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE) {
+      if (completedJob == null) {
+        throw new BQSQLException("Cannot poll results without a job reference");
+      }
+      return new BQScrollableResultSet(
+          BQSupportFuncts.getQueryResults(this.connection.getBigquery(), projectId, completedJob),
+          this);
+    } else {
+      return new BQForwardOnlyResultSet(
+          this.connection.getBigquery(), projectId, completedJob, null, this);
+    }
+  }
+
+  /** Wrap [BQSupportFuncts.pollQueryResults] for convenience and testability purposes. */
+  protected GetQueryResultsResponse pollQueryResults(JobReference jobRef, long timeoutMillis)
+      throws IOException {
+    return BQSupportFuncts.pollQueryResults(
+        jobRef, this.connection.getBigquery(), projectId, timeoutMillis);
+  }
+
+  /**
+   * How long a job of this statement may run, in milliseconds: the connection's {@code timeoutMs}
+   * if set, else the query timeout, or null if there is neither.
+   */
+  protected @Nullable Long getClientTimeoutMillis() {
+    Integer timeoutMs = this.connection.getTimeoutMs();
+    if (timeoutMs != null && timeoutMs > 0) {
+      return (long) timeoutMs;
+    }
+    if (this.querytimeout >= NO_QUERY_TIMEOUT) {
+      return null;
+    }
+    return (long) this.querytimeout * 1000;
+  }
+
+  /**
+   * The {@code jobTimeoutMs} we send with each job, so that BigQuery cancels it even if we are no
+   * longer around to: a little longer than our own timeout, which cancels the job when we are.
+   */
+  protected @Nullable Long getJobTimeoutMillis() {
+    Long timeout = getClientTimeoutMillis();
+    return timeout == null ? null : timeout + JOB_TIMEOUT_GRACE_MILLIS;
+  }
+
+  /** The wall-clock time until which we wait for the job started at {@link #starttime}. */
+  protected long getDeadlineMillis() {
+    return deadlineMillis(this.starttime);
+  }
+
+  /**
+   * The wall-clock time until which we wait for a job started at {@code startMillis}, or {@link
+   * Long#MAX_VALUE} if there is no timeout.
+   */
+  protected long deadlineMillis(long startMillis) {
+    Long timeout = getClientTimeoutMillis();
+    return timeout == null ? Long.MAX_VALUE : startMillis + timeout;
+  }
+
+  /** Cancels a job we gave up waiting for, rather than leave it for BigQuery to time out. */
+  private void cancelTimedOutJob(JobReference jobRef) {
+    try {
+      BQSupportFuncts.cancelQuery(jobRef, this.connection.getBigquery(), projectId);
+    } catch (IOException e) {
+      logger.warn("Failed to cancel job " + jobRef.getJobId(), e);
+    }
+  }
+
+  /**
+   * Waits for a job started by this statement to complete, using the connection's {@link
+   * BQJobWaiter}.
+   *
+   * @param jobRef the job to wait for
+   * @param deadlineMillis the wall-clock time after which we stop waiting
+   * @return the poll response which reported the job as complete, or null if we ran out of time
+   */
+  protected GetQueryResultsResponse waitForJob(JobReference jobRef, long deadlineMillis)
+      throws IOException, InterruptedException {
+    return this.connection
+        .getJobWaiter()
+        .waitForCompletion(
+            jobRef, this::pollQueryResults, deadlineMillis, BQStatement.MAX_IO_FAILURE_RETRIES);
   }
 
   protected Map<String, String> getAllLabels() {
@@ -425,7 +1178,7 @@ public abstract class BQStatementRoot {
    * @throws BQSQLException
    */
   public int executeUpdate(String sql) throws SQLException {
-    return executeDML(sql);
+    return executeDML(sql, null);
   }
 
   /**
@@ -575,12 +1328,13 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Multiple result sets are not supported currently.
+   * Moves on to the next result of a script, closing the current result set. A single statement has
+   * no more results.
    *
-   * @return false;
+   * @return true if the next result is a result set
    */
   public boolean getMoreResults() throws SQLException {
-    return false;
+    return getMoreResults(Statement.CLOSE_CURRENT_RESULT);
   }
 
   /**
@@ -589,9 +1343,9 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Multiple result sets are not supported currently. we check that the result set is open, the
-   * parameter is acceptable, and close our current resultset or throw a
-   * FeatureNotSupportedException
+   * Moves on to the next result of a script. For a single statement, which has no more results, we
+   * check that the result set is open, the parameter is acceptable, and close our current resultset
+   * or throw a FeatureNotSupportedException
    *
    * @param current - one of the following Statement constants indicating what should happen to
    *     current ResultSet objects obtained using the method getResultSet:
@@ -606,6 +1360,9 @@ public abstract class BQStatementRoot {
     if (current == Statement.CLOSE_CURRENT_RESULT
         || current == Statement.KEEP_CURRENT_RESULT
         || current == Statement.CLOSE_ALL_RESULTS) {
+      if (this.scriptResults != null) {
+        return moreScriptResults(current);
+      }
 
       if (BQDatabaseMetadata.multipleOpenResultsSupported
           && (current == Statement.KEEP_CURRENT_RESULT || current == Statement.CLOSE_ALL_RESULTS)) {
@@ -619,21 +1376,24 @@ public abstract class BQStatementRoot {
     }
   }
 
+  /** Moves on to the next result of the script, see {@link #getMoreResults(int)}. */
+  private boolean moreScriptResults(int current) throws SQLException {
+    if (current != Statement.KEEP_CURRENT_RESULT && this.resset != null) {
+      this.resset.close();
+    }
+    if (current == Statement.CLOSE_ALL_RESULTS) {
+      this.scriptResults.closePassed();
+    }
+    boolean isResultSet = this.scriptResults.next();
+    this.resset = this.scriptResults.getResultSet();
+    return isResultSet;
+  }
+
   public int getQueryTimeout() throws SQLException {
     if (this.isClosed()) {
       throw new BQSQLException("This Statement is Closed");
     }
-    if (this.starttime == 0) {
-      return 0;
-    }
-    if (this.querytimeout == Integer.MAX_VALUE) {
-      return 0;
-    } else {
-      if (System.currentTimeMillis() - this.starttime > this.querytimeout) {
-        throw new BQSQLException("Time is over");
-      }
-      return this.querytimeout;
-    }
+    return this.querytimeout >= NO_QUERY_TIMEOUT ? 0 : this.querytimeout;
   }
 
   /**
@@ -704,12 +1464,13 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Result will be a ResultSet object.
+   * The update count of the current result of a script, or -1 if it is a ResultSet object or there
+   * are no more results. Other statements always give a ResultSet object.
    *
-   * @return -1
+   * @return the update count, or -1
    */
   public int getUpdateCount() throws SQLException {
-    return -1;
+    return this.scriptResults == null ? -1 : this.scriptResults.getUpdateCount();
   }
 
   /**
@@ -745,12 +1506,15 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Prepared statements are poolable unless told otherwise, plain statements are not.
    *
-   * @throws BQSQLException
+   * @throws BQSQLException if the statement is closed
    */
   public boolean isPoolable() throws SQLException {
-    throw new BQSQLException("Not implemented." + "isPoolable()");
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    return this.poolable;
   }
 
   /**
@@ -759,12 +1523,13 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * True if this statement is an instance of {@code iface}, e.g. {@link BQStatement} for access to
+   * {@link BQStatement#executeQueryAsync(String)}.
    *
-   * @return false
+   * @return whether {@link #unwrap(Class)} will succeed for {@code iface}
    */
   public boolean isWrapperFor(Class<?> iface) throws SQLException {
-    return false;
+    return iface != null && iface.isInstance(this);
   }
 
   /**
@@ -838,9 +1603,34 @@ public abstract class BQStatementRoot {
     this.maxFieldSize = arg0;
   }
 
+  /**
+   * Sets the priority of this statement's queries: {@link QueryPriority#BATCH} marks them as
+   * background work, both for BigQuery and for the connection's {@link BQQueryDispatcher}.
+   *
+   * @param priority the priority, or null to use the connection's
+   */
+  public void setPriority(@Nullable QueryPriority priority) {
+    this.priority = priority;
+  }
+
+  /** Returns the priority of this statement's queries, which defaults to the connection's. */
+  public QueryPriority getPriority() {
+    return this.priority != null ? this.priority : this.connection.getPriority();
+  }
+
+  /**
+   * Returns the tenant this statement's queries wait in line as: the value of the connection's
+   * {@link BQConnection#getAdmissionLabel() admission label} among the statement's labels.
+   */
+  String getAdmissionTenant() {
+    String label = this.connection.getAdmissionLabel();
+    String tenant = label == null ? null : getAllLabels().get(label);
+    return tenant == null ? BQQueryDispatcher.DEFAULT_TENANT : tenant;
+  }
+
   /** NOTE: can pass 0 or negative to set to unlimited */
   public void setMaxRows(int newMax) {
-    this.resultMaxRowCount = newMax <= 0 ? Integer.MAX_VALUE - 1 : newMax;
+    this.resultMaxRowCount = newMax <= 0 ? NO_MAX_ROWS : newMax;
   }
 
   /**
@@ -849,12 +1639,16 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Not implemented yet.
+   * Poolable prepared statements are kept by their connection for reuse once closed, if the
+   * connection has a statement cache. Plain statements are never pooled.
    *
-   * @throws BQSQLException
+   * @throws BQSQLException if the statement is closed
    */
-  public void setPoolable(boolean arg0) throws SQLException {
-    throw new BQSQLException("Not implemented." + "setPoolable(bool)");
+  public void setPoolable(boolean poolable) throws SQLException {
+    if (this.isClosed()) {
+      throw new BQSQLException("This Statement is Closed");
+    }
+    this.poolable = poolable;
   }
 
   public void setQueryTimeout(int seconds) throws SQLException {
@@ -874,11 +1668,14 @@ public abstract class BQStatementRoot {
    * <h1>Implementation Details:</h1>
    *
    * <br>
-   * Always throws SQLException
+   * Returns this statement if it is an instance of {@code iface}; we do not wrap anything else.
    *
-   * @throws SQLException
+   * @throws SQLException if this statement is not an instance of {@code iface}
    */
   public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (isWrapperFor(iface)) {
+      return iface.cast(this);
+    }
     throw new BQSQLException("not found");
   }
 }
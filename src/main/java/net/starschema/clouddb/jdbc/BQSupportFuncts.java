@@ -36,6 +36,8 @@ import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -44,7 +46,9 @@ import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import net.starschema.clouddb.jdbc.BQConnection.JobCreationMode;
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -386,6 +390,82 @@ public class BQSupportFuncts {
     return pollJob.getStatus().getState();
   }
 
+  /**
+   * Long-polls a query job for completion without fetching any rows.
+   *
+   * <p>BigQuery holds the request open until the job completes or {@code timeoutMillis} elapses,
+   * whichever comes first. If the job failed, the returned error is thrown as an IOException.
+   *
+   * @param jobRef the job to poll
+   * @param bq Instance of authorized Bigquery client
+   * @param projectId The id of the Project the job is contained in
+   * @param timeoutMillis how long BigQuery may wait for the job before answering
+   * @return a response without rows, whose {@code jobComplete} tells if the job is done
+   * @throws IOException if the request fails, or the job failed
+   */
+  public static GetQueryResultsResponse pollQueryResults(
+      JobReference jobRef, Bigquery bq, String projectId, long timeoutMillis) throws IOException {
+    return bq.jobs()
+        .getQueryResults(projectId, jobRef.getJobId())
+        .setLocation(jobRef.getLocation())
+        .setTimeoutMs(timeoutMillis)
+        .setMaxResults(0L)
+        .execute();
+  }
+
+  /**
+   * Logs the completion state of a job as returned by {@link #pollQueryResults}
+   *
+   * @param jobRef the job which was polled
+   * @param pollResponse the response of the poll
+   * @return true if the job is complete
+   * @throws IOException if the response doesn't tell the state of the job
+   */
+  public static boolean logAndGetQueryCompletion(
+      JobReference jobRef, GetQueryResultsResponse pollResponse) throws IOException {
+    if (pollResponse == null || pollResponse.getJobComplete() == null) {
+      throw new IOException("Failed to fetch query state.");
+    }
+    BQSupportFuncts.logger.info(
+        "Job complete: " + pollResponse.getJobComplete() + " ; " + jobRef.getJobId());
+    return pollResponse.getJobComplete();
+  }
+
+  /**
+   * Lists the child jobs of a script job in the order they were created, which is the order of the
+   * script's statements.
+   *
+   * @param bigquery Instance of authorized Bigquery client
+   * @param projectId The id of the Project the script job is contained in
+   * @param parentJob The script job
+   * @return the child jobs, oldest first
+   * @throws IOException if a page of the listing could not be fetched
+   */
+  public static List<JobList.Jobs> listChildJobs(
+      Bigquery bigquery, String projectId, JobReference parentJob) throws IOException {
+    List<JobList.Jobs> children = new ArrayList<>();
+    String pageToken = null;
+    do {
+      JobList page =
+          bigquery
+              .jobs()
+              .list(projectId)
+              .setParentJobId(parentJob.getJobId())
+              .setPageToken(pageToken)
+              .execute();
+      if (page.getJobs() != null) {
+        children.addAll(page.getJobs());
+      }
+      pageToken = page.getNextPageToken();
+    } while (pageToken != null);
+    children.sort(
+        Comparator.comparing(
+            (JobList.Jobs child) ->
+                child.getStatistics() == null ? null : child.getStatistics().getCreationTime(),
+            Comparator.nullsLast(Comparator.naturalOrder())));
+    return children;
+  }
+
   /**
    * Cancels a job. Uses the fact that it returns a JobCancelResponse to help enforce actually
    * calling .execute().
@@ -653,6 +733,50 @@ public class BQSupportFuncts {
       boolean useQueryCache,
       JobCreationMode jobCreationMode)
       throws IOException {
+    return runSyncQuery(
+        bigquery,
+        projectId,
+        querySql,
+        dataSet,
+        dataSetProjectId,
+        useLegacySql,
+        maxBillingBytes,
+        queryTimeoutMs,
+        null,
+        maxResults,
+        labels,
+        useQueryCache,
+        jobCreationMode,
+        null,
+        null);
+  }
+
+  /**
+   * Like {@link #runSyncQuery(Bigquery, String, String, String, String, Boolean, Long, Long, Long,
+   * Map, boolean, JobCreationMode)}, binding the {@code ?} placeholders of {@code querySql} to
+   * {@code queryParameters}, in order.
+   *
+   * @param jobTimeoutMs how long BigQuery lets the job run before it cancels it, or null for no
+   *     limit; unlike {@code queryTimeoutMs}, this holds even if we stop waiting for the job
+   * @param sessionId the BigQuery session to run the query in, or null
+   */
+  static QueryResponse runSyncQuery(
+      Bigquery bigquery,
+      String projectId,
+      String querySql,
+      String dataSet,
+      String dataSetProjectId,
+      Boolean useLegacySql,
+      Long maxBillingBytes,
+      Long queryTimeoutMs,
+      @Nullable Long jobTimeoutMs,
+      Long maxResults,
+      Map<String, String> labels,
+      boolean useQueryCache,
+      JobCreationMode jobCreationMode,
+      @Nullable List<QueryParameter> queryParameters,
+      @Nullable String sessionId)
+      throws IOException {
     return getSyncQuery(
             bigquery,
             projectId,
@@ -662,10 +786,13 @@ public class BQSupportFuncts {
             useLegacySql,
             maxBillingBytes,
             queryTimeoutMs,
+            jobTimeoutMs,
             maxResults,
             labels,
             useQueryCache,
-            jobCreationMode)
+            jobCreationMode,
+            queryParameters,
+            sessionId)
         .execute();
   }
 
@@ -687,6 +814,41 @@ public class BQSupportFuncts {
       boolean useQueryCache,
       JobCreationMode jobCreationMode)
       throws IOException {
+    return getSyncQuery(
+        bigquery,
+        projectId,
+        querySql,
+        dataSet,
+        dataSetProjectId,
+        useLegacySql,
+        maxBillingBytes,
+        queryTimeoutMs,
+        null,
+        maxResults,
+        labels,
+        useQueryCache,
+        jobCreationMode,
+        null,
+        null);
+  }
+
+  static Bigquery.Jobs.Query getSyncQuery(
+      Bigquery bigquery,
+      String projectId,
+      String querySql,
+      String dataSet,
+      String dataSetProjectId,
+      Boolean useLegacySql,
+      Long maxBillingBytes,
+      Long queryTimeoutMs,
+      @Nullable Long jobTimeoutMs,
+      Long maxResults,
+      Map<String, String> labels,
+      boolean useQueryCache,
+      JobCreationMode jobCreationMode,
+      @Nullable List<QueryParameter> queryParameters,
+      @Nullable String sessionId)
+      throws IOException {
     QueryRequest qr =
         new QueryRequest()
             .setLabels(labels)
@@ -705,10 +867,188 @@ public class BQSupportFuncts {
     if (maxResults != null) {
       qr.setMaxResults(maxResults);
     }
+    if (queryParameters != null) {
+      qr.setParameterMode("POSITIONAL").setQueryParameters(queryParameters);
+    }
+    if (jobTimeoutMs != null) {
+      // Not every version of the API model has a setter for this yet
+      qr.set("jobTimeoutMs", jobTimeoutMs);
+    }
+    if (sessionId != null) {
+      qr.setConnectionProperties(sessionProperties(sessionId));
+    }
 
     return bigquery.jobs().query(projectId, qr);
   }
 
+  /** The connection properties that make a query run in the session {@code sessionId}. */
+  static List<ConnectionProperty> sessionProperties(String sessionId) {
+    return Collections.singletonList(
+        new ConnectionProperty().setKey("session_id").setValue(sessionId));
+  }
+
+  /**
+   * Creates a BigQuery session, by running a trivial query that starts one.
+   *
+   * @return the response of that query, whose session info has the ID of the new session
+   * @throws IOException if the request fails
+   */
+  static QueryResponse createSession(
+      Bigquery bigquery,
+      String projectId,
+      String dataSet,
+      String dataSetProjectId,
+      Map<String, String> labels)
+      throws IOException {
+    QueryRequest qr =
+        new QueryRequest()
+            .setQuery("SELECT 1")
+            .setUseLegacySql(false)
+            .setLabels(labels)
+            .setCreateSession(true);
+    if (dataSet != null) {
+      // so that the session lives where the default dataset does
+      qr.setDefaultDataset(
+          new DatasetReference().setDatasetId(dataSet).setProjectId(dataSetProjectId));
+    }
+    logger.debug("Creating a session in project " + projectId);
+    return bigquery.jobs().query(projectId, qr).execute();
+  }
+
+  /**
+   * Terminates a BigQuery session, dropping its temporary tables.
+   *
+   * @throws IOException if the request fails
+   */
+  static void abortSession(Bigquery bigquery, String projectId, String sessionId)
+      throws IOException {
+    QueryRequest qr =
+        new QueryRequest()
+            .setQuery("CALL BQ.ABORT_SESSION()")
+            .setUseLegacySql(false)
+            .setConnectionProperties(sessionProperties(sessionId));
+    logger.debug("Terminating session " + sessionId);
+    bigquery.jobs().query(projectId, qr).execute();
+  }
+
+  /**
+   * Lists the temporary tables of a session: those in the anonymous dataset BigQuery gave it, which
+   * also holds the results of its queries.
+   *
+   * @param sessionDataset the session's dataset, as the destination of one of its queries shows it
+   * @param tableNamePattern the pattern the tables' names must match, or null for all of them
+   * @return the session's tables, which may be none
+   * @throws IOException if the request to list the tables fails
+   */
+  static List<Tables> getSessionTables(
+      BQConnection connection, DatasetReference sessionDataset, String tableNamePattern)
+      throws IOException {
+    List<Tables> tables =
+        getTables(
+            tableNamePattern,
+            sessionDataset.getProjectId(),
+            sessionDataset.getDatasetId(),
+            connection);
+    List<Tables> sessionTables = new ArrayList<>();
+    if (tables != null) {
+      for (Tables table : tables) {
+        // skip the anonymous tables holding query results
+        if (!table.getTableReference().getTableId().startsWith("anon")) {
+          sessionTables.add(table);
+        }
+      }
+    }
+    return sessionTables;
+  }
+
+  /** A reference to a job that doesn't exist yet, with an ID of our choosing. */
+  static JobReference newJobReference(String projectId) {
+    return new JobReference()
+        .setProjectId(projectId)
+        .setJobId(UUID.randomUUID().toString().replace("-", ""));
+  }
+
+  /**
+   * Starts a query job with the ID of {@code jobReference}, configured as {@link #getSyncQuery}
+   * would configure it, with its {@code ?} placeholders bound to {@code queryParameters} if not
+   * null. As we chose the ID ourselves, the job can be cancelled even before this returns. Unlike
+   * jobs.query, this can run the query with {@link QueryPriority#BATCH} priority.
+   *
+   * @return the job as BigQuery created it, whose reference also has the job's location
+   * @throws IOException if the request fails
+   */
+  static Job insertQueryJob(
+      Bigquery bigquery,
+      String projectId,
+      JobReference jobReference,
+      String querySql,
+      String dataSet,
+      String dataSetProjectId,
+      Boolean useLegacySql,
+      Long maxBillingBytes,
+      @Nullable Long jobTimeoutMs,
+      Map<String, String> labels,
+      boolean useQueryCache,
+      @Nullable List<QueryParameter> queryParameters,
+      @Nullable String sessionId,
+      QueryPriority priority)
+      throws IOException {
+    JobConfigurationQuery queryConfig =
+        new JobConfigurationQuery()
+            .setQuery(querySql)
+            .setUseLegacySql(useLegacySql)
+            .setMaximumBytesBilled(maxBillingBytes)
+            .setUseQueryCache(useQueryCache)
+            .setPriority(priority.name());
+    if (queryParameters != null) {
+      queryConfig.setParameterMode("POSITIONAL").setQueryParameters(queryParameters);
+    }
+    if (sessionId != null) {
+      queryConfig.setConnectionProperties(sessionProperties(sessionId));
+    }
+    if (dataSet != null) {
+      queryConfig.setDefaultDataset(
+          new DatasetReference().setDatasetId(dataSet).setProjectId(dataSetProjectId));
+    }
+    JobConfiguration config =
+        new JobConfiguration()
+            .setQuery(queryConfig)
+            .setLabels(labels)
+            .setJobTimeoutMs(jobTimeoutMs);
+    Job job = new Job().setJobReference(jobReference).setConfiguration(config);
+    return bigquery.jobs().insert(projectId, job).execute();
+  }
+
+  /**
+   * Waits up to {@code timeoutMs} for a job to complete and returns its first page of results, the
+   * way jobs.query answers.
+   *
+   * @throws IOException if the request fails, or the job failed
+   */
+  static QueryResponse getFirstQueryResults(
+      Bigquery bigquery, String projectId, JobReference jobRef, Long timeoutMs, Long maxResults)
+      throws IOException {
+    GetQueryResultsResponse results =
+        bigquery
+            .jobs()
+            .getQueryResults(projectId, jobRef.getJobId())
+            .setLocation(jobRef.getLocation())
+            .setTimeoutMs(timeoutMs)
+            .setMaxResults(maxResults)
+            .execute();
+    return new QueryResponse()
+        .setJobReference(results.getJobReference() != null ? results.getJobReference() : jobRef)
+        .setJobComplete(results.getJobComplete())
+        .setSchema(results.getSchema())
+        .setRows(results.getRows())
+        .setTotalRows(results.getTotalRows())
+        .setPageToken(results.getPageToken())
+        .setTotalBytesProcessed(results.getTotalBytesProcessed())
+        .setCacheHit(results.getCacheHit())
+        .setNumDmlAffectedRows(results.getNumDmlAffectedRows())
+        .setErrors(results.getErrors());
+  }
+
   /**
    * Starts a new query in async mode.
    *
@@ -787,4 +1127,49 @@ public class BQSupportFuncts {
             + querySql.replace("\t", "").replace("\n", " ").replace("\r", ""));
     return insert.execute();
   }
+
+  /**
+   * Validates a query with a dry run, which doesn't run it, but tells us its result schema, the
+   * types of its parameters and how many bytes it would process.
+   *
+   * @param bigquery The bigquery instance, which is authorized
+   * @param projectId The project ID to use for billing
+   * @param querySql The sql query which we want to check
+   * @param dataSet The default dataset, can be null
+   * @param dataSetProjectId The default dataset project id, only specified when the default dataset
+   *     is non-null
+   * @param useLegacySql Use the legacy SQL dialect when true
+   * @param positionalParameters Whether {@code querySql} has {@code ?} parameters, whose types
+   *     BigQuery should infer (standard SQL only)
+   * @param sessionId The BigQuery session whose temporary tables the query may use, or null
+   * @return the job as returned by the dry run; it is never actually created
+   * @throws IOException if the query is invalid, or the request fails
+   */
+  static Job dryRunQuery(
+      Bigquery bigquery,
+      String projectId,
+      String querySql,
+      String dataSet,
+      String dataSetProjectId,
+      Boolean useLegacySql,
+      boolean positionalParameters,
+      @Nullable String sessionId)
+      throws IOException {
+    JobConfigurationQuery queryConfig =
+        new JobConfigurationQuery().setQuery(querySql).setUseLegacySql(useLegacySql);
+    if (positionalParameters) {
+      queryConfig.setParameterMode("POSITIONAL");
+    }
+    if (sessionId != null) {
+      queryConfig.setConnectionProperties(sessionProperties(sessionId));
+    }
+    if (dataSet != null) {
+      queryConfig.setDefaultDataset(
+          new DatasetReference().setDatasetId(dataSet).setProjectId(dataSetProjectId));
+    }
+    Job job =
+        new Job().setConfiguration(new JobConfiguration().setDryRun(true).setQuery(queryConfig));
+    logger.debug("Dry running query: " + querySql);
+    return bigquery.jobs().insert(projectId, job).execute();
+  }
 }
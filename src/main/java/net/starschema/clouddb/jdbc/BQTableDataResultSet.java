@@ -0,0 +1,87 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.TableDataList;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A forward only result set over the rows of an earlier job, which it pages through straight from
+ * the job's destination table with {@code tabledata.list}, see {@link BQDestinationTables}.
+ */
+class BQTableDataResultSet extends BQForwardOnlyResultSet {
+
+  /** How many rows to ask for at a time. */
+  private static final long PAGE_SIZE = 5000;
+
+  private final Bigquery bigquery;
+  private final TableReference table;
+
+  /** Where the next page starts; null if there are no more. */
+  private @Nullable String pageToken;
+
+  /**
+   * @param job the job whose destination table {@code table} is
+   * @param firstPage the first page of rows, as {@link #list} returned it
+   */
+  BQTableDataResultSet(
+      BQStatementRoot statement,
+      JobReference job,
+      TableSchema schema,
+      TableReference table,
+      TableDataList firstPage)
+      throws SQLException {
+    super(
+        statement.connection.getBigquery(),
+        statement.projectId,
+        LazyJobStatistics.jobFromReference(job),
+        null,
+        statement,
+        firstPage.getRows() == null ? Collections.emptyList() : firstPage.getRows(),
+        firstPage.getPageToken() == null,
+        schema,
+        // no job ran for these rows
+        0L,
+        true,
+        null,
+        null);
+    this.bigquery = statement.connection.getBigquery();
+    this.table = table;
+    this.pageToken = firstPage.getPageToken();
+  }
+
+  /** Lists the page of rows of {@code table} that starts at {@code pageToken}. */
+  static TableDataList list(Bigquery bigquery, TableReference table, @Nullable String pageToken)
+      throws IOException {
+    return bigquery
+        .tabledata()
+        .list(table.getProjectId(), table.getDatasetId(), table.getTableId())
+        .setMaxResults(PAGE_SIZE)
+        .setPageToken(pageToken)
+        .execute();
+  }
+
+  @Override
+  protected @Nullable List<TableRow> fetchNextPage() throws SQLException {
+    while (pageToken != null) {
+      TableDataList page;
+      try {
+        page = list(bigquery, table, pageToken);
+      } catch (IOException e) {
+        throw new BQSQLException("failed to fetch more results", e);
+      }
+      pageToken = page.getPageToken();
+      if (page.getRows() != null && !page.getRows().isEmpty()) {
+        return page.getRows();
+      }
+    }
+    return null;
+  }
+}
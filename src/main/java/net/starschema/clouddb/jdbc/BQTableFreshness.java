@@ -0,0 +1,312 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import com.google.api.services.bigquery.model.Table;
+import com.google.api.services.bigquery.model.TableReference;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tells whether the tables a cached result was read from changed since, for connections with the
+ * {@code resultCacheCheckTables} property, so that the result caches only serve rows the query
+ * would still return.
+ *
+ * <p>What a result was read from are the {@code referencedTables} of its job, as of the job's start
+ * time. When a table last changed is its {@code lastModifiedTime}, which we ask {@code tables.get}
+ * for with a field mask, batching the tables of a result into as few requests as we can. Each table
+ * is checked at most once per check interval: the checks within the interval share the answer of
+ * the last one, or wait for it if it is still running.
+ */
+final class BQTableFreshness {
+
+  private static final Logger logger = LoggerFactory.getLogger(BQTableFreshness.class);
+
+  private static final BQTableFreshness SHARED = new BQTableFreshness(BQTableFreshness::lookUp);
+
+  /** Only ask for the parts of the job and the tables we actually read. */
+  private static final String JOB_FIELDS =
+      "statistics(startTime,query(statementType,referencedTables))";
+
+  private static final String TABLE_FIELDS = "lastModifiedTime";
+
+  /** How many tables to check in one batch request. */
+  private static final int BATCH_SIZE = 50;
+
+  /** How many jobs to remember the sources of. */
+  private static final int MAX_JOBS = 10000;
+
+  /** When we assume a table changed if we couldn't check it: just now. */
+  static final long UNKNOWN = Long.MAX_VALUE;
+
+  /** Looks up when tables last changed. */
+  interface Lookup {
+    /** Completes the check of each table with when the table last changed, if it can. */
+    void lastModified(@Nullable Bigquery bigquery, List<Check> checks);
+  }
+
+  /** The tables a query read, and when it read them. */
+  static final class Sources {
+    /** For queries we can't tell the sources of, such as scripts. */
+    static final Sources UNKNOWN_SOURCES = new Sources(Collections.emptyList(), Long.MIN_VALUE);
+
+    final List<TableReference> tables;
+    final long readAtMillis;
+
+    Sources(List<TableReference> tables, long readAtMillis) {
+      this.tables = tables;
+      this.readAtMillis = readAtMillis;
+    }
+
+    /** What {@code job} read, as far as its statistics tell. */
+    static Sources of(Job job) {
+      JobStatistics statistics = job.getStatistics();
+      if (statistics == null || statistics.getStartTime() == null) {
+        return UNKNOWN_SOURCES;
+      }
+      JobStatistics2 query = statistics.getQuery();
+      if (query == null || "SCRIPT".equals(query.getStatementType())) {
+        // the child jobs of a script read the tables, not the script
+        return UNKNOWN_SOURCES;
+      }
+      List<TableReference> tables = query.getReferencedTables();
+      if ((tables == null || tables.isEmpty()) && !"SELECT".equals(query.getStatementType())) {
+        // only a SELECT can be trusted to read no tables at all
+        return UNKNOWN_SOURCES;
+      }
+      return new Sources(
+          tables == null ? Collections.emptyList() : tables, statistics.getStartTime());
+    }
+  }
+
+  /** A check of when a table last changed. */
+  static final class Check {
+    final TableReference table;
+    final long checkedAtNanos;
+    final CompletableFuture<Long> lastModified = new CompletableFuture<>();
+
+    Check(TableReference table, long checkedAtNanos) {
+      this.table = table;
+      this.checkedAtNanos = checkedAtNanos;
+    }
+
+    boolean isRecent(long nowNanos, long checkIntervalNanos) {
+      return nowNanos - checkedAtNanos < checkIntervalNanos;
+    }
+
+    void complete(Table table) {
+      lastModified.complete(
+          table.getLastModifiedTime() == null ? UNKNOWN : table.getLastModifiedTime().longValue());
+    }
+  }
+
+  private final Lookup lookup;
+
+  /** The last check of each table, by credentials and table. */
+  private final Map<List<Object>, Check> checks = new ConcurrentHashMap<>();
+
+  /** When we last dropped the checks that are no longer recent. */
+  private volatile long prunedAtNanos = System.nanoTime();
+
+  /** The sources of the jobs we looked up, least recently used first. */
+  private final LinkedHashMap<String, Sources> jobs = new LinkedHashMap<>(16, 0.75f, true);
+
+  BQTableFreshness(Lookup lookup) {
+    this.lookup = lookup;
+  }
+
+  /** The table checks of the driver. */
+  static BQTableFreshness shared() {
+    return SHARED;
+  }
+
+  /**
+   * Tells whether the rows {@code job} returned are still current: whether none of the tables it
+   * read changed since it ran.
+   *
+   * @param credentials tells apart connections that may not see the same tables
+   * @param checkIntervalMillis how long the last check of a table stays good for
+   * @return false if any did, or if we can't tell (e.g. the rows came from a job-less query)
+   */
+  boolean isFresh(
+      Bigquery bigquery,
+      String credentials,
+      String projectId,
+      @Nullable JobReference job,
+      long checkIntervalMillis)
+      throws SQLException {
+    if (job == null) {
+      return false;
+    }
+    Sources sources = sources(bigquery, projectId, job);
+    return sources != null
+        && sources != Sources.UNKNOWN_SOURCES
+        && unchangedSince(bigquery, credentials, sources, checkIntervalMillis);
+  }
+
+  /** Looks up what {@code jobReference} read; null if we couldn't. */
+  @Nullable
+  private Sources sources(Bigquery bigquery, String projectId, JobReference jobReference) {
+    String id = LazyJobStatistics.jobFromReference(jobReference).getId();
+    synchronized (jobs) {
+      Sources sources = jobs.get(id);
+      if (sources != null) {
+        return sources;
+      }
+    }
+    Job job;
+    try {
+      job =
+          bigquery
+              .jobs()
+              .get(
+                  jobReference.getProjectId() != null ? jobReference.getProjectId() : projectId,
+                  jobReference.getJobId())
+              .setLocation(jobReference.getLocation())
+              .setFields(JOB_FIELDS)
+              .execute();
+    } catch (IOException e) {
+      logger.warn("Failed to look up the tables job " + jobReference.getJobId() + " read", e);
+      return null;
+    }
+    Sources sources = Sources.of(job);
+    synchronized (jobs) {
+      jobs.put(id, sources);
+      if (jobs.size() > MAX_JOBS) {
+        jobs.remove(jobs.keySet().iterator().next());
+      }
+    }
+    return sources;
+  }
+
+  /** Tells whether none of the tables of {@code sources} changed since they were read. */
+  boolean unchangedSince(
+      @Nullable Bigquery bigquery, String credentials, Sources sources, long checkIntervalMillis)
+      throws SQLException {
+    long now = System.nanoTime();
+    long checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkIntervalMillis);
+    if (now - prunedAtNanos >= checkIntervalNanos) {
+      prunedAtNanos = now;
+      // checks still running are waited on, and drop themselves if they fail
+      checks
+          .values()
+          .removeIf(
+              check -> check.lastModified.isDone() && !check.isRecent(now, checkIntervalNanos));
+    }
+    Map<List<Object>, Check> ours = new LinkedHashMap<>();
+    List<CompletableFuture<Long>> answers = new ArrayList<>();
+    for (TableReference table : sources.tables) {
+      List<Object> key =
+          Arrays.asList(
+              credentials, table.getProjectId(), table.getDatasetId(), table.getTableId());
+      Check candidate = new Check(table, now);
+      Check check =
+          checks.compute(
+              key,
+              (k, last) ->
+                  last != null && last.isRecent(now, checkIntervalNanos) ? last : candidate);
+      if (check == candidate) {
+        ours.put(key, candidate);
+      }
+      answers.add(check.lastModified);
+    }
+    if (!ours.isEmpty()) {
+      try {
+        lookup.lastModified(bigquery, new ArrayList<>(ours.values()));
+      } finally {
+        for (Map.Entry<List<Object>, Check> entry : ours.entrySet()) {
+          Check check = entry.getValue();
+          if (check.lastModified.complete(UNKNOWN) || check.lastModified.join() == UNKNOWN) {
+            // let the next check ask again rather than assume it changed for a whole interval
+            checks.remove(entry.getKey(), check);
+          }
+        }
+      }
+    }
+    for (CompletableFuture<Long> answer : answers) {
+      long lastModified;
+      try {
+        lastModified = answer.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new BQSQLException("Interrupted while checking whether tables changed", e);
+      } catch (ExecutionException e) {
+        lastModified = UNKNOWN;
+      }
+      if (lastModified >= sources.readAtMillis) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns how many tables we remember the last check of. */
+  int size() {
+    return checks.size();
+  }
+
+  /** Asks {@code tables.get} when the tables of {@code checks} last changed. */
+  private static void lookUp(@Nullable Bigquery bigquery, List<Check> checks) {
+    try {
+      if (checks.size() == 1) {
+        Check check = checks.get(0);
+        check.complete(get(bigquery, check.table).execute());
+        return;
+      }
+      for (int start = 0; start < checks.size(); start += BATCH_SIZE) {
+        BatchRequest batch = bigquery.batch();
+        for (Check check : checks.subList(start, Math.min(start + BATCH_SIZE, checks.size()))) {
+          get(bigquery, check.table)
+              .queue(
+                  batch,
+                  new JsonBatchCallback<Table>() {
+                    @Override
+                    public void onSuccess(Table table, HttpHeaders responseHeaders) {
+                      check.complete(table);
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                      logger.debug(
+                          "Failed to check when "
+                              + check.table.getTableId()
+                              + " changed: "
+                              + error.getMessage());
+                    }
+                  });
+        }
+        batch.execute();
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to check when tables changed", e);
+    }
+  }
+
+  private static Bigquery.Tables.Get get(Bigquery bigquery, TableReference table)
+      throws IOException {
+    return bigquery
+        .tables()
+        .get(table.getProjectId(), table.getDatasetId(), table.getTableId())
+        .setFields(TABLE_FIELDS);
+  }
+}
@@ -0,0 +1,106 @@
+package net.starschema.clouddb.jdbc;
+
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.BiEngineStatistics;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import java.io.IOException;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the statistics of a finished query job the first time somebody asks for them.
+ *
+ * <p>{@code jobs.query} already tells us whether the job completed, and hands back its rows, so the
+ * only reason to call {@code jobs.get} afterwards is to read statistics that are not part of the
+ * query response (e.g. BI Engine acceleration). Most callers never look at those, so we defer the
+ * call until they do and then remember the answer.
+ */
+class LazyJobStatistics {
+
+  private static final Logger logger = LoggerFactory.getLogger(LazyJobStatistics.class);
+
+  /** Only ask for the parts of the job we actually read. */
+  private static final String JOB_FIELDS = "id,jobReference,statistics";
+
+  private final @Nullable Bigquery bigquery;
+  private final @Nullable String projectId;
+  private final @Nullable JobReference jobReference;
+
+  private boolean loaded;
+  private @Nullable Job job;
+
+  /**
+   * @param bigquery the client used to load the job, or null if it should never be loaded
+   * @param projectId the project the job was run in
+   * @param jobReference the job to describe, or null if there is none (e.g. a job-less query)
+   * @param job the job, if the caller happened to have its statistics already
+   */
+  LazyJobStatistics(
+      @Nullable Bigquery bigquery,
+      @Nullable String projectId,
+      @Nullable JobReference jobReference,
+      @Nullable Job job) {
+    this.bigquery = bigquery;
+    this.projectId = projectId;
+    this.jobReference = jobReference;
+    if (job != null && job.getStatistics() != null) {
+      this.job = job;
+      this.loaded = true;
+    }
+  }
+
+  /**
+   * Builds a stand-in {@link Job} that is only good for its reference and ID, which is all we need
+   * to page through the results of a job.
+   */
+  static Job jobFromReference(JobReference jobReference) {
+    String id = jobReference.getProjectId() + ":";
+    if (jobReference.getLocation() != null) {
+      id += jobReference.getLocation() + ".";
+    }
+    return new Job().setJobReference(jobReference).setId(id + jobReference.getJobId());
+  }
+
+  /** @return the job, loading it on first use; null if it has no job or could not be loaded */
+  synchronized @Nullable Job getJob() {
+    if (!loaded) {
+      loaded = true;
+      if (bigquery != null && jobReference != null) {
+        try {
+          job =
+              bigquery
+                  .jobs()
+                  .get(
+                      jobReference.getProjectId() != null ? jobReference.getProjectId() : projectId,
+                      jobReference.getJobId())
+                  .setLocation(jobReference.getLocation())
+                  .setFields(JOB_FIELDS)
+                  .execute();
+        } catch (IOException e) {
+          logger.warn("Failed to load statistics for job " + jobReference.getJobId(), e);
+        }
+      }
+    }
+    return job;
+  }
+
+  @Nullable
+  JobStatistics2 getQueryStatistics() {
+    return Optional.ofNullable(getJob())
+        .map(Job::getStatistics)
+        .map(JobStatistics::getQuery)
+        .orElse(null);
+  }
+
+  @Nullable
+  BiEngineStatistics getBiEngineStatistics() {
+    return Optional.ofNullable(getQueryStatistics())
+        .map(JobStatistics2::getBiEngineStatistics)
+        .orElse(null);
+  }
+}
@@ -24,6 +24,7 @@ package net.starschema.clouddb.jdbc;
 
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -459,9 +460,24 @@ public class Oauth2Bigquery {
     return (PrivateKey) keystore.getKey(keystore.aliases().nextElement(), password.toCharArray());
   }
 
+  /**
+   * Changes how long the requests of {@code bigquery} wait for data, in milliseconds (0 for no
+   * limit), for requests started from now on.
+   *
+   * @return false if {@code bigquery} wasn't created here, so we can't change its timeout
+   */
+  static boolean setReadTimeout(Bigquery bigquery, int readTimeout) {
+    HttpRequestInitializer initializer = bigquery.getRequestFactory().getInitializer();
+    if (!(initializer instanceof HttpRequestTimeoutInitializer)) {
+      return false;
+    }
+    ((HttpRequestTimeoutInitializer) initializer).setReadTimeout(readTimeout);
+    return true;
+  }
+
   private static class HttpRequestTimeoutInitializer extends HttpCredentialsAdapter {
-    private Integer readTimeout = null;
-    private Integer connectTimeout = null;
+    private volatile Integer readTimeout = null;
+    private volatile Integer connectTimeout = null;
 
     public HttpRequestTimeoutInitializer(GoogleCredentials credential) {
       super(credential);
@@ -0,0 +1,81 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.JobConfigurationQuery;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableSchema;
+import net.starschema.clouddb.jdbc.BQDestinationTables.Entry;
+import net.starschema.clouddb.jdbc.BQResultCache.Key;
+import org.junit.Test;
+
+public class BQDestinationTablesTest {
+
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  private final BQDestinationTables destinationTables = new BQDestinationTables();
+
+  private static Key key(String querySql) {
+    return new Key("credentials", "project", null, "dataset", false, querySql, null, 0);
+  }
+
+  private static Entry entry(String jobId, long validForMillis) {
+    return new Entry(new JobReference().setJobId(jobId), new TableSchema(), validForMillis);
+  }
+
+  private static Job job(String statementType, TableReference destinationTable) {
+    return new Job()
+        .setConfiguration(
+            new JobConfiguration()
+                .setQuery(new JobConfigurationQuery().setDestinationTable(destinationTable)))
+        .setStatistics(
+            new JobStatistics().setQuery(new JobStatistics2().setStatementType(statementType)));
+  }
+
+  @Test
+  public void remembersTheLastJobOfAQuery() {
+    Entry first = entry("first", ONE_HOUR);
+    Entry second = entry("second", ONE_HOUR);
+    destinationTables.put(key("SELECT 1"), first);
+    destinationTables.put(key("SELECT 1"), second);
+    assertSame(second, destinationTables.get(key("  SELECT 1;")));
+    assertNull(destinationTables.get(key("SELECT 2")));
+  }
+
+  @Test
+  public void forgetsJobsOnceTheirWindowIsOver() throws InterruptedException {
+    destinationTables.put(key("SELECT 1"), entry("job", 1));
+    Thread.sleep(10);
+    assertNull(destinationTables.get(key("SELECT 1")));
+    assertEquals(0, destinationTables.size());
+  }
+
+  @Test
+  public void forgetsOnlyTheJobThatFailed() {
+    Entry failed = entry("failed", ONE_HOUR);
+    Entry newer = entry("newer", ONE_HOUR);
+    destinationTables.put(key("SELECT 1"), failed);
+    destinationTables.put(key("SELECT 1"), newer);
+    destinationTables.forget(key("SELECT 1"), failed);
+    assertSame(newer, destinationTables.get(key("SELECT 1")));
+    destinationTables.forget(key("SELECT 1"), newer);
+    assertNull(destinationTables.get(key("SELECT 1")));
+  }
+
+  @Test
+  public void onlyReadsTheDestinationTablesOfSelects() {
+    TableReference table =
+        new TableReference().setProjectId("project").setDatasetId("_anon").setTableId("anon");
+    assertSame(table, BQDestinationTables.destinationOf(job("SELECT", table)));
+    assertNull(BQDestinationTables.destinationOf(job("INSERT", table)));
+    assertNull(BQDestinationTables.destinationOf(job("SCRIPT", table)));
+    assertNull(BQDestinationTables.destinationOf(new Job()));
+  }
+}
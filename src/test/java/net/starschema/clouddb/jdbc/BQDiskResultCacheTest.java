@@ -0,0 +1,213 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.api.client.util.Data;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableFieldSchema;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.starschema.clouddb.jdbc.BQDiskResultCache.Contents;
+import net.starschema.clouddb.jdbc.BQDiskResultCache.RowReader;
+import net.starschema.clouddb.jdbc.BQDiskResultCache.Writer;
+import net.starschema.clouddb.jdbc.BQResultCache.Key;
+import org.junit.Test;
+
+public class BQDiskResultCacheTest {
+
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  private final Path directory;
+
+  public BQDiskResultCacheTest() throws IOException {
+    directory = Files.createTempDirectory("bqjdbc-result-cache");
+  }
+
+  private static Key key(String querySql) {
+    return new Key("credentials", "project", null, "dataset", false, querySql, null, 0);
+  }
+
+  private static final TableSchema SCHEMA =
+      new TableSchema()
+          .setFields(
+              Collections.singletonList(new TableFieldSchema().setName("x").setType("STRING")));
+
+  private static List<TableRow> rows(int count) {
+    List<TableRow> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new TableRow().setF(Collections.singletonList(new TableCell().setV("row " + i))));
+    }
+    return rows;
+  }
+
+  private static List<Object> values(List<TableRow> rows) {
+    List<Object> values = new ArrayList<>();
+    for (TableRow row : rows) {
+      values.add(row.getF().get(0).getV());
+    }
+    return values;
+  }
+
+  private static Writer writer(BQDiskResultCache cache, String querySql, long ttlMillis) {
+    return cache.new Writer(key(querySql), ttlMillis, SCHEMA, null, "query", 42L, false);
+  }
+
+  private static void store(BQDiskResultCache cache, String querySql, List<TableRow> rows) {
+    Writer writer = writer(cache, querySql, ONE_HOUR);
+    assertTrue(writer.add(rows));
+    writer.finish();
+  }
+
+  private List<Path> files() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void readsSegmentsBackAPageAtATime() throws Exception {
+    BQDiskResultCache cache = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    Writer writer = writer(cache, "SELECT 1", ONE_HOUR);
+    assertTrue(writer.add(rows(BQDiskResultCache.PAGE_ROWS)));
+    assertTrue(writer.add(rows(10)));
+    writer.finish();
+
+    Contents contents = cache.get(key("SELECT  1"));
+    assertNotNull(contents);
+    assertEquals("x", contents.footer.schema.getFields().get(0).getName());
+    assertEquals("query", contents.footer.queryId);
+    assertEquals(42L, (long) contents.footer.totalBytesProcessed);
+    assertFalse(contents.footer.cacheHit);
+    RowReader reader = contents.rows();
+    assertEquals(values(rows(BQDiskResultCache.PAGE_ROWS)), values(reader.nextPage()));
+    assertEquals(values(rows(10)), values(reader.nextPage()));
+    assertNull(reader.nextPage());
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void keepsNullsAndNestedValues() throws Exception {
+    BQDiskResultCache cache = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    Object repeated = Arrays.asList(Collections.singletonMap("v", "1"), "2");
+    Object field = Collections.singletonMap("v", "a");
+    Object record = Collections.singletonMap("f", Collections.singletonList(field));
+    TableRow row =
+        new TableRow()
+            .setF(
+                Arrays.asList(
+                    new TableCell().setV(Data.nullOf(Object.class)),
+                    new TableCell().setV(repeated),
+                    new TableCell().setV(record)));
+    store(cache, "SELECT 1", Collections.singletonList(row));
+
+    TableRow read = cache.get(key("SELECT 1")).rows().nextPage().get(0);
+    assertTrue(Data.isNull(read.getF().get(0).getV()));
+    assertEquals(repeated, read.getF().get(1).getV());
+    assertEquals(record, read.getF().get(2).getV());
+  }
+
+  @Test
+  public void indexesTheSegmentsOfEarlierRuns() throws IOException {
+    store(new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR), "SELECT 1", rows(3));
+
+    BQDiskResultCache reopened = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    assertEquals(1, reopened.size());
+    assertEquals(Files.size(files().get(0)), reopened.getBytes());
+    assertNotNull(reopened.get(key("SELECT 1")));
+  }
+
+  @Test
+  public void onlyTheOwnerCanReadTheCache() throws IOException {
+    assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    Path cacheDirectory = directory.resolve("cache");
+    store(new BQDiskResultCache(cacheDirectory, ONE_HOUR, ONE_HOUR), "SELECT 1", rows(3));
+
+    assertEquals(
+        PosixFilePermissions.fromString("rwx------"),
+        Files.getPosixFilePermissions(cacheDirectory));
+    try (Stream<Path> segments = Files.list(cacheDirectory)) {
+      for (Path segment : segments.collect(Collectors.toList())) {
+        assertEquals(
+            PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(segment));
+      }
+    }
+  }
+
+  @Test
+  public void ignoresSegmentsWithoutAFooter() throws IOException {
+    store(new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR), "SELECT 1", rows(3));
+    Path segment = files().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(Files.size(segment) - 1);
+    }
+
+    BQDiskResultCache reopened = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    assertEquals(0, reopened.size());
+    assertNull(reopened.get(key("SELECT 1")));
+    assertTrue(files().isEmpty());
+  }
+
+  @Test
+  public void dropsSegmentsOnceTheirTtlIsUp() throws Exception {
+    BQDiskResultCache cache = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    Writer writer = writer(cache, "SELECT 1", 1);
+    assertTrue(writer.add(rows(3)));
+    writer.finish();
+    Thread.sleep(10);
+
+    assertNull(cache.get(key("SELECT 1")));
+    assertEquals(1, cache.getExpirations());
+    assertTrue(files().isEmpty());
+  }
+
+  @Test
+  public void abandonedWritesLeaveNothingBehind() throws IOException {
+    BQDiskResultCache cache = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    Writer writer = writer(cache, "SELECT 1", ONE_HOUR);
+    assertTrue(writer.add(rows(3)));
+    writer.abandon();
+    assertTrue(files().isEmpty());
+
+    BQDiskResultCache small = new BQDiskResultCache(directory, ONE_HOUR, 100);
+    assertFalse(writer(small, "SELECT 1", ONE_HOUR).add(rows(100)));
+    assertTrue(files().isEmpty());
+    assertEquals(0, small.size());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedSegmentsToStayWithinItsBudget() throws IOException {
+    BQDiskResultCache probe = new BQDiskResultCache(directory, ONE_HOUR, ONE_HOUR);
+    store(probe, "SELECT 0", rows(10));
+    long segmentBytes = probe.getBytes();
+    probe.clear();
+
+    BQDiskResultCache cache = new BQDiskResultCache(directory, 3 * segmentBytes, segmentBytes);
+    store(cache, "SELECT 1", rows(10));
+    store(cache, "SELECT 2", rows(10));
+    store(cache, "SELECT 3", rows(10));
+    assertNotNull(cache.get(key("SELECT 1")));
+
+    store(cache, "SELECT 4", rows(10));
+    assertEquals(1, cache.getEvictions());
+    assertEquals(3, files().size());
+    assertNull(cache.get(key("SELECT 2")));
+    assertNotNull(cache.get(key("SELECT 1")));
+  }
+}
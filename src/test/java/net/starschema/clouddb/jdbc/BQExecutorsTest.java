@@ -0,0 +1,32 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import org.junit.Test;
+
+public class BQExecutorsTest {
+
+  @Test
+  public void sharedExecutorUsesReusableDaemonThreads() throws Exception {
+    ExecutorService executor = BQExecutors.sharedQueryExecutor();
+    assertSame(executor, BQExecutors.sharedQueryExecutor());
+    Thread thread = executor.submit(Thread::currentThread).get();
+    assertTrue(thread.isDaemon());
+    assertTrue(thread.getName().startsWith("bqjdbc-query-"));
+  }
+
+  @Test
+  public void virtualThreadsOnlyWhereTheJvmHasThem() {
+    boolean jvmHasVirtualThreads;
+    try {
+      Thread.class.getMethod("ofVirtual");
+      jvmHasVirtualThreads = true;
+    } catch (NoSuchMethodException e) {
+      jvmHasVirtualThreads = false;
+    }
+    assertEquals(jvmHasVirtualThreads, BQExecutors.virtualThreadExecutor() != null);
+  }
+}
@@ -0,0 +1,179 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.bigquery.model.GetQueryResultsResponse;
+import com.google.api.services.bigquery.model.JobReference;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class BQJobWaiterTest {
+
+  private static final JobReference JOB = new JobReference().setJobId("job");
+
+  private static GetQueryResultsResponse complete(boolean complete) {
+    return new GetQueryResultsResponse().setJobComplete(complete).setJobReference(JOB);
+  }
+
+  @Test
+  public void returnsAsSoonAsTheJobIsComplete() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    AtomicInteger polls = new AtomicInteger();
+    GetQueryResultsResponse done = complete(true);
+    GetQueryResultsResponse result =
+        waiter.waitForCompletion(
+            JOB,
+            (ref, timeout) -> polls.incrementAndGet() < 3 ? complete(false) : done,
+            System.currentTimeMillis() + 10_000,
+            3);
+    assertSame(done, result);
+    assertEquals(3, polls.get());
+  }
+
+  @Test
+  public void neverAsksForLongerThanTheRemainingTime() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(60_000, 1, 10, 2.0, 0.0);
+    GetQueryResultsResponse result =
+        waiter.waitForCompletion(
+            JOB,
+            (ref, timeout) -> {
+              assertTrue("poll timeout " + timeout, timeout <= 200);
+              return complete(false);
+            },
+            System.currentTimeMillis() + 200,
+            3);
+    assertNull(result);
+  }
+
+  @Test
+  public void retriesFailedPollsThenGivesUp() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    AtomicInteger polls = new AtomicInteger();
+    assertThrows(
+        IOException.class,
+        () ->
+            waiter.waitForCompletion(
+                JOB,
+                (ref, timeout) -> {
+                  polls.incrementAndGet();
+                  throw new IOException("boom");
+                },
+                System.currentTimeMillis() + 10_000,
+                3));
+    assertEquals(4, polls.get());
+  }
+
+  @Test
+  public void responseWithoutStateCountsAsFailure() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    AtomicInteger polls = new AtomicInteger();
+    GetQueryResultsResponse result =
+        waiter.waitForCompletion(
+            JOB,
+            (ref, timeout) ->
+                polls.incrementAndGet() == 1 ? new GetQueryResultsResponse() : complete(true),
+            System.currentTimeMillis() + 10_000,
+            1);
+    assertEquals(Boolean.TRUE, result.getJobComplete());
+    assertEquals(2, polls.get());
+  }
+
+  @Test
+  public void asyncWaitCompletesWithoutBlocking() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    AtomicInteger polls = new AtomicInteger();
+    GetQueryResultsResponse done = complete(true);
+    CompletableFuture<GetQueryResultsResponse> result =
+        waiter.waitForCompletionAsync(
+            JOB,
+            (ref, timeout) -> {
+              assertTrue(timeout <= BQJobWaiter.ASYNC_POLL_TIMEOUT_MILLIS);
+              return polls.incrementAndGet() < 3 ? complete(false) : done;
+            },
+            System.currentTimeMillis() + 10_000,
+            3,
+            BQExecutors.sharedQueryExecutor(),
+            BQExecutors.sharedScheduler());
+    assertSame(done, result.get(10, TimeUnit.SECONDS));
+    assertEquals(3, polls.get());
+  }
+
+  @Test
+  public void asyncWaitGivesUpAtTheDeadline() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    CompletableFuture<GetQueryResultsResponse> result =
+        waiter.waitForCompletionAsync(
+            JOB,
+            (ref, timeout) -> complete(false),
+            System.currentTimeMillis() + 100,
+            3,
+            BQExecutors.sharedQueryExecutor(),
+            BQExecutors.sharedScheduler());
+    assertNull(result.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void asyncWaitReportsRepeatedFailures() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    CompletableFuture<GetQueryResultsResponse> result =
+        waiter.waitForCompletionAsync(
+            JOB,
+            (ref, timeout) -> {
+              throw new IOException("boom");
+            },
+            System.currentTimeMillis() + 10_000,
+            2,
+            BQExecutors.sharedQueryExecutor(),
+            BQExecutors.sharedScheduler());
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof IOException);
+  }
+
+  @Test
+  public void cancellingAnAsyncWaitStopsPolling() throws Exception {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 1, 10, 2.0, 0.0);
+    AtomicInteger polls = new AtomicInteger();
+    CompletableFuture<GetQueryResultsResponse> result =
+        waiter.waitForCompletionAsync(
+            JOB,
+            (ref, timeout) -> {
+              polls.incrementAndGet();
+              return complete(false);
+            },
+            System.currentTimeMillis() + 10_000,
+            3,
+            BQExecutors.sharedQueryExecutor(),
+            BQExecutors.sharedScheduler());
+    Thread.sleep(50);
+    assertTrue(result.cancel(false));
+    Thread.sleep(50);
+    int pollsWhenCancelled = polls.get();
+    Thread.sleep(100);
+    assertEquals(pollsWhenCancelled, polls.get());
+  }
+
+  @Test
+  public void jitterStaysWithinBounds() {
+    BQJobWaiter waiter = new BQJobWaiter(1000, 100, 1000, 2.0, 0.5);
+    for (int i = 0; i < 1000; i++) {
+      long jittered = waiter.jittered(100);
+      assertTrue("jittered " + jittered, jittered >= 50 && jittered <= 150);
+    }
+  }
+
+  @Test
+  public void rejectsBadConfiguration() {
+    assertThrows(IllegalArgumentException.class, () -> new BQJobWaiter(0, 1, 10, 2.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new BQJobWaiter(10, 20, 10, 2.0, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> new BQJobWaiter(10, 1, 10, 0.5, 0.0));
+  }
+}
@@ -0,0 +1,68 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BQLimitRewriterTest {
+
+  private static void assertUnchanged(String sql) {
+    assertEquals(sql, BQLimitRewriter.withLimit(sql, 10));
+  }
+
+  @Test
+  public void addsALimit() {
+    assertEquals("SELECT a FROM t\nLIMIT 10", BQLimitRewriter.withLimit("SELECT a FROM t", 10));
+    assertEquals(
+        "WITH x AS (SELECT 1 LIMIT 50) SELECT * FROM x\nLIMIT 10 -- done\n;",
+        BQLimitRewriter.withLimit("WITH x AS (SELECT 1 LIMIT 50) SELECT * FROM x -- done\n;", 10));
+    assertEquals(
+        "SELECT * FROM (SELECT 1)\nLIMIT 10",
+        BQLimitRewriter.withLimit("SELECT * FROM (SELECT 1)", 10));
+  }
+
+  @Test
+  public void tightensALooserLimit() {
+    assertEquals(
+        "select a from t limit 10", BQLimitRewriter.withLimit("select a from t limit 100", 10));
+    assertEquals(
+        "SELECT a FROM t LIMIT 10 OFFSET 5",
+        BQLimitRewriter.withLimit("SELECT a FROM t LIMIT 100 OFFSET 5", 10));
+  }
+
+  @Test
+  public void leavesTighterLimitsAlone() {
+    assertUnchanged("SELECT a FROM t LIMIT 5");
+    assertUnchanged("SELECT a FROM t LIMIT ?");
+  }
+
+  @Test
+  public void leavesEverythingButASingleSelectAlone() {
+    assertUnchanged("INSERT INTO t SELECT 1");
+    assertUnchanged("DELETE FROM t WHERE true");
+    assertUnchanged("CREATE TABLE t AS SELECT 1");
+    assertUnchanged("SELECT 1; SELECT 2");
+    assertUnchanged("(SELECT 1) UNION ALL (SELECT 2)");
+    assertUnchanged("SELECT (1");
+  }
+
+  @Test
+  public void onlySingleSelectsAreQueries() {
+    assertTrue(BQLimitRewriter.isQuery("SELECT 1"));
+    assertTrue(BQLimitRewriter.isQuery(" -- first\nwith x AS (SELECT 1) SELECT * FROM x;"));
+    assertFalse(BQLimitRewriter.isQuery("INSERT INTO t SELECT 1"));
+    assertFalse(BQLimitRewriter.isQuery("MERGE t USING s ON true WHEN MATCHED THEN DELETE"));
+    assertFalse(BQLimitRewriter.isQuery("CREATE TABLE t AS SELECT 1"));
+    assertFalse(BQLimitRewriter.isQuery("SELECT 1; DELETE FROM t WHERE true"));
+    assertFalse(BQLimitRewriter.isQuery(""));
+  }
+
+  @Test
+  public void ignoresLiteralsAndComments() {
+    assertEquals(
+        "SELECT 'LIMIT 1', `limit` /* LIMIT 2 */ FROM t\nLIMIT 10",
+        BQLimitRewriter.withLimit("SELECT 'LIMIT 1', `limit` /* LIMIT 2 */ FROM t", 10));
+  }
+}
@@ -0,0 +1,137 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
+import net.starschema.clouddb.jdbc.BQQueryDispatcher.Turn;
+import org.junit.Test;
+
+public class BQQueryDispatcherTest {
+
+  private final BQQueryDispatcher dispatcher = new BQQueryDispatcher(10, 2, 1);
+
+  private Turn acquire(QueryPriority priority) {
+    return dispatcher.acquire(priority, BQQueryDispatcher.DEFAULT_TENANT);
+  }
+
+  @Test
+  public void eachLaneHasItsOwnCap() {
+    Turn interactive1 = acquire(QueryPriority.INTERACTIVE);
+    Turn interactive2 = acquire(QueryPriority.INTERACTIVE);
+    Turn interactive3 = acquire(QueryPriority.INTERACTIVE);
+    assertTrue(interactive1.isDone());
+    assertTrue(interactive2.isDone());
+    assertFalse(interactive3.isDone());
+
+    dispatcher.relinquish(interactive1);
+    assertTrue(interactive3.isDone());
+    assertEquals(2, dispatcher.getRunning(QueryPriority.INTERACTIVE));
+
+    Turn batch1 = acquire(QueryPriority.BATCH);
+    Turn batch2 = acquire(QueryPriority.BATCH);
+    assertTrue(batch1.isDone());
+    assertFalse(batch2.isDone());
+    dispatcher.relinquish(batch1);
+    assertTrue(batch2.isDone());
+  }
+
+  @Test
+  public void batchQueriesWaitForWaitingInteractiveOnes() {
+    Turn interactive1 = acquire(QueryPriority.INTERACTIVE);
+    acquire(QueryPriority.INTERACTIVE);
+    Turn interactive3 = acquire(QueryPriority.INTERACTIVE);
+    Turn batch = acquire(QueryPriority.BATCH);
+    assertFalse(batch.isDone());
+    assertEquals(1, dispatcher.getQueueDepth(QueryPriority.BATCH));
+
+    dispatcher.relinquish(interactive1);
+    assertTrue(interactive3.isDone());
+    assertTrue(batch.isDone());
+  }
+
+  @Test
+  public void cancelledTurnsGiveUpTheirPlace() {
+    Turn interactive1 = acquire(QueryPriority.INTERACTIVE);
+    acquire(QueryPriority.INTERACTIVE);
+    Turn interactive3 = acquire(QueryPriority.INTERACTIVE);
+    Turn batch = acquire(QueryPriority.BATCH);
+
+    dispatcher.relinquish(interactive3);
+    assertTrue(interactive3.isCancelled());
+    assertEquals(0, dispatcher.getQueueDepth(QueryPriority.INTERACTIVE));
+
+    dispatcher.relinquish(interactive1);
+    assertTrue(batch.isDone());
+    assertEquals(1, dispatcher.getRunning(QueryPriority.INTERACTIVE));
+  }
+
+  @Test
+  public void raisingACapStartsWaitingQueries() {
+    acquire(QueryPriority.BATCH);
+    Turn batch = acquire(QueryPriority.BATCH);
+    assertFalse(batch.isDone());
+    dispatcher.setMaxRunning(QueryPriority.BATCH, 2);
+    assertTrue(batch.isDone());
+    assertThrows(
+        IllegalArgumentException.class, () -> dispatcher.setMaxRunning(QueryPriority.BATCH, 0));
+  }
+
+  @Test
+  public void noMoreThanMaxInFlightQueriesRunAtOnce() {
+    BQQueryDispatcher dispatcher = new BQQueryDispatcher(2, 2, 2);
+    Turn interactive = dispatcher.acquire(QueryPriority.INTERACTIVE, "a");
+    Turn batch1 = dispatcher.acquire(QueryPriority.BATCH, "a");
+    Turn batch2 = dispatcher.acquire(QueryPriority.BATCH, "b");
+    assertTrue(interactive.isDone());
+    assertTrue(batch1.isDone());
+    assertFalse(batch2.isDone());
+    assertEquals(2, dispatcher.getInFlight());
+    assertEquals(1, dispatcher.getQueueDepth());
+    assertEquals(1, dispatcher.getQueueDepth("b"));
+
+    dispatcher.relinquish(interactive);
+    assertTrue(batch2.isDone());
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+
+  @Test
+  public void tenantsShareSlotsByWeight() {
+    BQQueryDispatcher dispatcher = new BQQueryDispatcher(3, 3, 1);
+    dispatcher.setWeight("big", 2);
+    Turn noisy1 = dispatcher.acquire(QueryPriority.INTERACTIVE, "noisy");
+    Turn noisy2 = dispatcher.acquire(QueryPriority.INTERACTIVE, "noisy");
+    dispatcher.acquire(QueryPriority.INTERACTIVE, "noisy");
+    Turn noisy4 = dispatcher.acquire(QueryPriority.INTERACTIVE, "noisy");
+    Turn big1 = dispatcher.acquire(QueryPriority.INTERACTIVE, "big");
+    Turn big2 = dispatcher.acquire(QueryPriority.INTERACTIVE, "big");
+    assertFalse(noisy4.isDone());
+
+    // "noisy" runs all three queries, so "big" goes first despite asking later
+    dispatcher.relinquish(noisy1);
+    assertTrue(big1.isDone());
+    assertFalse(noisy4.isDone());
+
+    // both run one query now, but "big" weighs twice as much
+    dispatcher.relinquish(noisy2);
+    assertTrue(big2.isDone());
+    assertFalse(noisy4.isDone());
+    assertEquals(1, dispatcher.getQueueDepth("noisy"));
+    assertEquals(0, dispatcher.getQueueDepth("big"));
+  }
+
+  @Test
+  public void recordsHowLongQueriesWaited() throws InterruptedException {
+    Turn first = acquire(QueryPriority.BATCH);
+    Turn second = acquire(QueryPriority.BATCH);
+    assertEquals(1, dispatcher.getStartedQueries());
+    Thread.sleep(20);
+    dispatcher.relinquish(first);
+    assertTrue(second.isDone());
+    assertEquals(2, dispatcher.getStartedQueries());
+    assertTrue(dispatcher.getMaxWaitMillis() >= 20);
+    assertTrue(dispatcher.getTotalWaitMillis() >= dispatcher.getMaxWaitMillis());
+  }
+}
@@ -0,0 +1,106 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.starschema.clouddb.jdbc.BQResultCache.Entry;
+import net.starschema.clouddb.jdbc.BQResultCache.Key;
+import net.starschema.clouddb.jdbc.BQResultCache.Recorder;
+import org.junit.Test;
+
+public class BQResultCacheTest {
+
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  private static Key key(String querySql) {
+    return new Key("credentials", "project", null, "dataset", false, querySql, null, 0);
+  }
+
+  private static List<TableRow> rows(int count) {
+    List<TableRow> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new TableRow().setF(Collections.singletonList(new TableCell().setV("row " + i))));
+    }
+    return rows;
+  }
+
+  private static void cache(BQResultCache cache, Key key, long ttlMillis, List<TableRow> rows) {
+    Recorder recorder =
+        cache.new Recorder(key, ttlMillis, new TableSchema(), null, null, null, null);
+    if (recorder.add(rows)) {
+      recorder.finish();
+    }
+  }
+
+  @Test
+  public void keysIgnoreTheLayoutOfTheQuery() {
+    assertEquals(key("SELECT 1"), key("  SELECT\n   1 ;"));
+    assertEquals(key("SELECT 1").hashCode(), key("  SELECT\n   1 ;").hashCode());
+    assertNotEquals(key("SELECT 'a  b'"), key("SELECT 'a b'"));
+    assertNotEquals(
+        key("SELECT 1"), new Key("other", "project", null, "dataset", false, "SELECT 1", null, 0));
+  }
+
+  @Test
+  public void answersFromCachedRows() {
+    BQResultCache cache = new BQResultCache(1024 * 1024, 1024 * 1024);
+    assertNull(cache.get(key("SELECT 1")));
+
+    List<TableRow> rows = rows(3);
+    cache(cache, key("SELECT 1"), ONE_HOUR, rows);
+    Entry entry = cache.get(key("SELECT  1"));
+    assertNotNull(entry);
+    assertEquals(rows, entry.rows);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void dropsResultsOnceTheirTtlIsUp() throws InterruptedException {
+    BQResultCache cache = new BQResultCache(1024 * 1024, 1024 * 1024);
+    cache(cache, key("SELECT 1"), 1, rows(1));
+    Thread.sleep(10);
+    assertNull(cache.get(key("SELECT 1")));
+    assertEquals(1, cache.getExpirations());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedResultsToStayWithinItsBudget() {
+    long resultBytes = BQResultCache.estimateBytes(rows(10));
+    BQResultCache cache = new BQResultCache(3 * resultBytes, resultBytes);
+    cache(cache, key("SELECT 1"), ONE_HOUR, rows(10));
+    cache(cache, key("SELECT 2"), ONE_HOUR, rows(10));
+    cache(cache, key("SELECT 3"), ONE_HOUR, rows(10));
+    assertNotNull(cache.get(key("SELECT 1")));
+
+    cache(cache, key("SELECT 4"), ONE_HOUR, rows(10));
+    assertEquals(1, cache.getEvictions());
+    assertEquals(3 * resultBytes, cache.getBytes());
+    assertNull(cache.get(key("SELECT 2")));
+    assertNotNull(cache.get(key("SELECT 1")));
+    assertNotNull(cache.get(key("SELECT 4")));
+  }
+
+  @Test
+  public void skipsResultsTooBigToCache() {
+    BQResultCache cache = new BQResultCache(1024 * 1024, BQResultCache.estimateBytes(rows(10)));
+    Recorder recorder =
+        cache.new Recorder(key("SELECT 1"), ONE_HOUR, new TableSchema(), null, null, null, null);
+    assertTrue(recorder.add(rows(5)));
+    assertFalse(recorder.add(rows(10)));
+    assertEquals(0, cache.size());
+  }
+}
@@ -24,6 +24,7 @@ import com.google.api.client.testing.http.MockHttpTransport;
 import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -715,6 +716,27 @@ public class BQScrollableResultSetFunctionTest extends CommonTestsForResultSets
     }
   }
 
+  @Test
+  public void testStatelessPreparedQuery() throws SQLException, IOException {
+    closeConnection();
+    try (Connection statelessConnection =
+        connect("&useLegacySql=true&jobcreationmode=JOB_CREATION_OPTIONAL")) {
+      StatelessQuery.assumeStatelessQueriesEnabled(statelessConnection.getCatalog());
+      try (PreparedStatement stmt =
+          statelessConnection.prepareStatement(
+              StatelessQuery.exampleQuery(),
+              ResultSet.TYPE_SCROLL_INSENSITIVE,
+              ResultSet.CONCUR_READ_ONLY)) {
+        final ResultSet result = stmt.executeQuery();
+        final String[][] rows = BQSupportMethods.GetQueryResult(result);
+        Assertions.assertThat(rows).isEqualTo(StatelessQuery.exampleValues());
+
+        final BQScrollableResultSet bqResultSet = (BQScrollableResultSet) result;
+        Assertions.assertThat(bqResultSet.getJobId()).isNull();
+      }
+    }
+  }
+
   @Override
   protected Statement createStatementForCommonTests(Connection connection) throws SQLException {
     return connection.createStatement(
@@ -0,0 +1,117 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.starschema.clouddb.jdbc.BQConnection.QueryPriority;
+import net.starschema.clouddb.jdbc.BQSingleFlight.Flight;
+import net.starschema.clouddb.jdbc.BQSingleFlight.Key;
+import org.junit.Test;
+
+public class BQSingleFlightTest {
+
+  private final BQSingleFlight singleFlight = new BQSingleFlight();
+
+  private static Key key(String querySql) {
+    return new Key(
+        "credentials",
+        "project",
+        null,
+        "dataset",
+        false,
+        querySql,
+        null,
+        null,
+        0,
+        QueryPriority.INTERACTIVE);
+  }
+
+  private static BQSingleFlight.Query failing(String message) {
+    return () -> {
+      throw new BQSQLException(message);
+    };
+  }
+
+  @Test
+  public void identicalQueriesBoardTheSameFlight() {
+    Flight leader = singleFlight.board(new Flight(key("SELECT 1")));
+    assertSame(leader, singleFlight.board(new Flight(key("SELECT 1"))));
+    assertNotSame(leader, singleFlight.board(new Flight(key("SELECT 2"))));
+    assertEquals(2, singleFlight.getFlights());
+  }
+
+  @Test
+  public void followersShareTheLeadersFailure() {
+    Flight leader = singleFlight.board(new Flight(key("SELECT 1")));
+    Flight followed = singleFlight.board(new Flight(key("SELECT 1")));
+
+    SQLException failure =
+        assertThrows(SQLException.class, () -> leader.lead(null, failing("boom"), () -> false));
+    assertEquals("boom", failure.getMessage());
+    ExecutionException shared = assertThrows(ExecutionException.class, followed.landing::get);
+    assertSame(failure, shared.getCause());
+    assertEquals(0, singleFlight.getFlights());
+  }
+
+  @Test
+  public void followersOfACancelledLeaderRunTheQueryThemselves() throws Exception {
+    Flight leader = singleFlight.board(new Flight(key("SELECT 1")));
+    Flight followed = singleFlight.board(new Flight(key("SELECT 1")));
+
+    assertThrows(SQLException.class, () -> leader.lead(null, failing("cancelled"), () -> true));
+    assertFalse(followed.landing.get());
+  }
+
+  @Test
+  public void queriesAfterTheLandingTakeOffAgain() {
+    Flight first = singleFlight.board(new Flight(key("SELECT 1")));
+    assertThrows(SQLException.class, () -> first.lead(null, failing("boom"), () -> false));
+
+    Flight own = new Flight(key("SELECT 1"));
+    assertSame(own, singleFlight.board(own));
+  }
+
+  @Test
+  public void concurrentIdenticalQueriesShareOneJob() throws Exception {
+    String url = "&singleFlight=true&queryCache=false";
+    String query = "SELECT SUM(x) AS total FROM UNNEST(GENERATE_ARRAY(1, 1000000)) AS x";
+    BQConnection first = ConnectionFromResources.connect("installedaccount1.properties", url);
+    BQConnection second = ConnectionFromResources.connect("installedaccount1.properties", url);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      CyclicBarrier start = new CyclicBarrier(2);
+      Future<String> firstJob = executor.submit(() -> runAfter(start, first, query));
+      Future<String> secondJob = executor.submit(() -> runAfter(start, second, query));
+      assertEquals(firstJob.get(), secondJob.get());
+    } finally {
+      executor.shutdown();
+      first.close();
+      second.close();
+    }
+  }
+
+  private static String runAfter(CyclicBarrier start, BQConnection connection, String query)
+      throws Exception {
+    BQStatement statement = (BQStatement) connection.createStatement();
+    start.await();
+    ResultSet resultSet = statement.executeQuery(query);
+    assertTrue(resultSet instanceof BQSharedResultSet);
+    assertTrue(resultSet.next());
+    assertEquals(500000500000L, resultSet.getLong(1));
+    assertFalse(resultSet.next());
+    String jobId = ((BQForwardOnlyResultSet) resultSet).getJobId();
+    resultSet.close();
+    return jobId;
+  }
+}
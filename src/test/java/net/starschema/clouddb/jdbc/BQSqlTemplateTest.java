@@ -0,0 +1,50 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BQSqlTemplateTest {
+
+  @Test
+  public void rendersParametersInOrder() {
+    BQSqlTemplate template = BQSqlTemplate.parse("SELECT ? FROM t WHERE a = ? AND b = ?");
+    assertEquals(3, template.getParameterCount());
+    assertEquals(
+        "SELECT 1 FROM t WHERE a = 'x' AND b = ?",
+        template.render(new String[] {"1", "'x'", null}));
+  }
+
+  @Test
+  public void parametersAtTheEdges() {
+    BQSqlTemplate template = BQSqlTemplate.parse("?,?");
+    assertEquals(2, template.getParameterCount());
+    assertEquals("a,b", template.render(new String[] {"a", "b"}));
+  }
+
+  @Test
+  public void ignoresMarkersInLiteralsAndComments() {
+    String sql =
+        "SELECT '?', \"it\\'s?\", `col?`, '''multi ' ? line''' -- comment?\n"
+            + "FROM t # another?\n"
+            + "WHERE /* block ? */ a = ?";
+    BQSqlTemplate template = BQSqlTemplate.parse(sql);
+    assertEquals(1, template.getParameterCount());
+    assertEquals(sql.substring(0, sql.length() - 1) + "42", template.render(new String[] {"42"}));
+  }
+
+  @Test
+  public void unterminatedLiteralHasNoParameters() {
+    assertEquals(0, BQSqlTemplate.parse("SELECT 'abc ?").getParameterCount());
+    assertEquals("SELECT 'abc ?", BQSqlTemplate.parse("SELECT 'abc ?").render(new String[0]));
+  }
+
+  @Test
+  public void normalizesLayoutOutsideLiterals() {
+    assertEquals(
+        "SELECT a, 'x  y' FROM t WHERE b = 1",
+        BQSqlTemplate.normalize("\n  SELECT a,\t'x  y'\n  FROM   t\nWHERE b = 1 ;\n"));
+    assertEquals(
+        "SELECT a -- comment\n FROM t", BQSqlTemplate.normalize("SELECT a -- comment\n    FROM t"));
+  }
+}
@@ -0,0 +1,155 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import com.google.api.services.bigquery.model.TableReference;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.starschema.clouddb.jdbc.BQTableFreshness.Check;
+import net.starschema.clouddb.jdbc.BQTableFreshness.Sources;
+import org.junit.Test;
+
+public class BQTableFreshnessTest {
+
+  private static final long ONE_HOUR = 60 * 60 * 1000;
+
+  /** When each table last changed, by table ID; tables that aren't here can't be looked up. */
+  private final Map<String, Long> lastModified = new HashMap<>();
+
+  /** The tables of each lookup. */
+  private final List<List<String>> lookups = new ArrayList<>();
+
+  private final BQTableFreshness freshness =
+      new BQTableFreshness(
+          (bigquery, checks) -> {
+            List<String> tables = new ArrayList<>();
+            for (Check check : checks) {
+              tables.add(check.table.getTableId());
+              Long time = lastModified.get(check.table.getTableId());
+              if (time != null) {
+                check.lastModified.complete(time);
+              }
+            }
+            lookups.add(tables);
+          });
+
+  private static TableReference table(String tableId) {
+    return new TableReference().setProjectId("project").setDatasetId("dataset").setTableId(tableId);
+  }
+
+  private static Sources readAt(long millis, String... tableIds) {
+    List<TableReference> tables = new ArrayList<>();
+    for (String tableId : tableIds) {
+      tables.add(table(tableId));
+    }
+    return new Sources(tables, millis);
+  }
+
+  private boolean unchanged(Sources sources, long checkIntervalMillis) throws SQLException {
+    return freshness.unchangedSince(null, "credentials", sources, checkIntervalMillis);
+  }
+
+  @Test
+  public void resultsOfUnchangedTablesAreFresh() throws SQLException {
+    lastModified.put("a", 100L);
+    lastModified.put("b", 200L);
+    assertTrue(unchanged(readAt(300, "a", "b"), ONE_HOUR));
+    assertTrue(unchanged(readAt(300), ONE_HOUR));
+  }
+
+  @Test
+  public void resultsOfAChangedTableAreStale() throws SQLException {
+    lastModified.put("a", 100L);
+    lastModified.put("b", 400L);
+    assertFalse(unchanged(readAt(300, "a", "b"), ONE_HOUR));
+  }
+
+  @Test
+  public void checksTheTablesOfAResultInOneLookup() throws SQLException {
+    lastModified.put("a", 100L);
+    lastModified.put("b", 100L);
+    lastModified.put("c", 100L);
+    unchanged(readAt(300, "a", "b", "c"), ONE_HOUR);
+    assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")), lookups);
+  }
+
+  @Test
+  public void checksEachTableAtMostOncePerInterval() throws SQLException {
+    lastModified.put("a", 100L);
+    lastModified.put("b", 100L);
+    assertTrue(unchanged(readAt(300, "a"), ONE_HOUR));
+    lastModified.put("a", 400L);
+    assertTrue(unchanged(readAt(300, "a", "b"), ONE_HOUR));
+    assertEquals(
+        Arrays.asList(Collections.singletonList("a"), Collections.singletonList("b")), lookups);
+
+    assertFalse(unchanged(readAt(300, "a"), 0));
+    assertEquals(3, lookups.size());
+  }
+
+  @Test
+  public void forgetsChecksOnceTheirIntervalIsOver() throws Exception {
+    lastModified.put("a", 100L);
+    lastModified.put("b", 100L);
+    unchanged(readAt(300, "a"), 10);
+    Thread.sleep(20);
+    unchanged(readAt(300, "b"), 10);
+    assertEquals(1, freshness.size());
+  }
+
+  @Test
+  public void tablesWeCannotCheckCountAsChanged() throws SQLException {
+    assertFalse(unchanged(readAt(300, "gone"), ONE_HOUR));
+    assertFalse(unchanged(readAt(300, "gone"), ONE_HOUR));
+    // failed checks are not held on to for the interval
+    assertEquals(2, lookups.size());
+  }
+
+  @Test
+  public void scriptsHaveUnknownSources() {
+    Job script =
+        new Job()
+            .setStatistics(
+                new JobStatistics()
+                    .setStartTime(300L)
+                    .setQuery(new JobStatistics2().setStatementType("SCRIPT")));
+    assertSame(Sources.UNKNOWN_SOURCES, Sources.of(script));
+
+    Job select =
+        new Job()
+            .setStatistics(
+                new JobStatistics()
+                    .setStartTime(300L)
+                    .setQuery(new JobStatistics2().setStatementType("SELECT")));
+    Sources sources = Sources.of(select);
+    assertTrue(sources.tables.isEmpty());
+    assertEquals(300, sources.readAtMillis);
+  }
+
+  @Test
+  public void statementsThatListNoTablesHaveUnknownSources() {
+    Job ddl =
+        new Job()
+            .setStatistics(
+                new JobStatistics()
+                    .setStartTime(300L)
+                    .setQuery(new JobStatistics2().setStatementType("CREATE_VIEW")));
+    assertSame(Sources.UNKNOWN_SOURCES, Sources.of(ddl));
+
+    Job untyped =
+        new Job()
+            .setStatistics(new JobStatistics().setStartTime(300L).setQuery(new JobStatistics2()));
+    assertSame(Sources.UNKNOWN_SOURCES, Sources.of(untyped));
+  }
+}
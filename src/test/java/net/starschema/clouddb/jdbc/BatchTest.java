@@ -0,0 +1,73 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.QueryParameterType;
+import com.google.api.services.bigquery.model.QueryParameterValue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchTest {
+
+  @Test
+  public void joinsStatementsIntoOneScript() {
+    assertEquals(
+        "INSERT INTO t VALUES (1);\nDELETE FROM t WHERE true;\n",
+        BQStatementRoot.joinScript(
+            Arrays.asList("INSERT INTO t VALUES (1)", "  DELETE FROM t WHERE true ; ;\n")));
+  }
+
+  @Test
+  public void packsAsManyStatementsAsFitInAScript() {
+    List<String> statements = Arrays.asList("aaaa", "bbbb", "cccc", "dddd", "eeee");
+    // Each statement takes 6 characters once terminated.
+    assertEquals(
+        Arrays.asList(
+            Arrays.asList("aaaa", "bbbb"), Arrays.asList("cccc", "dddd"), Arrays.asList("eeee")),
+        BQStatementRoot.packScripts(statements, 12));
+    assertEquals(
+        Collections.singletonList(statements),
+        BQStatementRoot.packScripts(statements, BQStatementRoot.MAX_SCRIPT_LENGTH));
+  }
+
+  @Test
+  public void oversizedStatementsGetAScriptOfTheirOwn() {
+    assertEquals(
+        Arrays.asList(Arrays.asList("a"), Arrays.asList("bbbbbbbbbb"), Arrays.asList("c")),
+        BQStatementRoot.packScripts(Arrays.asList("a", "bbbbbbbbbb", "c"), 5));
+  }
+
+  private static QueryParameter parameter(String type, String value) {
+    return new QueryParameter()
+        .setParameterType(new QueryParameterType().setType(type))
+        .setParameterValue(new QueryParameterValue().setValue(value));
+  }
+
+  @Test
+  public void writesPreparedStatementParametersAsLiterals() {
+    assertEquals("42", BQPreparedStatement.standardSqlLiteral(parameter("INT64", "42")));
+    assertEquals("true", BQPreparedStatement.standardSqlLiteral(parameter("BOOL", "true")));
+    assertEquals(
+        "'it\\'s a \\\\ \\n'",
+        BQPreparedStatement.standardSqlLiteral(parameter("STRING", "it's a \\ \n")));
+    assertEquals(
+        "CAST('1.5' AS NUMERIC)",
+        BQPreparedStatement.standardSqlLiteral(parameter("NUMERIC", "1.5")));
+    assertEquals(
+        "CAST('2020-01-01 00:00:00.123456' AS TIMESTAMP)",
+        BQPreparedStatement.standardSqlLiteral(
+            parameter("TIMESTAMP", "2020-01-01 00:00:00.123456")));
+    assertEquals(
+        "CAST(NULL AS DATE)", BQPreparedStatement.standardSqlLiteral(parameter("DATE", null)));
+  }
+
+  @Test
+  public void clampsUpdateCountsToAnInt() {
+    assertEquals(0, BQStatementRoot.toUpdateCount(null));
+    assertEquals(3, BQStatementRoot.toUpdateCount(3L));
+    assertEquals(Integer.MAX_VALUE, BQStatementRoot.toUpdateCount(1L << 40));
+  }
+}
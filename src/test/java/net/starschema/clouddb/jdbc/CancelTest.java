@@ -3,6 +3,7 @@ package net.starschema.clouddb.jdbc;
 import static junit.framework.Assert.*;
 import static org.junit.Assert.assertThrows;
 
+import com.google.api.services.bigquery.model.GetQueryResultsResponse;
 import com.google.api.services.bigquery.model.Job;
 import com.google.api.services.bigquery.model.JobReference;
 import com.google.api.services.bigquery.model.JobStatistics;
@@ -140,6 +141,23 @@ public class CancelTest {
             .getMessage());
   }
 
+  @Test
+  public void syncQueryCancelDoesNotWaitForTheSyncResponse()
+      throws SQLException, InterruptedException, IOException {
+    BQConnection bq = conn();
+    TestableBQStatement stmt = new TestableBQStatement(bq.getProjectId(), bq);
+    stmt.setTestPoint();
+    Thread backgroundThread = getAndRunBackgroundQuery(stmt);
+    stmt.waitForTestPoint();
+    long start = System.currentTimeMillis();
+    stmt.cancel();
+    long cancelMillis = System.currentTimeMillis() - start;
+    Assert.assertTrue(
+        "cancel took " + cancelMillis + "ms", cancelMillis < BQStatement.SYNC_TIMEOUT_MILLIS);
+    backgroundThread.join();
+    Assert.assertNotNull(expectedSqlException.get());
+  }
+
   @Test
   public void noCancelOnCloseAfterSyncQueryCompletion() throws SQLException, IOException {
     BQConnection bq = conn();
@@ -188,21 +206,19 @@ public class CancelTest {
   public void handlesNullResultsWhilePollingJob()
       throws SQLException, IOException, InterruptedException {
     // We want to check a few possibilites if BQ kills the query job prematurely due to reservation
-    // quotas. We're not guaranteed a complete job object when we're polling for completion in the
+    // quotas. We're not guaranteed a complete response when we're polling for completion in the
     // `BQStatement.runSync` loop.
-    Job[] jobs =
-        new Job[] {
-          new Job(),
-          new Job().setStatus(new JobStatus()),
-          new Job()
-              .setStatus(new JobStatus().setState("PENDING"))
-              .setStatistics(new JobStatistics())
+    GetQueryResultsResponse[] pollResponses =
+        new GetQueryResultsResponse[] {
+          null,
+          new GetQueryResultsResponse(),
+          new GetQueryResultsResponse().setJobReference(new JobReference().setJobId("Job Id"))
         };
     BQConnection bq = conn();
-    for (Job j : jobs) {
+    for (GetQueryResultsResponse r : pollResponses) {
       final TestableBQStatementWithBadPollJobs stmt1 =
           new TestableBQStatementWithBadPollJobs(bq.getProjectId(), bq);
-      stmt1.pollJob = j;
+      stmt1.pollResponse = r;
       stmt1.setTestPoint();
       Thread backgroundThread = getAndRunBackgroundQuery(stmt1);
       stmt1.waitForTestPoint();
@@ -226,6 +242,19 @@ public class CancelTest {
     Assert.assertEquals(result, "PENDING");
   }
 
+  @Test
+  public void handlesPollResponseWithoutCompletionState() {
+    // A poll response must tell us whether the job is complete, otherwise we can't trust it.
+    JobReference jobRef = new JobReference().setJobId("Job Id");
+    Throwable exception =
+        assertThrows(
+            IOException.class,
+            () -> {
+              BQSupportFuncts.logAndGetQueryCompletion(jobRef, new GetQueryResultsResponse());
+            });
+    assertEquals("Failed to fetch query state.", exception.getMessage());
+  }
+
   @Test
   public void handlesNullCreationTime() throws IOException {
     // Check that proper exception is thrown if creation time is null while
@@ -253,15 +282,16 @@ public class CancelTest {
   }
 
   private static class TestableBQStatementWithBadPollJobs extends TestableBQStatement {
-    public Job pollJob;
+    public GetQueryResultsResponse pollResponse;
 
     public TestableBQStatementWithBadPollJobs(String projectId, BQConnection bqConnection) {
       super(projectId, bqConnection);
     }
 
     @Override
-    protected Job getPollJob(Job jobToPoll) throws IOException {
-      return pollJob;
+    protected GetQueryResultsResponse pollQueryResults(JobReference jobRef, long timeoutMillis)
+        throws IOException {
+      return pollResponse;
     }
   }
 
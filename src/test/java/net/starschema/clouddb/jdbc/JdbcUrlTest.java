@@ -5,6 +5,7 @@ import com.google.api.client.testing.http.MockLowLevelHttpRequest;
 import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import com.google.api.services.bigquery.Bigquery.Jobs.Query;
 import com.google.api.services.bigquery.model.DatasetReference;
+import com.google.api.services.bigquery.model.QueryRequest;
 import com.google.common.collect.ImmutableMap;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -17,6 +18,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import junit.framework.Assert;
@@ -938,6 +941,71 @@ public class JdbcUrlTest {
     }
   }
 
+  @Test
+  public void maxConcurrentQueriesRejectsBadValues() throws Exception {
+    for (String value : new String[] {"0", "-1"}) {
+      try {
+        new BQConnection(URL + "&maxConcurrentQueries=" + value, new Properties());
+        Assert.fail("maxConcurrentQueries=" + value + " was accepted");
+      } catch (BQSQLException e) {
+        Assert.assertEquals("maxConcurrentQueries must be positive.", e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void timeoutsAreSentAsJobTimeout() throws Exception {
+    String projectId = this.properties.getProperty("projectid");
+    BQStatement stmt = new BQStatement(projectId, this.bq);
+    Assert.assertNull(stmt.getJobTimeoutMillis());
+    stmt.setQueryTimeout(5);
+    Assert.assertEquals(
+        Long.valueOf(5000 + BQStatementRoot.JOB_TIMEOUT_GRACE_MILLIS), stmt.getJobTimeoutMillis());
+
+    this.bq = new BQConnection(URL + "&timeoutMs=30000", new Properties());
+    stmt = new BQStatement(projectId, this.bq);
+    Query query =
+        BQSupportFuncts.getSyncQuery(
+            this.bq.getBigquery(),
+            projectId,
+            "SELECT 1",
+            this.bq.getDataSet(),
+            this.bq.getDataSetProjectId(),
+            this.bq.getUseLegacySql(),
+            null,
+            stmt.getSyncTimeoutMillis(),
+            stmt.getJobTimeoutMillis(),
+            (long) stmt.getMaxRows(),
+            stmt.getAllLabels(),
+            this.bq.getUseQueryCache(),
+            null,
+            null,
+            null);
+    Assert.assertEquals(
+        30000 + BQStatementRoot.JOB_TIMEOUT_GRACE_MILLIS,
+        ((QueryRequest) query.getJsonContent()).get("jobTimeoutMs"));
+  }
+
+  @Test
+  public void networkTimeoutDefaultsToReadTimeoutAndCanBeChanged() throws Exception {
+    Assert.assertEquals(BQConnection.DEFAULT_READ_TIMEOUT_MILLIS, this.bq.getNetworkTimeout());
+    this.bq.setNetworkTimeout(Runnable::run, 60_000);
+    Assert.assertEquals(60_000, this.bq.getNetworkTimeout());
+
+    BQConnection withReadTimeout = new BQConnection(URL + "&readTimeout=1234", new Properties());
+    Assert.assertEquals(1234, withReadTimeout.getNetworkTimeout());
+  }
+
+  @Test
+  public void abortClosesTheConnectionWithoutWaiting() throws Exception {
+    List<Runnable> cleanup = new ArrayList<>();
+    this.bq.abort(cleanup::add);
+    Assert.assertTrue(this.bq.isClosed());
+    cleanup.forEach(Runnable::run);
+    // aborting again is harmless
+    this.bq.abort(cleanup::add);
+  }
+
   @Test
   public void timeoutMsWorks() throws Exception {
     // should immediately kill the job
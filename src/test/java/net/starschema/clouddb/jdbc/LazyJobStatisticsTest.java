@@ -0,0 +1,47 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.services.bigquery.model.BiEngineStatistics;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.JobStatistics;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import org.junit.Test;
+
+public class LazyJobStatisticsTest {
+
+  @Test
+  public void jobFromReferenceMatchesBigQueryJobIds() {
+    JobReference ref = new JobReference().setProjectId("p").setJobId("j").setLocation("US");
+    Job job = LazyJobStatistics.jobFromReference(ref);
+    assertSame(ref, job.getJobReference());
+    assertEquals("p:US.j", job.getId());
+    assertEquals(
+        "p:j",
+        LazyJobStatistics.jobFromReference(new JobReference().setProjectId("p").setJobId("j"))
+            .getId());
+  }
+
+  @Test
+  public void usesStatisticsWeAlreadyHave() {
+    BiEngineStatistics bi = new BiEngineStatistics().setBiEngineMode("FULL");
+    Job job =
+        new Job()
+            .setJobReference(new JobReference().setJobId("j"))
+            .setStatistics(
+                new JobStatistics().setQuery(new JobStatistics2().setBiEngineStatistics(bi)));
+    // No client: any attempt to load the job would come back empty.
+    LazyJobStatistics stats = new LazyJobStatistics(null, "p", job.getJobReference(), job);
+    assertSame(bi, stats.getBiEngineStatistics());
+  }
+
+  @Test
+  public void nothingToLoadWithoutAJob() {
+    LazyJobStatistics stats = new LazyJobStatistics(null, "p", null, null);
+    assertNull(stats.getJob());
+    assertNull(stats.getBiEngineStatistics());
+  }
+}
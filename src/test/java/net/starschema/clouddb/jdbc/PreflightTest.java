@@ -0,0 +1,63 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import org.junit.After;
+import org.junit.Test;
+
+public class PreflightTest {
+
+  private static final String SHAKESPEARE =
+      "SELECT word FROM `bigquery-public-data.samples.shakespeare`";
+
+  private BQConnection connection;
+
+  private BQConnection connect(String extraUrl) throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", extraUrl);
+    return connection;
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void estimatesWithoutRunning() throws Exception {
+    BQStatement stmt = connect(null).createStatement().unwrap(BQStatement.class);
+    BQQueryEstimate estimate = stmt.estimate(SHAKESPEARE);
+    assertTrue(estimate.getTotalBytesProcessed() > 0);
+    assertEquals("shakespeare", estimate.getReferencedTables().get(0).getTableId());
+    assertEquals("word", estimate.getSchema().getFields().get(0).getName());
+    assertNull(stmt.mostRecentJobReference.get());
+  }
+
+  @Test
+  public void estimatesAreMemoizedByNormalizedSql() throws Exception {
+    BQStatement stmt = connect(null).createStatement().unwrap(BQStatement.class);
+    BQDryRun first = connection.dryRun(SHAKESPEARE, false);
+    assertSame(first, connection.dryRun("  " + SHAKESPEARE.replace(" ", "\n  ") + ";", false));
+    assertEquals(
+        first.getTotalBytesProcessed(), stmt.estimate(SHAKESPEARE).getTotalBytesProcessed());
+  }
+
+  @Test
+  public void refusesQueriesOverTheLimit() throws Exception {
+    BQStatement stmt = connect("&preflightMaxBytes=1").createStatement().unwrap(BQStatement.class);
+    BQQueryTooExpensiveException e =
+        assertThrows(BQQueryTooExpensiveException.class, () -> stmt.executeQuery(SHAKESPEARE));
+    assertEquals(1, e.getMaxBytes());
+    assertNull(stmt.mostRecentJobReference.get());
+
+    connection.setPreflightMaxBytes(null);
+    stmt.executeQuery(SHAKESPEARE + " LIMIT 1").close();
+  }
+}
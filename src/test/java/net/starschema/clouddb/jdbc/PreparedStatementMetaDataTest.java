@@ -0,0 +1,63 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreparedStatementMetaDataTest {
+
+  private BQConnection connection;
+
+  @Before
+  public void connect() throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", null);
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    connection.close();
+  }
+
+  @Test
+  public void describesResultsWithoutRunningTheQuery() throws SQLException {
+    PreparedStatement stmt =
+        connection.prepareStatement(
+            "SELECT word, word_count FROM `bigquery-public-data.samples.shakespeare`"
+                + " WHERE corpus = ? AND word_count > ?");
+    ResultSetMetaData metadata = stmt.getMetaData();
+    assertEquals(2, metadata.getColumnCount());
+    assertEquals("word", metadata.getColumnName(1));
+    assertEquals(Types.BIGINT, metadata.getColumnType(2));
+    assertNull(stmt.unwrap(BQPreparedStatement.class).mostRecentJobReference.get());
+  }
+
+  @Test
+  public void infersParameterTypes() throws SQLException {
+    PreparedStatement stmt =
+        connection.prepareStatement(
+            "SELECT word FROM `bigquery-public-data.samples.shakespeare`"
+                + " WHERE corpus = ? AND word_count > ?");
+    ParameterMetaData metadata = stmt.getParameterMetaData();
+    assertEquals(2, metadata.getParameterCount());
+    assertEquals(Types.VARCHAR, metadata.getParameterType(1));
+    assertEquals(Types.BIGINT, metadata.getParameterType(2));
+  }
+
+  @Test
+  public void repeatedDescribesAreCached() throws SQLException {
+    String sql = "SELECT 1 AS one";
+    BQDryRun first = connection.dryRun(sql, false);
+    assertSame(first, connection.dryRun(sql, false));
+    assertEquals("one", connection.prepareStatement(sql).getMetaData().getColumnName(1));
+  }
+}
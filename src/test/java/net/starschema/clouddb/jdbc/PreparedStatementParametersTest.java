@@ -0,0 +1,90 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.services.bigquery.model.QueryParameter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreparedStatementParametersTest {
+
+  private BQConnection connection;
+
+  @Before
+  public void connect() throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", null);
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    connection.close();
+  }
+
+  private QueryParameter parameter(PreparedStatement stmt, int index) throws SQLException {
+    return stmt.unwrap(BQPreparedStatement.class).queryParameters[index - 1];
+  }
+
+  private static String type(QueryParameter parameter) {
+    return parameter.getParameterType().getType();
+  }
+
+  private static String value(QueryParameter parameter) {
+    return parameter.getParameterValue().getValue();
+  }
+
+  @Test
+  public void numbersKeepTheirType() throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement("SELECT ?, ?, ?, ?");
+    stmt.setInt(1, 42);
+    stmt.setDouble(2, 1.5);
+    stmt.setBigDecimal(3, new BigDecimal("12345.678"));
+    stmt.setBigDecimal(4, new BigDecimal("1.0123456789"));
+
+    assertEquals("INT64", type(parameter(stmt, 1)));
+    assertEquals("42", value(parameter(stmt, 1)));
+    assertEquals("FLOAT64", type(parameter(stmt, 2)));
+    assertEquals("1.5", value(parameter(stmt, 2)));
+    assertEquals("NUMERIC", type(parameter(stmt, 3)));
+    assertEquals("12345.678", value(parameter(stmt, 3)));
+    // more than the 9 decimal places of NUMERIC
+    assertEquals("BIGNUMERIC", type(parameter(stmt, 4)));
+    assertEquals("1.0123456789", value(parameter(stmt, 4)));
+  }
+
+  @Test
+  public void timestampsAreSentAsTimestamps() throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement("SELECT ?");
+    stmt.setTimestamp(
+        1,
+        Timestamp.valueOf("2020-01-02 03:04:05.123"),
+        Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+
+    assertEquals("TIMESTAMP", type(parameter(stmt, 1)));
+    assertEquals("2020-01-02 03:04:05.123", value(parameter(stmt, 1)));
+  }
+
+  @Test
+  public void nullsAreTypedAfterTheirSqlType() throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement("SELECT ?, ?, ?");
+    stmt.setNull(1, Types.BIGINT);
+    stmt.setNull(2, Types.TIMESTAMP);
+    stmt.setNull(3, Types.VARCHAR);
+
+    assertEquals("INT64", type(parameter(stmt, 1)));
+    assertNull(value(parameter(stmt, 1)));
+    assertEquals("TIMESTAMP", type(parameter(stmt, 2)));
+    assertNull(value(parameter(stmt, 2)));
+    assertEquals("STRING", type(parameter(stmt, 3)));
+    assertNull(value(parameter(stmt, 3)));
+  }
+}
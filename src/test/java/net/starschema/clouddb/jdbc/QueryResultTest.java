@@ -25,7 +25,12 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import junit.framework.Assert;
 import org.junit.After;
 import org.junit.Before;
@@ -642,4 +647,47 @@ public class QueryResultTest {
       Assert.fail(e.toString());
     }
   }
+
+  @Test
+  public void QueryResultTestExecuteAll() throws Exception {
+    BQConnection bqConnection = (BQConnection) standardSqlConnection;
+    List<String> queries = new ArrayList<>();
+    for (int i = 0; i < bqConnection.getMaxConcurrentQueries() * 2 + 1; i++) {
+      queries.add("SELECT " + i + " AS n");
+    }
+    List<CompletableFuture<ResultSet>> results = bqConnection.executeAll(queries);
+    Assert.assertEquals(queries.size(), results.size());
+    for (int i = 0; i < results.size(); i++) {
+      ResultSet result = results.get(i).get(1, TimeUnit.MINUTES);
+      Assert.assertTrue(result.next());
+      Assert.assertEquals(i, result.getInt(1));
+      Assert.assertFalse(result.next());
+    }
+  }
+
+  @Test
+  public void QueryResultTestExecuteSharded() throws Exception {
+    BQConnection bqConnection = (BQConnection) standardSqlConnection;
+    String template = "SELECT n FROM UNNEST(GENERATE_ARRAY(0, 99)) AS n WHERE {shard} ORDER BY n";
+    List<String> shards = Arrays.asList("MOD(n, 3) = 0", "MOD(n, 3) = 1", "MOD(n, 3) = 2");
+    for (BQShardedResultSet.MergeMode mode : BQShardedResultSet.MergeMode.values()) {
+      ResultSet result = bqConnection.executeSharded(template, shards, mode, 1);
+      List<Integer> seen = new ArrayList<>();
+      while (result.next()) {
+        seen.add(result.getInt(1));
+      }
+      result.close();
+      Assert.assertEquals(100, seen.size());
+      if (mode == BQShardedResultSet.MergeMode.ORDERED) {
+        // each shard in turn, in the order of its rows
+        Assert.assertEquals(Integer.valueOf(0), seen.get(0));
+        Assert.assertEquals(Integer.valueOf(1), seen.get(34));
+        Assert.assertEquals(Integer.valueOf(2), seen.get(67));
+      }
+      Collections.sort(seen);
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals(Integer.valueOf(i), seen.get(i));
+      }
+    }
+  }
 }
@@ -0,0 +1,47 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+  private BQConnection connection;
+
+  private BQConnection connect(String extraUrl) throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", extraUrl);
+    return connection;
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void dmlRunsEveryTime() throws Exception {
+    Statement stmt = connect("&resultCacheTtlMs=60000").createStatement();
+    String table = "result_cache_" + UUID.randomUUID().toString().replace("-", "");
+    stmt.execute("CREATE TABLE " + table + " (n INT64)");
+    try {
+      String insert = "INSERT INTO " + table + " (n) VALUES (1)";
+      stmt.execute(insert);
+      stmt.execute(insert);
+
+      ResultSet count = stmt.executeQuery("SELECT COUNT(*) FROM " + table);
+      assertTrue(count.next());
+      assertEquals(2, count.getLong(1));
+    } finally {
+      stmt.execute("DROP TABLE " + table);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.After;
+import org.junit.Test;
+
+public class ScriptTest {
+
+  private BQConnection connection;
+
+  @After
+  public void closeConnection() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void recognizesScripts() {
+    assertTrue(BQStatementRoot.isScript("SELECT 1; SELECT 2"));
+    assertTrue(BQStatementRoot.isScript("DECLARE x INT64 DEFAULT 1"));
+    assertTrue(BQStatementRoot.isScript("  -- setup\n begin select 1; end"));
+    assertTrue(BQStatementRoot.isScript("INSERT INTO t VALUES (1);\nSELECT * FROM t;\n"));
+  }
+
+  @Test
+  public void singleStatementsAreNotScripts() {
+    assertFalse(BQStatementRoot.isScript("SELECT 1"));
+    assertFalse(BQStatementRoot.isScript("SELECT 1 ; ; -- done"));
+    assertFalse(BQStatementRoot.isScript("SELECT 'a;b', `c;d` /* ; SELECT 2 */ FROM t"));
+    assertFalse(BQStatementRoot.isScript("(SELECT 1) UNION ALL (SELECT 2)"));
+    assertFalse(BQStatementRoot.isScript("SELECT declare FROM t"));
+    assertFalse(BQStatementRoot.isScript(""));
+  }
+
+  @Test
+  public void walksThroughTheResultsOfAScript() throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", null);
+    Statement stmt = connection.createStatement();
+    assertTrue(
+        stmt.execute(
+            "SELECT 1 AS a;\n"
+                + "CREATE TEMP TABLE t AS SELECT 2 AS b;\n"
+                + "SELECT b FROM t;\n"
+                + "SELECT 3 AS c UNION ALL SELECT 4;\n"));
+
+    ResultSet first = stmt.getResultSet();
+    assertTrue(first.next());
+    assertEquals(1, first.getInt(1));
+    assertEquals(-1, stmt.getUpdateCount());
+
+    assertFalse(stmt.getMoreResults());
+    assertTrue(first.isClosed());
+    assertEquals(0, stmt.getUpdateCount());
+
+    assertTrue(stmt.getMoreResults(Statement.KEEP_CURRENT_RESULT));
+    ResultSet second = stmt.getResultSet();
+    assertTrue(second.next());
+    assertEquals(2, second.getInt(1));
+
+    assertTrue(stmt.getMoreResults(Statement.KEEP_CURRENT_RESULT));
+    assertFalse(second.isClosed());
+    ResultSet third = stmt.getResultSet();
+    int rows = 0;
+    while (third.next()) {
+      rows++;
+    }
+    assertEquals(2, rows);
+
+    assertFalse(stmt.getMoreResults(Statement.CLOSE_ALL_RESULTS));
+    assertTrue(second.isClosed());
+    assertTrue(third.isClosed());
+    assertEquals(-1, stmt.getUpdateCount());
+  }
+}
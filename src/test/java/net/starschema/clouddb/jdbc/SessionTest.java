@@ -0,0 +1,53 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.After;
+import org.junit.Test;
+
+public class SessionTest {
+
+  private BQConnection connection;
+
+  private BQConnection connect(String extraUrl) throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", extraUrl);
+    return connection;
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void connectionsHaveNoSessionByDefault() throws Exception {
+    assertNull(connect(null).getSessionId());
+  }
+
+  @Test
+  public void tempTablesLastAsLongAsTheConnection() throws Exception {
+    BQConnection conn = connect("&enableSession=true");
+    assertNotNull(conn.getSessionId());
+
+    conn.createStatement().execute("CREATE TEMP TABLE session_numbers AS SELECT 42 AS n");
+    ResultSet numbers = conn.createStatement().executeQuery("SELECT n FROM session_numbers");
+    assertTrue(numbers.next());
+    assertEquals(42, numbers.getInt(1));
+
+    ResultSet tables =
+        conn.getMetaData().getTables(null, BQDatabaseMetadata.SESSION_SCHEMA, "session%", null);
+    assertTrue(tables.next());
+    assertEquals(BQDatabaseMetadata.SESSION_SCHEMA, tables.getString("TABLE_SCHEM"));
+    assertEquals("session_numbers", tables.getString("TABLE_NAME"));
+    assertFalse(tables.next());
+  }
+}
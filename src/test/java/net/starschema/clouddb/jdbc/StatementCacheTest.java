@@ -0,0 +1,108 @@
+package net.starschema.clouddb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.junit.After;
+import org.junit.Test;
+
+public class StatementCacheTest {
+
+  private BQConnection connection;
+
+  private BQConnection connect(String extraUrl) throws SQLException, IOException {
+    connection = ConnectionFromResources.connect("installedaccount1.properties", extraUrl);
+    return connection;
+  }
+
+  @After
+  public void closeConnection() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void closedStatementsAreReused() throws Exception {
+    connect("&statementCacheSize=2");
+    PreparedStatement first = connection.prepareStatement("SELECT ?");
+    first.setInt(1, 1);
+    first.setMaxRows(5);
+    first.close();
+
+    PreparedStatement second = connection.prepareStatement("SELECT ?");
+    assertSame(
+        first.unwrap(BQPreparedStatement.class).template,
+        second.unwrap(BQPreparedStatement.class).template);
+    assertFalse(second.isClosed());
+    assertTrue(second.isPoolable());
+    assertEquals(BQStatementRoot.NO_MAX_ROWS, second.getMaxRows());
+    assertEquals(1, connection.getStatementCacheHits());
+    // the first statement had to be prepared
+    assertEquals(1, connection.getStatementCacheMisses());
+  }
+
+  @Test
+  public void earlierHoldersCannotTouchTheReusedStatement() throws Exception {
+    connect("&statementCacheSize=2");
+    PreparedStatement first = connection.prepareStatement("SELECT ?");
+    first.close();
+
+    PreparedStatement second = connection.prepareStatement("SELECT ?");
+    assertNotSame(first, second);
+    assertTrue(first.isClosed());
+    // e.g. a finally block of the earlier holder
+    first.close();
+    assertFalse(second.isClosed());
+    second.setInt(1, 1);
+
+    // second is still in use, so it isn't there to be reused
+    assertNotSame(second, connection.prepareStatement("SELECT ?"));
+    assertEquals(1, connection.getStatementCacheHits());
+    assertEquals(2, connection.getStatementCacheMisses());
+  }
+
+  @Test
+  public void leastRecentlyUsedStatementIsDropped() throws Exception {
+    connect("&statementCacheSize=2");
+    PreparedStatement a = connection.prepareStatement("SELECT 'a'");
+    PreparedStatement b = connection.prepareStatement("SELECT 'b'");
+    PreparedStatement c = connection.prepareStatement("SELECT 'c'");
+    a.close();
+    b.close();
+    c.close();
+
+    assertEquals(3, connection.getStatementCacheMisses());
+
+    connection.prepareStatement("SELECT 'a'");
+    assertEquals(0, connection.getStatementCacheHits());
+    assertEquals(4, connection.getStatementCacheMisses());
+    connection.prepareStatement("SELECT 'c'");
+    assertEquals(1, connection.getStatementCacheHits());
+    assertEquals(4, connection.getStatementCacheMisses());
+  }
+
+  @Test
+  public void nonPoolableStatementsAreNotReused() throws Exception {
+    connect("&statementCacheSize=2");
+    PreparedStatement first = connection.prepareStatement("SELECT 1");
+    first.setPoolable(false);
+    first.close();
+    assertNotSame(first, connection.prepareStatement("SELECT 1"));
+  }
+
+  @Test
+  public void noCacheByDefault() throws Exception {
+    connect("");
+    PreparedStatement first = connection.prepareStatement("SELECT 1");
+    first.close();
+    assertNotSame(first, connection.prepareStatement("SELECT 1"));
+    assertEquals(0, connection.getStatementCacheHits());
+  }
+}